@@ -0,0 +1,117 @@
+package org.neo4j.dataimport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@OperationsPerInvocation( SyntheticDataset.ROWS )
+@Fork( 1 )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+public class ColumnPropertyStrategyBenchmark
+{
+    @Param( { "2", "10" } )
+    public int properties;
+
+    @Param( { "string", "mixed" } )
+    public String types;
+
+    @Param( { "0", "50" } )
+    public int sparsity;
+
+    private Connection connection;
+    private ColumnPropertyStrategy strategy;
+
+    @Setup
+    public void createTable() throws Exception
+    {
+        Class.forName( "org.hsqldb.jdbcDriver" );
+        connection = DriverManager.getConnection( "jdbc:hsqldb:mem:benchmark", "sa", "" );
+        SyntheticDataset dataset = new SyntheticDataset( properties, types, sparsity, false );
+        StringBuilder columns = new StringBuilder( "id BIGINT" );
+        StringBuilder insert = new StringBuilder( "INSERT INTO nodes VALUES(?" );
+        for ( int p = 0; p < properties; p++ )
+        {
+            columns.append( ", p" ).append( p ).append( ' ' ).append( dataset.sqlType( p ) );
+            insert.append( ",?" );
+        }
+        update( "CREATE TABLE nodes (" + columns + ")" );
+        PreparedStatement statement = connection.prepareStatement( insert + ")" );
+        Random random = new Random( 42 );
+        for ( int row = 1; row <= SyntheticDataset.ROWS; row++ )
+        {
+            statement.setLong( 1, row );
+            for ( int p = 0; p < properties; p++ )
+            {
+                if ( random.nextInt( 100 ) >= sparsity )
+                {
+                    statement.setString( p + 2, SyntheticDataset.value( dataset.type( p ), random ) );
+                }
+                else
+                {
+                    statement.setNull( p + 2, java.sql.Types.VARCHAR );
+                }
+            }
+            statement.executeUpdate();
+        }
+        statement.close();
+        strategy = new ColumnPropertyStrategy();
+    }
+
+    @TearDown
+    public void dropTable() throws SQLException
+    {
+        update( "DROP TABLE nodes" );
+        connection.close();
+    }
+
+    @Benchmark
+    public void readProperties( Blackhole blackhole ) throws SQLException
+    {
+        Statement statement = connection.createStatement( ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+        try
+        {
+            ResultSet resultSet = statement.executeQuery( "SELECT * FROM nodes" );
+            strategy.initialize( resultSet, "id" );
+            while ( resultSet.next() )
+            {
+                blackhole.consume( strategy.getPropertiesForCursorRow( resultSet ) );
+            }
+            resultSet.close();
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    private void update( String sql ) throws SQLException
+    {
+        Statement statement = connection.createStatement();
+        statement.executeUpdate( sql );
+        statement.close();
+    }
+}
@@ -0,0 +1,111 @@
+package org.neo4j.dataimport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@OperationsPerInvocation( SyntheticDataset.ROWS )
+@Fork( 1 )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+public class CsvParsingBenchmark
+{
+    @Param( { "2", "10" } )
+    public int properties;
+
+    @Param( { "string", "mixed" } )
+    public String types;
+
+    @Param( { "0", "50" } )
+    public int sparsity;
+
+    private File nodes;
+    private CsvImporter importer;
+    private CsvImporter.PropertyType[] propertyTypes;
+    private PropertyRows rows;
+
+    @Setup
+    public void createDataset() throws IOException
+    {
+        SyntheticDataset dataset = new SyntheticDataset( properties, types, sparsity, false );
+        nodes = dataset.writeNodes();
+        importer = new CsvImporter( nodes, nodes );
+        propertyTypes = new CsvImporter.PropertyType[properties];
+        String[] keys = new String[properties];
+        for ( int p = 0; p < properties; p++ )
+        {
+            propertyTypes[p] = dataset.type( p );
+            keys[p] = "p" + p;
+        }
+        rows = new PropertyRows( keys, 1 );
+    }
+
+    @TearDown
+    public void deleteDataset()
+    {
+        nodes.delete();
+    }
+
+    @Benchmark
+    public void tokenize( Blackhole blackhole ) throws IOException
+    {
+        CsvReader reader = new CsvReader( nodes );
+        try
+        {
+            CsvRecord record;
+            while ( ( record = reader.next() ) != null )
+            {
+                blackhole.consume( record.fieldEnd( record.fieldCount() - 1 ) );
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    @Benchmark
+    public void parse( Blackhole blackhole ) throws IOException
+    {
+        CsvReader reader = new CsvReader( nodes );
+        try
+        {
+            CsvRecord record = reader.next();
+            while ( ( record = reader.next() ) != null )
+            {
+                blackhole.consume( record.getLong( 0 ) );
+                rows.clearRow( 0 );
+                for ( int field = 1; field < record.fieldCount(); field++ )
+                {
+                    if ( !record.isEmpty( field ) )
+                    {
+                        importer.readPropertyValue( record, field, propertyTypes[field - 1], rows, 0, field - 1 );
+                    }
+                }
+                blackhole.consume( rows );
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+}
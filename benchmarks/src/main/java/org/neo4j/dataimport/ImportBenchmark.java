@@ -0,0 +1,96 @@
+package org.neo4j.dataimport;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.kernel.impl.batchinsert.BatchInserter;
+import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@OperationsPerInvocation( 2 * SyntheticDataset.ROWS )
+@Fork( value = 1, jvmArgs = "-Xmx2048m" )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+public class ImportBenchmark
+{
+    @Param( { "4" } )
+    public int properties;
+
+    @Param( { "mixed" } )
+    public String types;
+
+    @Param( { "0", "50" } )
+    public int sparsity;
+
+    @Param( { "false", "true" } )
+    public boolean indexed;
+
+    @Param( { "0", "4" } )
+    public int parserThreads;
+
+    private File nodes;
+    private File rels;
+    private File storeDir;
+    private BatchInserter batchInserter;
+
+    @Setup
+    public void createDataset() throws IOException
+    {
+        SyntheticDataset dataset = new SyntheticDataset( properties, types, sparsity, indexed );
+        nodes = dataset.writeNodes();
+        rels = dataset.writeRelationships();
+    }
+
+    @TearDown
+    public void deleteDataset()
+    {
+        nodes.delete();
+        rels.delete();
+    }
+
+    @Setup( Level.Invocation )
+    public void createStore() throws IOException
+    {
+        storeDir = File.createTempFile( "benchmark-", "-store" );
+        storeDir.delete();
+        batchInserter = new BatchInserterImpl( storeDir.getAbsolutePath() );
+    }
+
+    @TearDown( Level.Invocation )
+    public void deleteStore() throws IOException
+    {
+        if ( batchInserter != null )
+        {
+            batchInserter.shutdown();
+        }
+        FileUtils.deleteDirectory( storeDir );
+    }
+
+    @Benchmark
+    public void importCsv()
+    {
+        CsvImporter importer = new CsvImporter( nodes, rels );
+        importer.setParserThreads( parserThreads );
+        importer.importTo( batchInserter );
+        batchInserter.shutdown();
+        batchInserter = null;
+    }
+}
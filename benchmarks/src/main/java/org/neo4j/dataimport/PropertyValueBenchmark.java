@@ -0,0 +1,88 @@
+package org.neo4j.dataimport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@OperationsPerInvocation( PropertyValueBenchmark.VALUES )
+@Fork( 1 )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+public class PropertyValueBenchmark
+{
+    static final int VALUES = 1000;
+
+    @Param( { "string", "long", "int", "short", "byte", "char", "boolean", "double", "float" } )
+    public String typeName;
+
+    private CsvImporter.PropertyType type;
+
+    private File values;
+    private CsvReader reader;
+    private CsvRecord record;
+    private CsvImporter importer;
+    private PropertyRows rows;
+
+    @Setup
+    public void createValues() throws IOException
+    {
+        type = CsvImporter.PropertyType.parseType( typeName );
+        values = File.createTempFile( "benchmark-values-", ".csv" );
+        Random random = new Random( 42 );
+        Writer out = new FileWriter( values );
+        try
+        {
+            for ( int i = 0; i < VALUES; i++ )
+            {
+                out.write( ( i == 0 ? "" : "," ) + SyntheticDataset.value( type, random ) );
+            }
+            out.write( '\n' );
+        }
+        finally
+        {
+            out.close();
+        }
+        reader = new CsvReader( values );
+        record = reader.next();
+        importer = new CsvImporter( values, values );
+        rows = new PropertyRows( new String[] { "value" }, 1 );
+    }
+
+    @TearDown
+    public void deleteValues() throws IOException
+    {
+        reader.close();
+        values.delete();
+    }
+
+    @Benchmark
+    public void convert( Blackhole blackhole )
+    {
+        for ( int field = 0; field < VALUES; field++ )
+        {
+            importer.readPropertyValue( record, field, type, rows, 0, 0 );
+            blackhole.consume( rows.get( 0, 0 ) );
+        }
+    }
+}
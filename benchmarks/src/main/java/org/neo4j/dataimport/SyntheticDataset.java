@@ -0,0 +1,158 @@
+package org.neo4j.dataimport;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+final class SyntheticDataset
+{
+    static final int ROWS = 100000;
+
+    private static final CsvImporter.PropertyType[] MIXED_TYPES = {
+        CsvImporter.PropertyType.stringType, CsvImporter.PropertyType.longType, CsvImporter.PropertyType.intType,
+        CsvImporter.PropertyType.doubleType, CsvImporter.PropertyType.booleanType, CsvImporter.PropertyType.shortType,
+        CsvImporter.PropertyType.floatType, CsvImporter.PropertyType.byteType, CsvImporter.PropertyType.charType };
+
+    private final int properties;
+    private final String types;
+    private final int sparsity;
+    private final boolean indexed;
+
+    SyntheticDataset( int properties, String types, int sparsity, boolean indexed )
+    {
+        this.properties = properties;
+        this.types = types;
+        this.sparsity = sparsity;
+        this.indexed = indexed;
+    }
+
+    CsvImporter.PropertyType type( int property )
+    {
+        if ( "string".equals( types ) )
+        {
+            return CsvImporter.PropertyType.stringType;
+        }
+        else if ( "mixed".equals( types ) )
+        {
+            return MIXED_TYPES[property % MIXED_TYPES.length];
+        }
+        throw new IllegalArgumentException( "Unknown type mix: " + types );
+    }
+
+    File writeNodes() throws IOException
+    {
+        File file = File.createTempFile( "benchmark-nodes-", ".csv" );
+        file.deleteOnExit();
+        Random random = new Random( 42 );
+        Writer out = new BufferedWriter( new FileWriter( file ), 1 << 16 );
+        try
+        {
+            out.write( "id" );
+            for ( int p = 0; p < properties; p++ )
+            {
+                out.write( ',' );
+                if ( indexed && p == 0 )
+                {
+                    out.write( "entities|" );
+                }
+                out.write( "p" + p + "@" + typeName( type( p ) ) );
+            }
+            out.write( '\n' );
+            for ( int row = 1; row <= ROWS; row++ )
+            {
+                out.write( String.valueOf( row ) );
+                for ( int p = 0; p < properties; p++ )
+                {
+                    out.write( ',' );
+                    if ( random.nextInt( 100 ) >= sparsity )
+                    {
+                        out.write( value( type( p ), random ) );
+                    }
+                }
+                out.write( '\n' );
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+    File writeRelationships() throws IOException
+    {
+        File file = File.createTempFile( "benchmark-rels-", ".csv" );
+        file.deleteOnExit();
+        Random random = new Random( 42 );
+        Writer out = new BufferedWriter( new FileWriter( file ), 1 << 16 );
+        try
+        {
+            out.write( "from,to,type,since@long\n" );
+            for ( int row = 0; row < ROWS; row++ )
+            {
+                out.write( ( random.nextInt( ROWS ) + 1 ) + "," + ( random.nextInt( ROWS ) + 1 ) + ",KNOWS," + random.nextInt() + "\n" );
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+    String sqlType( int property )
+    {
+        switch ( type( property ) )
+        {
+        case longType:
+            return "BIGINT";
+        case intType:
+            return "INTEGER";
+        case shortType:
+            return "SMALLINT";
+        case byteType:
+            return "TINYINT";
+        case booleanType:
+            return "BOOLEAN";
+        case doubleType:
+        case floatType:
+            return "DOUBLE";
+        default:
+            return "VARCHAR";
+        }
+    }
+
+    static String value( CsvImporter.PropertyType type, Random random )
+    {
+        switch ( type )
+        {
+        case longType:
+            return String.valueOf( random.nextLong() );
+        case intType:
+            return String.valueOf( random.nextInt() );
+        case shortType:
+            return String.valueOf( (short) random.nextInt() );
+        case byteType:
+            return String.valueOf( (byte) random.nextInt() );
+        case charType:
+            return String.valueOf( (char) ( 'a' + random.nextInt( 26 ) ) );
+        case booleanType:
+            return String.valueOf( random.nextBoolean() );
+        case doubleType:
+            return String.valueOf( random.nextDouble() * 1000 );
+        case floatType:
+            return String.valueOf( random.nextFloat() * 1000 );
+        default:
+            return "value-" + Long.toString( random.nextLong() & Long.MAX_VALUE, 36 );
+        }
+    }
+
+    private static String typeName( CsvImporter.PropertyType type )
+    {
+        String name = type.name();
+        return name.substring( 0, name.length() - "Type".length() );
+    }
+}
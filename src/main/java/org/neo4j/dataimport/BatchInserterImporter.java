@@ -5,4 +5,6 @@ import org.neo4j.kernel.impl.batchinsert.BatchInserter;
 public interface BatchInserterImporter
 {
     void importTo( BatchInserter target );
+
+    ImportMetrics getMetrics();
 }
@@ -3,7 +3,7 @@ package org.neo4j.dataimport;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
-interface ColumnAccessor
+public interface ColumnAccessor
 {
-    Object getValue( ResultSet resultSet ) throws SQLException;
+    Object getValue( ResultSet resultSet, int column ) throws SQLException;
 }
@@ -3,10 +3,11 @@ package org.neo4j.dataimport;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -15,7 +16,12 @@ public class ColumnPropertyStrategy implements PropertyStrategy
 
     private Set<String> reservedColumns = new HashSet<String>();
     private Set<String> specificPropertyColumns;
-    private Map<String, ColumnAccessor> columnTypes = new HashMap<String, ColumnAccessor>();
+    private ColumnTypeRegistry typeRegistry = new ColumnTypeRegistry();
+    private String[] propertyKeys = new String[0];
+    private int[] columns = new int[0];
+    private ColumnAccessor[] accessors = new ColumnAccessor[0];
+    private byte[] kinds = new byte[0];
+    private final ThreadLocal<PropertyRow> rows = new ThreadLocal<PropertyRow>();
 
     public ColumnPropertyStrategy()
     {
@@ -30,29 +36,99 @@ public class ColumnPropertyStrategy implements PropertyStrategy
     public void initialize( ResultSet resultSet, String... reservedColumns ) throws SQLException
     {
         this.reservedColumns = asSet( reservedColumns );
-        columnTypes = getPropertyColumns( resultSet );
+        bindPropertyColumns( resultSet );
     }
 
     @Override
     public Map<String, Object> getPropertiesForCursorRow( ResultSet resultSet ) throws SQLException
     {
+        PropertyRow row = rows.get();
+        if ( row == null || !row.hasKeys( propertyKeys ) )
+        {
+            row = new PropertyRow( propertyKeys );
+            rows.set( row );
+        }
+        readRow( resultSet, row.rows(), row.row() );
+        return row;
+    }
 
-        Map<String, Object> properties = new HashMap<String, Object>();
-        for ( Map.Entry<String, ColumnAccessor> columnEntry : columnTypes.entrySet() )
+    String[] getPropertyKeys()
+    {
+        return propertyKeys;
+    }
+
+    void readRow( ResultSet resultSet, PropertyRows rows, int row ) throws SQLException
+    {
+        for ( int i = 0; i < accessors.length; i++ )
         {
-            String key = columnEntry.getKey();
-            Object value = columnEntry.getValue().getValue( resultSet );
-            if ( value != null )
+            int column = columns[i];
+            switch ( kinds[i] )
             {
-                properties.put( key.toLowerCase(), value );
+            case PropertyRows.LONG:
+                rows.setLong( row, i, resultSet.getLong( column ) );
+                break;
+            case PropertyRows.INT:
+                rows.setInt( row, i, resultSet.getInt( column ) );
+                break;
+            case PropertyRows.SHORT:
+                rows.setShort( row, i, resultSet.getShort( column ) );
+                break;
+            case PropertyRows.BYTE:
+                rows.setByte( row, i, resultSet.getByte( column ) );
+                break;
+            case PropertyRows.BOOLEAN:
+                rows.setBoolean( row, i, resultSet.getBoolean( column ) );
+                break;
+            case PropertyRows.FLOAT:
+                rows.setFloat( row, i, resultSet.getFloat( column ) );
+                break;
+            case PropertyRows.DOUBLE:
+                rows.setDouble( row, i, resultSet.getDouble( column ) );
+                break;
+            default:
+                rows.setObject( row, i, accessors[i].getValue( resultSet, column ) );
             }
         }
-        return properties;
     }
 
-    private Map<String, ColumnAccessor> getPropertyColumns( ResultSet resultSet ) throws SQLException
+    private static byte kindOf( ColumnAccessor accessor )
+    {
+        if ( accessor == ColumnTypeRegistry.LONG )
+        {
+            return PropertyRows.LONG;
+        }
+        else if ( accessor == ColumnTypeRegistry.INT )
+        {
+            return PropertyRows.INT;
+        }
+        else if ( accessor == ColumnTypeRegistry.SHORT )
+        {
+            return PropertyRows.SHORT;
+        }
+        else if ( accessor == ColumnTypeRegistry.BYTE )
+        {
+            return PropertyRows.BYTE;
+        }
+        else if ( accessor == ColumnTypeRegistry.BOOLEAN )
+        {
+            return PropertyRows.BOOLEAN;
+        }
+        else if ( accessor == ColumnTypeRegistry.FLOAT )
+        {
+            return PropertyRows.FLOAT;
+        }
+        else if ( accessor == ColumnTypeRegistry.DOUBLE )
+        {
+            return PropertyRows.DOUBLE;
+        }
+        return PropertyRows.OBJECT;
+    }
+
+    private void bindPropertyColumns( ResultSet resultSet ) throws SQLException
     {
-        Map<String, ColumnAccessor> columnTypes = new HashMap<String, ColumnAccessor>();
+        List<String> keys = new ArrayList<String>();
+        List<Integer> columnIndexes = new ArrayList<Integer>();
+        List<ColumnAccessor> columnAccessors = new ArrayList<ColumnAccessor>();
         ResultSetMetaData metaData = resultSet.getMetaData();
         long columnCount = metaData.getColumnCount();
         System.out.println( String.format( "Found %d columns", columnCount ) );
@@ -61,11 +137,23 @@ public class ColumnPropertyStrategy implements PropertyStrategy
             String columnName = metaData.getColumnName( i );
             if ( isPropertyColumn( columnName ) )
             {
-                ColumnAccessor columnType = getPropertyConverter( columnName, metaData.getColumnTypeName( i ) );
-                columnTypes.put( columnName, columnType );
+                keys.add( columnName.toLowerCase() );
+                columnIndexes.add( i );
+                columnAccessors.add( typeRegistry.getAccessor( metaData, i ) );
             }
         }
-        return columnTypes;
+        propertyKeys = keys.toArray( new String[keys.size()] );
+        columns = new int[columnIndexes.size()];
+        for ( int i = 0; i < columns.length; i++ )
+        {
+            columns[i] = columnIndexes.get( i );
+        }
+        accessors = columnAccessors.toArray( new ColumnAccessor[columnAccessors.size()] );
+        kinds = new byte[accessors.length];
+        for ( int i = 0; i < accessors.length; i++ )
+        {
+            kinds[i] = kindOf( accessors[i] );
+        }
     }
 
     private boolean isPropertyColumn( String columnName )
@@ -89,101 +177,9 @@ public class ColumnPropertyStrategy implements PropertyStrategy
         return false;
     }
 
-    private ColumnAccessor getPropertyConverter( final String columnName, String columnType )
+    public void setTypeRegistry( ColumnTypeRegistry typeRegistry )
     {
-
-        if ( columnType.equals( "VARCHAR" ) )
-        {
-            return new ColumnAccessor()
-            {
-                @Override
-                public Object getValue( ResultSet resultSet ) throws SQLException
-                {
-                    return resultSet.getString( columnName );
-                }
-            };
-        }
-        else if ( columnType.equals( "BIGINT" ) )
-        {
-            return new ColumnAccessor()
-            {
-                @Override
-                public Object getValue( ResultSet resultSet ) throws SQLException
-                {
-                    return resultSet.getLong( columnName );
-                }
-            };
-        }
-        else if ( columnType.equals( "INTEGER" ) )
-        {
-            return new ColumnAccessor()
-            {
-                @Override
-                public Object getValue( ResultSet resultSet ) throws SQLException
-                {
-                    return resultSet.getInt( columnName );
-                }
-            };
-        }
-        else if ( columnType.equals( "TINYINT" ) )
-        {
-            return new ColumnAccessor()
-            {
-                @Override
-                public Object getValue( ResultSet resultSet ) throws SQLException
-                {
-                    return resultSet.getByte( columnName );
-                }
-            };
-        }
-        else if ( columnType.equals( "SMALLINT" ) )
-        {
-            return new ColumnAccessor()
-            {
-                @Override
-                public Object getValue( ResultSet resultSet ) throws SQLException
-                {
-                    return resultSet.getShort( columnName );
-                }
-            };
-        }
-        else if ( columnType.equals( "BOOLEAN" ) )
-        {
-            return new ColumnAccessor()
-            {
-                @Override
-                public Object getValue( ResultSet resultSet ) throws SQLException
-                {
-                    return resultSet.getBoolean( columnName );
-                }
-            };
-        }
-        else if ( columnType.equals( "FLOAT" ) )
-        {
-            return new ColumnAccessor()
-            {
-                @Override
-                public Object getValue( ResultSet resultSet ) throws SQLException
-                {
-                    return resultSet.getFloat( columnName );
-                }
-            };
-        }
-        else if ( columnType.equals( "DOUBLE" ) )
-        {
-            return new ColumnAccessor()
-            {
-                @Override
-                public Object getValue( ResultSet resultSet ) throws SQLException
-                {
-                    return resultSet.getDouble( columnName );
-                }
-            };
-        }
-        else
-        {
-            throw new IllegalStateException( "Unknown type: " + columnType );
-        }
+        this.typeRegistry = typeRegistry;
     }
 
 //    public void setSpecificPropertyColumns( String... specificPropertyColumns )
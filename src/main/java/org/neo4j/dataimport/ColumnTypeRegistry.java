@@ -0,0 +1,321 @@
+package org.neo4j.dataimport;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ColumnTypeRegistry
+{
+    static final ColumnAccessor STRING = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            return resultSet.getString( column );
+        }
+    };
+
+    static final ColumnAccessor LONG = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            return resultSet.getLong( column );
+        }
+    };
+
+    static final ColumnAccessor INT = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            return resultSet.getInt( column );
+        }
+    };
+
+    static final ColumnAccessor SHORT = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            return resultSet.getShort( column );
+        }
+    };
+
+    static final ColumnAccessor BYTE = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            return resultSet.getByte( column );
+        }
+    };
+
+    static final ColumnAccessor BOOLEAN = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            return resultSet.getBoolean( column );
+        }
+    };
+
+    static final ColumnAccessor FLOAT = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            return resultSet.getFloat( column );
+        }
+    };
+
+    static final ColumnAccessor DOUBLE = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            return resultSet.getDouble( column );
+        }
+    };
+
+    static final ColumnAccessor DECIMAL = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            double value = resultSet.getDouble( column );
+            return resultSet.wasNull() ? null : value;
+        }
+    };
+
+    static final ColumnAccessor INTEGRAL_DECIMAL = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            long value = resultSet.getLong( column );
+            return resultSet.wasNull() ? null : value;
+        }
+    };
+
+    static final ColumnAccessor DATE = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            java.util.Date date = resultSet.getDate( column );
+            return date == null ? null : date.getTime();
+        }
+    };
+
+    static final ColumnAccessor TIME = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            java.util.Date time = resultSet.getTime( column );
+            return time == null ? null : time.getTime();
+        }
+    };
+
+    static final ColumnAccessor TIMESTAMP = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            java.util.Date timestamp = resultSet.getTimestamp( column );
+            return timestamp == null ? null : timestamp.getTime();
+        }
+    };
+
+    static final ColumnAccessor BYTES = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            return resultSet.getBytes( column );
+        }
+    };
+
+    static final ColumnAccessor ARRAY = new ColumnAccessor()
+    {
+        @Override
+        public Object getValue( ResultSet resultSet, int column ) throws SQLException
+        {
+            Array array = resultSet.getArray( column );
+            if ( array == null )
+            {
+                return null;
+            }
+            try
+            {
+                return toPrimitiveArray( array.getBaseType(), array.getArray() );
+            }
+            catch ( IllegalStateException e )
+            {
+                throw new IllegalStateException( "Column " + resultSet.getMetaData().getColumnLabel( column ) + ": " + e.getMessage() );
+            }
+            finally
+            {
+                free( array );
+            }
+        }
+    };
+
+    // drivers may hold a locator or a temp LOB for each array until the result set is closed
+    private static void free( Array array ) throws SQLException
+    {
+        try
+        {
+            array.free();
+        }
+        catch ( SQLFeatureNotSupportedException e )
+        {
+            // arrays that are copied into the row have nothing to free
+        }
+    }
+
+    private final Map<Integer, ColumnAccessor> accessors = new HashMap<Integer, ColumnAccessor>();
+
+    public ColumnTypeRegistry()
+    {
+        register( STRING, Types.VARCHAR, Types.CHAR, Types.LONGVARCHAR, Types.NVARCHAR, Types.NCHAR,
+            Types.LONGNVARCHAR, Types.CLOB, Types.NCLOB );
+        register( LONG, Types.BIGINT );
+        register( INT, Types.INTEGER );
+        register( SHORT, Types.SMALLINT );
+        register( BYTE, Types.TINYINT );
+        register( BOOLEAN, Types.BOOLEAN, Types.BIT );
+        register( FLOAT, Types.FLOAT, Types.REAL );
+        register( DOUBLE, Types.DOUBLE );
+        register( DECIMAL, Types.NUMERIC, Types.DECIMAL );
+        register( DATE, Types.DATE );
+        register( TIME, Types.TIME );
+        register( TIMESTAMP, Types.TIMESTAMP );
+        register( BYTES, Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB );
+        register( ARRAY, Types.ARRAY );
+    }
+
+    public void register( int sqlType, ColumnAccessor accessor )
+    {
+        accessors.put( sqlType, accessor );
+    }
+
+    private void register( ColumnAccessor accessor, int... sqlTypes )
+    {
+        for ( int sqlType : sqlTypes )
+        {
+            register( sqlType, accessor );
+        }
+    }
+
+    ColumnAccessor getAccessor( ResultSetMetaData metaData, int column ) throws SQLException
+    {
+        ColumnAccessor accessor = accessors.get( metaData.getColumnType( column ) );
+        if ( accessor == null )
+        {
+            throw new IllegalStateException( "Unknown type: " + metaData.getColumnTypeName( column ) );
+        }
+        if ( accessor == DECIMAL && metaData.getScale( column ) == 0 && metaData.getPrecision( column ) < 19 )
+        {
+            return INTEGRAL_DECIMAL;
+        }
+        return accessor;
+    }
+
+    static boolean hasNullElement( Object array )
+    {
+        if ( array instanceof Object[] )
+        {
+            for ( Object value : (Object[]) array )
+            {
+                if ( value == null )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static Object toPrimitiveArray( int baseType, Object array )
+    {
+        if ( !( array instanceof Object[] ) )
+        {
+            return array;
+        }
+        if ( hasNullElement( array ) )
+        {
+            throw new IllegalStateException( "Array has NULL elements, which can not be stored in a property array" );
+        }
+        Object[] values = (Object[]) array;
+        switch ( baseType )
+        {
+        case Types.BIGINT:
+            long[] longs = new long[values.length];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                longs[i] = ( (Number) values[i] ).longValue();
+            }
+            return longs;
+        case Types.INTEGER:
+            int[] ints = new int[values.length];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                ints[i] = ( (Number) values[i] ).intValue();
+            }
+            return ints;
+        case Types.SMALLINT:
+            short[] shorts = new short[values.length];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                shorts[i] = ( (Number) values[i] ).shortValue();
+            }
+            return shorts;
+        case Types.TINYINT:
+            byte[] bytes = new byte[values.length];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                bytes[i] = ( (Number) values[i] ).byteValue();
+            }
+            return bytes;
+        case Types.REAL:
+        case Types.FLOAT:
+            float[] floats = new float[values.length];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                floats[i] = ( (Number) values[i] ).floatValue();
+            }
+            return floats;
+        case Types.DOUBLE:
+        case Types.NUMERIC:
+        case Types.DECIMAL:
+            double[] doubles = new double[values.length];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                doubles[i] = ( (Number) values[i] ).doubleValue();
+            }
+            return doubles;
+        case Types.BOOLEAN:
+        case Types.BIT:
+            boolean[] booleans = new boolean[values.length];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                booleans[i] = (Boolean) values[i];
+            }
+            return booleans;
+        default:
+            String[] strings = new String[values.length];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                strings[i] = values[i].toString();
+            }
+            return strings;
+        }
+    }
+}
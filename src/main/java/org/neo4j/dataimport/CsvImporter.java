@@ -1,6 +1,5 @@
 package org.neo4j.dataimport;
 
-import org.neo4j.graphdb.DynamicRelationshipType;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.index.BatchInserterIndex;
 import org.neo4j.helpers.collection.MapUtil;
@@ -8,21 +7,78 @@ import org.neo4j.index.impl.lucene.LuceneBatchInserterIndexProvider;
 import org.neo4j.kernel.impl.batchinsert.BatchInserter;
 import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class CsvImporter implements BatchInserterImporter
 {
+    static final int DEFAULT_BATCH_SIZE = 10000;
+    static final byte DEFAULT_ARRAY_SEPARATOR = ';';
+    public static final long INFER_FROM_ALL_ROWS = Long.MAX_VALUE;
+
     private File nodes;
     private File rels;
+    private List<File> nodeFiles;
+    private List<File> relFiles;
+    private int parserThreads;
+    private int decompressionThreads = CsvReader.DEFAULT_DECOMPRESSION_THREADS;
+    private char delimiter = CsvReader.DEFAULT_DELIMITER;
+    private byte arraySeparator = DEFAULT_ARRAY_SEPARATOR;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int indexCacheCapacity;
+    private int indexThreads;
+    private File tempDirectory;
+    private boolean idMapping;
+    private IdMapper idMapper;
+    private int relationshipRunSize;
+    private boolean degreeGrouping;
+    private RelationshipSorter relationshipSorter;
+    private RowWriter rowWriter;
+    private RelationshipLookup relationshipLookup;
+    private RelationshipValidator validator;
+    private File rejectFile;
+    private long expectedRelationships;
+    private boolean deltaImport;
+    private String markerColumn;
+    private long typeSampleRows;
+    private TypeInference inferredTypes;
+    private File checkpointFile;
+    private ImportCheckpoint checkpoint;
+    private boolean resumed;
+    private long resumedNodes;
+    private long resumedRelationships;
+    private ImportPhase checkpointPhase;
+    private boolean resumingPhase;
+    private boolean reconcileNodes;
+    private long skipRelationships;
+    private int writtenPart;
+    private long writtenOffset;
+    private long writtenRows;
+    private Collection<IndexEntry> nodeIndices;
+    private final List<StageStatistics> pipelineStatistics = new ArrayList<StageStatistics>();
+    private final RelationshipTypes relationshipTypes = new RelationshipTypes();
+    private final ImportMetrics metrics = new ImportMetrics( relationshipTypes );
 
     public CsvImporter( File nodes, File rels )
     {
@@ -30,166 +86,1067 @@ public class CsvImporter implements BatchInserterImporter
         this.rels = rels;
     }
 
-    public static void main( String[] args )
+    public static void main( String[] args )
+    {
+        List<String> arguments = new ArrayList<String>( Arrays.asList( args ) );
+        boolean checkpointing = arguments.remove( ImportCheckpoint.OPTION );
+        if ( arguments.size() != 3 && arguments.size() != 4 )
+        {
+            System.out.println( "Args: [" + ImportCheckpoint.OPTION + "] <target store dir> <nodes CSV|dir|glob> <relationships CSV|dir|glob> [parser threads]" );
+            System.exit( 1 );
+        }
+        String storeDir = arguments.get( 0 );
+        CsvImporter importer = new CsvImporter( new File( arguments.get( 1 ) ), new File( arguments.get( 2 ) ) );
+        if ( arguments.size() == 4 )
+        {
+            importer.setParserThreads( Integer.parseInt( arguments.get( 3 ) ) );
+        }
+        if ( checkpointing )
+        {
+            importer.setCheckpointing( new File( storeDir, ImportCheckpoint.FILE_NAME ) );
+        }
+        StoreSizeEstimate estimate = importer.estimateStoreSize( StoreSizeEstimate.DEFAULT_SAMPLE_ROWS );
+        System.out.println( "Estimated store: " + estimate );
+        Map<String, String> config = estimate.configure( getConfig( storeDir ), StoreSizeEstimate.availableMemory() );
+        BatchInserter batchInserter = new BatchInserterImpl( storeDir, config );
+        try
+        {
+            ProgressReporter.importWithProgress( importer, batchInserter, "csv" );
+            for ( StageStatistics statistics : importer.getPipelineStatistics() )
+            {
+                System.out.println( statistics );
+            }
+        }
+        finally
+        {
+            batchInserter.shutdown();
+        }
+    }
+
+    @Override
+    public void importTo( BatchInserter target )
+    {
+        final LuceneBatchInserterIndexProvider batchInserter = new LuceneBatchInserterIndexProvider( target );
+        try
+        {
+            nodeFiles = InputFiles.resolve( nodes );
+            relFiles = InputFiles.resolve( rels );
+            openCheckpoint();
+            rowWriter = new RowWriter( target );
+            relationshipLookup = deltaImport ? new RelationshipLookup( target ) : null;
+            validator = new RelationshipValidator( target, rejectFile, resumed, resumed || deltaImport, expectedRelationships );
+            if ( idMapping )
+            {
+                idMapper = new IdMapper( tempDirectory );
+            }
+            metrics.started( InputFiles.length( nodeFiles ) + InputFiles.length( relFiles ) );
+            if ( !isPhaseDone( ImportPhase.NODES ) )
+            {
+                metrics.phaseStarted( ImportPhase.NODES );
+                startPhase( ImportPhase.NODES, target );
+                nodeIndices = importNodes( target, batchInserter );
+                metrics.phaseCompleted( ImportPhase.NODES );
+            }
+            if ( !isPhaseDone( ImportPhase.RELATIONSHIPS ) )
+            {
+                metrics.phaseStarted( ImportPhase.RELATIONSHIPS );
+                startPhase( ImportPhase.RELATIONSHIPS, target );
+                importRels( target );
+                metrics.phaseCompleted( ImportPhase.RELATIONSHIPS );
+            }
+            if ( isIndexingDeferred() )
+            {
+                metrics.phaseStarted( ImportPhase.INDEXING );
+                long start = System.nanoTime();
+                buildDeferredIndices( nodeIndices );
+                metrics.indexed( System.nanoTime() - start );
+                metrics.phaseCompleted( ImportPhase.INDEXING );
+            }
+            if ( checkpoint != null )
+            {
+                checkpoint.completed();
+            }
+        }
+        catch ( Exception e )
+        {
+            saveCheckpointOnFailure();
+            throw new DataImportException( e );
+        }
+        finally {
+            batchInserter.shutdown();
+            closeIdMapper();
+            closeValidator();
+            metrics.completed();
+            checkpoint = null;
+            checkpointPhase = null;
+            nodeIndices = null;
+        }
+    }
+
+    private void openCheckpoint() throws IOException
+    {
+        if ( checkpointFile == null ) return;
+        if ( idMapping || isIndexingDeferred() )
+        {
+            throw new IllegalStateException( "Checkpoints can not be combined with id mapping or deferred indexing, both keep state in temp files." );
+        }
+        List<File> input = new ArrayList<File>( nodeFiles );
+        input.addAll( relFiles );
+        // a refused checkpoint is left as it is, it only takes part in the import once it was loaded
+        ImportCheckpoint opened = new ImportCheckpoint( checkpointFile, ImportCheckpoint.describe( input ) );
+        resumed = opened.load();
+        opened.started();
+        checkpoint = opened;
+        resumedNodes = resumed ? checkpoint.getNodes() : 0;
+        resumedRelationships = resumed ? checkpoint.getRelationships() : 0;
+    }
+
+    private boolean isPhaseDone( ImportPhase phase )
+    {
+        return resumed && checkpoint.isPhaseDone( phase );
+    }
+
+    private void startPhase( ImportPhase phase, BatchInserter target ) throws IOException
+    {
+        resumingPhase = false;
+        reconcileNodes = false;
+        skipRelationships = 0;
+        writtenPart = 0;
+        writtenOffset = 0;
+        writtenRows = 0;
+        if ( checkpoint == null ) return;
+        checkpointPhase = phase;
+        if ( resumed && checkpoint.isResumingPhase( phase ) )
+        {
+            resumingPhase = true;
+            writtenPart = checkpoint.getPart();
+            writtenOffset = checkpoint.getOffset();
+            writtenRows = checkpoint.getRows();
+            // upserts can be applied twice, a fresh store is reconciled with what was written after the checkpoint
+            reconcileNodes = !deltaImport && phase == ImportPhase.NODES;
+            skipRelationships = !deltaImport && phase == ImportPhase.RELATIONSHIPS ? checkpoint.relationshipsAfterCheckpoint( target ) : 0;
+        }
+        else
+        {
+            checkpoint.phaseStarted( phase, totalNodes(), totalRelationships() );
+        }
+    }
+
+    private long totalNodes()
+    {
+        return resumedNodes + metrics.getNodes();
+    }
+
+    private long totalRelationships()
+    {
+        return resumedRelationships + metrics.getRelationships();
+    }
+
+    private void written( int part, long offset, int rows )
+    {
+        if ( checkpoint == null || relationshipSorter != null ) return;
+        writtenPart = part;
+        writtenOffset = offset;
+        writtenRows += rows;
+    }
+
+    // the store and the indexes are shut down after a failure, so the last written row is the checkpoint
+    private void saveCheckpointOnFailure()
+    {
+        if ( checkpoint == null || checkpoint.isCompleted() ) return;
+        try
+        {
+            if ( checkpointPhase != null )
+            {
+                checkpoint.position( writtenPart, writtenOffset, writtenRows, totalNodes(), totalRelationships() );
+            }
+            checkpoint.failed();
+        }
+        catch ( Exception e )
+        {
+            System.err.println( "Unable to save checkpoint " + checkpointFile + ": " + e );
+        }
+    }
+
+    // positions the reader at the checkpoint after the first line, returns true if the reader was moved
+    private boolean seekToCheckpoint( CsvReader reader ) throws IOException
+    {
+        if ( !resumingPhase || ( writtenPart == 0 && writtenOffset == 0 ) )
+        {
+            return false;
+        }
+        reader.seek( writtenPart, writtenOffset );
+        return true;
+    }
+
+    private void closeIdMapper()
+    {
+        if ( idMapper == null ) return;
+        try
+        {
+            idMapper.close();
+        }
+        catch ( IOException e )
+        {
+            throw new DataImportException( e );
+        }
+        idMapper = null;
+    }
+
+    private void closeValidator()
+    {
+        if ( validator == null ) return;
+        try
+        {
+            validator.close();
+        }
+        catch ( IOException e )
+        {
+            throw new DataImportException( e );
+        }
+        validator = null;
+    }
+
+    private static Map<String, String> getConfig( String storeDir )
+    {
+        File configFile = new File( storeDir, "neo4j.properties" );
+        if ( configFile.exists() )
+        {
+            return BatchInserterImpl.loadProperties( configFile.getAbsolutePath() );
+        }
+        return new HashMap<String, String>();
+    }
+
+    private Collection<IndexEntry> importNodes( BatchInserter target, LuceneBatchInserterIndexProvider indexProvider ) throws Exception
+    {
+        inferredTypes = inferTypes( nodeFiles, 1 );
+        CsvReader nodeReader = openReader( nodeFiles );
+        try
+        {
+            if ( parserThreads > 0 )
+            {
+                return importNodesInParallel( nodeReader, target, indexProvider );
+            }
+            else
+            {
+                return importNodesSequentially( nodeReader, target, indexProvider );
+            }
+        }
+        finally
+        {
+            nodeReader.close();
+        }
+    }
+
+    // samples the rows after the header, untyped columns are then parsed as the narrowest type all sampled values fit
+    private TypeInference inferTypes( List<File> files, int idFields ) throws IOException
+    {
+        if ( typeSampleRows == 0 )
+        {
+            return null;
+        }
+        int firstField = idFields == 1 ? 1 : 3;
+        CsvReader reader = openReader( files );
+        try
+        {
+            CsvRecord header = reader.next();
+            if ( header == null || !isHeader( header, idFields, true ) )
+            {
+                return null;
+            }
+            reader.skipRepeatedHeader( header );
+            TypeInference inference = new TypeInference( Math.max( 0, header.fieldCount() - firstField ) );
+            CsvRecord record;
+            for ( long rows = 0; rows < typeSampleRows && ( record = reader.next() ) != null; rows++ )
+            {
+                inference.sample( record, firstField );
+            }
+            return inference;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    // reads the first rows of the input and scales them up to its size, so the store files can be planned before the import
+    public StoreSizeEstimate estimateStoreSize( int sampleRows )
+    {
+        try
+        {
+            StoreSizeEstimate estimate = new StoreSizeEstimate();
+            StoreSizeEstimate.Sample nodeSample = new StoreSizeEstimate.Sample();
+            estimate.addNodes( sampleRows( InputFiles.resolve( nodes ), 1, sampleRows, nodeSample ), nodeSample );
+            StoreSizeEstimate.Sample relSample = new StoreSizeEstimate.Sample();
+            estimate.addRelationships( sampleRows( InputFiles.resolve( rels ), 2, sampleRows, relSample ), relSample );
+            return estimate;
+        }
+        catch ( IOException e )
+        {
+            throw new DataImportException( e );
+        }
+    }
+
+    private long sampleRows( List<File> files, int idFields, int sampleRows, StoreSizeEstimate.Sample sample ) throws IOException
+    {
+        int firstField = idFields == 1 ? 1 : 3;
+        CsvReader reader = openReader( files );
+        try
+        {
+            List<PropertyKey> keys = Collections.emptyList();
+            CsvRecord record = reader.next();
+            if ( record != null && isHeader( record, idFields, true ) )
+            {
+                reader.skipRepeatedHeader( record );
+                keys = parsePropertyKeys( record, firstField );
+                record = reader.next();
+            }
+            while ( record != null && sample.getRows() < sampleRows )
+            {
+                for ( int i = firstField; i < record.fieldCount() && i - firstField < keys.size(); i++ )
+                {
+                    if ( record.isEmpty( i ) )
+                    {
+                        continue;
+                    }
+                    if ( keys.get( i - firstField ).getType() == PropertyType.stringType )
+                    {
+                        sample.stringProperty( record.fieldEnd( i ) - record.fieldStart( i ) );
+                    }
+                    else
+                    {
+                        sample.property();
+                    }
+                }
+                sample.endRow();
+                record = reader.next();
+            }
+            if ( record == null )
+            {
+                return sample.getRows();
+            }
+            return (long) ( (double) sample.getRows() * InputFiles.length( files ) / Math.max( 1, reader.position() ) );
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private CsvReader openReader( List<File> files ) throws IOException
+    {
+        CsvReader reader = new CsvReader( files, CsvReader.DEFAULT_WINDOW_SIZE, decompressionThreads );
+        reader.setDelimiter( delimiter );
+        return reader;
+    }
+
+    private Collection<IndexEntry> importNodesSequentially( CsvReader nodeReader, BatchInserter target, LuceneBatchInserterIndexProvider indexProvider ) throws IOException
+    {
+        List<PropertyKey> nodePropertyKeys = null;
+        RowFormat format = new RowFormat( null, markerColumn );
+        PropertyRow row = new PropertyRow( format.names );
+        Collection<IndexEntry> indices = null;
+        boolean firstLine = true;
+        CsvRecord record;
+        while ( ( record = nodeReader.next() ) != null )
+        {
+            if ( isHeader( record, 1, firstLine ) )
+            {
+                if ( nodePropertyKeys != null )
+                {
+                    throw new IllegalStateException( "Can only set property keys once." );
+                }
+                if ( firstLine )
+                {
+                    nodeReader.skipRepeatedHeader( record );
+                }
+                if ( record.fieldCount() > 1 )
+                {
+                    nodePropertyKeys = parsePropertyKeys( record, 1 );
+                    indices = configureIndices( nodePropertyKeys, indexProvider );
+                    nodeIndices = indices;
+                    format = new RowFormat( nodePropertyKeys, markerColumn );
+                    row = new PropertyRow( format.names );
+                }
+                if ( firstLine )
+                {
+                    seekToCheckpoint( nodeReader );
+                }
+                firstLine = false;
+                continue;
+            }
+            if ( firstLine && seekToCheckpoint( nodeReader ) )
+            {
+                firstLine = false;
+                continue;
+            }
+            firstLine = false;
+            if ( !isMarkedDeleted( record, 1, format ) )
+            {
+                long id = nodeId( record );
+                readProperties( record, 1, format, row.rows(), 0 );
+                createNode( target, id, row, indices );
+            }
+            metrics.setBytesRead( nodeReader.position() );
+            written( nodeReader.part(), nodeReader.partOffset(), 1 );
+        }
+        return indices;
+    }
+
+    private Collection<IndexEntry> importNodesInParallel( CsvReader nodeReader, final BatchInserter target, LuceneBatchInserterIndexProvider indexProvider ) throws Exception
+    {
+        CsvRecord first = nodeReader.next();
+        List<PropertyKey> keys = null;
+        Collection<IndexEntry> indexEntries = null;
+        if ( first != null && isHeader( first, 1, true ) )
+        {
+            nodeReader.skipRepeatedHeader( first );
+            if ( first.fieldCount() > 1 )
+            {
+                keys = parsePropertyKeys( first, 1 );
+                indexEntries = configureIndices( keys, indexProvider );
+                nodeIndices = indexEntries;
+            }
+            first = null;
+            seekToCheckpoint( nodeReader );
+        }
+        else if ( first != null && seekToCheckpoint( nodeReader ) )
+        {
+            first = null;
+        }
+        final List<PropertyKey> nodePropertyKeys = keys;
+        final RowFormat format = new RowFormat( keys, markerColumn );
+        final Collection<IndexEntry> indices = indexEntries;
+        final RecordBatchSource source = new RecordBatchSource( nodeReader, first, 0 );
+        ImportPipeline<RecordBatch, NodeBatch> pipeline = new ImportPipeline<RecordBatch, NodeBatch>( "nodes", parserThreads, parserThreads * 2 );
+        pipeline.run( source, new ImportPipeline.Stage<RecordBatch, NodeBatch>()
+        {
+            @Override
+            public NodeBatch process( RecordBatch input )
+            {
+                CsvRecord record = new CsvRecord();
+                NodeBatch output = new NodeBatch( input.size(), format.names );
+                for ( int i = 0; i < input.size(); i++ )
+                {
+                    input.record( i, record );
+                    if ( isHeader( record, 1, false ) )
+                    {
+                        throw misplacedHeader( nodePropertyKeys );
+                    }
+                    if ( isMarkedDeleted( record, 1, format ) )
+                    {
+                        continue;
+                    }
+                    readProperties( record, 1, format, output.rows(), output.add( nodeId( record ) ) );
+                }
+                return output;
+            }
+        }, new ImportPipeline.Sink<NodeBatch>()
+        {
+            @Override
+            public void accept( NodeBatch batch ) throws IOException
+            {
+                createNodes( target, batch, indices );
+                source.written( batch.size() );
+            }
+        } );
+        addPipelineStatistics( pipeline );
+        return indices;
+    }
+
+    // whole batches go to the row writer unless rows need to be checked against the store one by one
+    private void createNodes( BatchInserter target, NodeBatch batch, Collection<IndexEntry> indices ) throws IOException
+    {
+        if ( reconcileNodes || deltaImport )
+        {
+            for ( int i = 0; i < batch.size(); i++ )
+            {
+                createNode( target, batch.getId( i ), batch.getProperties( i ), indices );
+            }
+            return;
+        }
+        rowWriter.createNodes( batch );
+        for ( int i = 0; i < batch.size(); i++ )
+        {
+            validator.nodeCreated( batch.getId( i ) );
+        }
+        if ( indices != null )
+        {
+            for ( int i = 0; i < batch.size(); i++ )
+            {
+                indexProperties( batch.getId( i ), indices, batch.getProperties( i ) );
+            }
+        }
+        metrics.nodesCreated( batch.size() );
+    }
+
+    private void createNode( BatchInserter target, long id, Map<String, Object> props, Collection<IndexEntry> indices ) throws IOException
+    {
+        if ( reconcileNodes )
+        {
+            // nodes written after the checkpoint, up to the first one missing, are already in the store
+            if ( target.nodeExists( id ) )
+            {
+                validator.nodeCreated( id );
+                metrics.nodeCreated();
+                return;
+            }
+            reconcileNodes = false;
+        }
+        if ( deltaImport )
+        {
+            StoreUpdates.upsertNode( target, id, props );
+        }
+        else
+        {
+            target.createNode( id, props );
+        }
+        validator.nodeCreated( id );
+        indexProperties( id, indices, props );
+        metrics.nodeCreated();
+    }
+
+    private void indexProperties( long id, Collection<IndexEntry> indices, Map<String, Object> props ) throws IOException
+    {
+        if ( indices == null ) return;
+        long start = System.nanoTime();
+        for ( IndexEntry indexEntry : indices )
+        {
+            indexEntry.add( id, props );
+        }
+        metrics.indexed( System.nanoTime() - start );
+    }
+
+    private boolean isIndexingDeferred()
+    {
+        return indexThreads > 0;
+    }
+
+    private void buildDeferredIndices( Collection<IndexEntry> indices ) throws Exception
+    {
+        if ( indices == null || indices.isEmpty() ) return;
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( indexThreads, indices.size() ) );
+        try
+        {
+            List<Future<Object>> builds = new ArrayList<Future<Object>>();
+            for ( final IndexEntry indexEntry : indices )
+            {
+                builds.add( executor.submit( new Callable<Object>()
+                {
+                    @Override
+                    public Object call() throws IOException
+                    {
+                        indexEntry.buildFromSpool();
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<Object> build : builds )
+            {
+                try
+                {
+                    build.get();
+                }
+                catch ( ExecutionException e )
+                {
+                    if ( e.getCause() instanceof Exception )
+                    {
+                        throw (Exception) e.getCause();
+                    }
+                    throw (Error) e.getCause();
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private Collection<IndexEntry> configureIndices( List<PropertyKey> nodePropertyKeys, LuceneBatchInserterIndexProvider indexProvider )
+    {
+        Map<String, IndexEntry> indices = new HashMap<String, IndexEntry>();
+        for ( PropertyKey propertyKey : nodePropertyKeys )
+        {
+            if ( propertyKey.isIndexed() )
+            {
+                IndexEntry indexEntry = indices.get( propertyKey.getIndex() );
+                if (indexEntry == null)
+                {
+                    indexEntry = new IndexEntry( propertyKey.getIndex(), indexProvider.nodeIndex( propertyKey.getIndex(), MapUtil.stringMap( "type", "exact" ) ) );
+                    indices.put( propertyKey.getIndex(), indexEntry );
+                }
+                indexEntry.addKey( propertyKey.getName() );
+                if ( indexCacheCapacity > 0 )
+                {
+                    indexEntry.getIndex().setCacheCapacity( propertyKey.getName(), indexCacheCapacity );
+                }
+            }
+        }
+        return indices.values();
+    }
+
+    private void importRels( final BatchInserter target ) throws Exception
+    {
+        inferredTypes = inferTypes( relFiles, 2 );
+        if ( degreeGrouping )
+        {
+            relationshipSorter = new RelationshipSorter( tempDirectory, sortRunSize(), relationshipTypes, countDegrees() );
+        }
+        else if ( relationshipRunSize > 0 )
+        {
+            relationshipSorter = new RelationshipSorter( tempDirectory, relationshipRunSize, relationshipTypes );
+        }
+        CsvReader relReader = openReader( relFiles );
+        try
+        {
+            if ( parserThreads > 0 )
+            {
+                importRelsInParallel( relReader, target );
+            }
+            else
+            {
+                importRelsSequentially( relReader, target );
+            }
+            if ( relationshipSorter != null )
+            {
+                relationshipSorter.writeSorted( batchSize, new ImportPipeline.Sink<RelationshipBatch>()
+                {
+                    @Override
+                    public void accept( RelationshipBatch batch ) throws IOException
+                    {
+                        insertRelationships( target, batch );
+                    }
+                } );
+            }
+        }
+        finally
+        {
+            relReader.close();
+            if ( relationshipSorter != null )
+            {
+                relationshipSorter.close();
+                relationshipSorter = null;
+            }
+        }
+    }
+
+    // a first pass that only reads the endpoints, misplaced headers are left for the import itself to report
+    private NodeDegrees countDegrees() throws IOException
+    {
+        NodeDegrees degrees = new NodeDegrees();
+        CsvReader reader = openReader( relFiles );
+        try
+        {
+            boolean firstLine = true;
+            CsvRecord record;
+            while ( ( record = reader.next() ) != null )
+            {
+                checkRelationshipFields( record );
+                if ( isHeader( record, 2, firstLine ) )
+                {
+                    if ( firstLine )
+                    {
+                        reader.skipRepeatedHeader( record );
+                    }
+                }
+                else
+                {
+                    degrees.add( endpoint( record, 0 ), endpoint( record, 1 ) );
+                }
+                firstLine = false;
+            }
+            return degrees;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private int sortRunSize()
+    {
+        return relationshipRunSize > 0 ? relationshipRunSize : RelationshipSorter.DEFAULT_RUN_SIZE;
+    }
+
+    private void importRelsSequentially( CsvReader relReader, BatchInserter target ) throws IOException
+    {
+        List<PropertyKey> relPropertyKeys = null;
+        RowFormat format = new RowFormat( null, markerColumn );
+        PropertyRow row = new PropertyRow( format.names );
+        boolean firstLine = true;
+        long inputOffset = InputFiles.length( nodeFiles );
+        CsvRecord record;
+        while ( ( record = relReader.next() ) != null )
+        {
+            checkRelationshipFields( record );
+            if ( isHeader( record, 2, firstLine ) )
+            {
+                if ( relPropertyKeys != null )
+                {
+                    throw new IllegalStateException( "Can only set property keys once." );
+                }
+                if ( firstLine )
+                {
+                    relReader.skipRepeatedHeader( record );
+                }
+                if ( record.fieldCount() > 3 )
+                {
+                    relPropertyKeys = parsePropertyKeys( record, 3 );
+                    format = new RowFormat( relPropertyKeys, markerColumn );
+                    row = new PropertyRow( format.names );
+                }
+                if ( firstLine )
+                {
+                    seekToCheckpoint( relReader );
+                }
+                firstLine = false;
+                continue;
+            }
+            if ( firstLine && seekToCheckpoint( relReader ) )
+            {
+                firstLine = false;
+                continue;
+            }
+            firstLine = false;
+            if ( !isMarkedDeleted( record, 3, format ) )
+            {
+                RelationshipType type = relationshipTypes.get( record, 2 );
+                long from = endpoint( record, 0 );
+                long to = endpoint( record, 1 );
+                readProperties( record, 3, format, row.rows(), 0 );
+                createRelationship( target, from, to, type, row );
+            }
+            metrics.setBytesRead( inputOffset + relReader.position() );
+            written( relReader.part(), relReader.partOffset(), 1 );
+        }
+    }
+
+    private void importRelsInParallel( CsvReader relReader, final BatchInserter target ) throws Exception
+    {
+        CsvRecord first = relReader.next();
+        List<PropertyKey> keys = null;
+        if ( first != null )
+        {
+            checkRelationshipFields( first );
+            if ( isHeader( first, 2, true ) )
+            {
+                relReader.skipRepeatedHeader( first );
+                if ( first.fieldCount() > 3 )
+                {
+                    keys = parsePropertyKeys( first, 3 );
+                }
+                first = null;
+                seekToCheckpoint( relReader );
+            }
+            else if ( seekToCheckpoint( relReader ) )
+            {
+                first = null;
+            }
+        }
+        final List<PropertyKey> relPropertyKeys = keys;
+        final RowFormat format = new RowFormat( keys, markerColumn );
+        final RecordBatchSource source = new RecordBatchSource( relReader, first, InputFiles.length( nodeFiles ) );
+        ImportPipeline<RecordBatch, RelationshipBatch> pipeline = new ImportPipeline<RecordBatch, RelationshipBatch>( "relationships", parserThreads, parserThreads * 2 );
+        pipeline.run( source, new ImportPipeline.Stage<RecordBatch, RelationshipBatch>()
+        {
+            @Override
+            public RelationshipBatch process( RecordBatch input )
+            {
+                CsvRecord record = new CsvRecord();
+                RelationshipBatch output = new RelationshipBatch( input.size(), format.names );
+                for ( int i = 0; i < input.size(); i++ )
+                {
+                    input.record( i, record );
+                    checkRelationshipFields( record );
+                    if ( isHeader( record, 2, false ) )
+                    {
+                        throw misplacedHeader( relPropertyKeys );
+                    }
+                    if ( isMarkedDeleted( record, 3, format ) )
+                    {
+                        continue;
+                    }
+                    int row = output.add( endpoint( record, 0 ), endpoint( record, 1 ), relationshipTypes.get( record, 2 ) );
+                    readProperties( record, 3, format, output.rows(), row );
+                }
+                return output;
+            }
+        }, new ImportPipeline.Sink<RelationshipBatch>()
+        {
+            @Override
+            public void accept( RelationshipBatch batch ) throws IOException
+            {
+                if ( relationshipSorter == null )
+                {
+                    insertRelationships( target, batch );
+                }
+                else
+                {
+                    for ( int i = 0; i < batch.size(); i++ )
+                    {
+                        relationshipSorter.add( batch.getFrom( i ), batch.getTo( i ), batch.getType( i ), batch.getProperties( i ) );
+                    }
+                }
+                source.written( batch.size() );
+            }
+        } );
+        addPipelineStatistics( pipeline );
+    }
+
+    private void createRelationship( BatchInserter target, long from, long to, RelationshipType type, Map<String, Object> props ) throws IOException
+    {
+        if ( relationshipSorter != null )
+        {
+            relationshipSorter.add( from, to, type, props );
+            return;
+        }
+        insertRelationship( target, from, to, type, props );
+    }
+
+    private void insertRelationships( BatchInserter target, RelationshipBatch batch ) throws IOException
+    {
+        if ( skipRelationships > 0 || deltaImport )
+        {
+            for ( int i = 0; i < batch.size(); i++ )
+            {
+                insertRelationship( target, batch.getFrom( i ), batch.getTo( i ), batch.getType( i ), batch.getProperties( i ) );
+            }
+            return;
+        }
+        BitSet rejected = null;
+        for ( int i = 0; i < batch.size(); i++ )
+        {
+            if ( !validate( batch.getFrom( i ), batch.getTo( i ), batch.getType( i ) ) )
+            {
+                rejected = rejected == null ? new BitSet( batch.size() ) : rejected;
+                rejected.set( i );
+            }
+        }
+        if ( rejected != null )
+        {
+            for ( int i = rejected.nextClearBit( 0 ); i < batch.size(); i = rejected.nextClearBit( i + 1 ) )
+            {
+                writeRelationship( target, batch.getFrom( i ), batch.getTo( i ), batch.getType( i ), batch.getProperties( i ) );
+            }
+            return;
+        }
+        rowWriter.createRelationships( batch );
+        validator.written();
+        for ( int i = 0; i < batch.size(); i++ )
+        {
+            relationshipTypes.created( batch.getType( i ) );
+        }
+        metrics.relationshipsCreated( batch.size() );
+    }
+
+    private void insertRelationship( BatchInserter target, long from, long to, RelationshipType type, Map<String, Object> props ) throws IOException
+    {
+        if ( validate( from, to, type ) )
+        {
+            writeRelationship( target, from, to, type, props );
+        }
+    }
+
+    private boolean validate( long from, long to, RelationshipType type ) throws IOException
+    {
+        if ( validator.accept( from, to, type ) )
+        {
+            return true;
+        }
+        metrics.relationshipRejected();
+        return false;
+    }
+
+    private void writeRelationship( BatchInserter target, long from, long to, RelationshipType type, Map<String, Object> props )
+    {
+        if ( skipRelationships > 0 )
+        {
+            // written after the checkpoint, relationship ids follow the insertion order
+            skipRelationships--;
+            validator.written();
+            relationshipTypes.created( type );
+            metrics.relationshipCreated();
+            return;
+        }
+        if ( deltaImport )
+        {
+            relationshipLookup.upsert( from, to, type, props );
+        }
+        else
+        {
+            target.createRelationship( from, to, type, props );
+        }
+        validator.written();
+        relationshipTypes.created( type );
+        metrics.relationshipCreated();
+    }
+
+    private void checkRelationshipFields( CsvRecord record )
+    {
+        if ( record.fieldCount() < 3 )
+        {
+            throw new IllegalStateException( "Relationship must have at least <from>,<to>,<type>" );
+        }
+    }
+
+    private boolean isHeader( CsvRecord record, int idFields, boolean firstLine )
     {
-        if ( args.length != 3 )
+        if ( idMapping )
         {
-            System.out.println( "Args: <target store dir> <nodes CSV> <relationships CSV>" );
-            System.exit( 1 );
+            return firstLine;
         }
-        String storeDir = args[0];
-        BatchInserter batchInserter = new BatchInserterImpl( storeDir, getConfig( storeDir ) );
-        try
+        for ( int i = 0; i < idFields; i++ )
         {
-            new CsvImporter( new File( args[1] ), new File( args[2] ) ).importTo( batchInserter );
+            if ( !record.isLong( i ) )
+            {
+                return true;
+            }
         }
-        finally
+        return false;
+    }
+
+    private long nodeId( CsvRecord record )
+    {
+        if ( idMapper == null )
         {
-            batchInserter.shutdown();
+            return record.getLong( 0 );
         }
+        return idMapper.add( record.buffer(), record.fieldStart( 0 ), record.fieldEnd( 0 ) );
     }
 
-    @Override
-    public void importTo( BatchInserter target )
+    private long endpoint( CsvRecord record, int field )
     {
-        final LuceneBatchInserterIndexProvider batchInserter = new LuceneBatchInserterIndexProvider( target );
-        try
+        if ( idMapper == null )
         {
-            importNodes( target, batchInserter );
-            importRels( target );
+            return record.getLong( field );
         }
-        catch ( Exception e )
+        long id = idMapper.get( record.buffer(), record.fieldStart( field ), record.fieldEnd( field ) );
+        // with a reject file the row is rejected when it is written
+        if ( id == IdMapper.NOT_FOUND && rejectFile == null )
         {
-            throw new DataImportException( e );
-        }
-        finally {
-            batchInserter.shutdown();
+            throw new IllegalStateException( "Relationship refers to unknown node id '" + record.getString( field ) + "'" );
         }
+        return id;
     }
 
-    private static Map<String, String> getConfig( String storeDir )
+    private IllegalStateException misplacedHeader( List<PropertyKey> keys )
     {
-        File configFile = new File( storeDir, "neo4j.properties" );
-        if ( configFile.exists() )
+        if ( keys != null )
         {
-            return BatchInserterImpl.loadProperties( configFile.getAbsolutePath() );
+            return new IllegalStateException( "Can only set property keys once." );
         }
-        return new HashMap<String, String>();
+        return new IllegalStateException( "Property keys must be on the first line when parsing in parallel." );
     }
 
-    private void importNodes( BatchInserter target, LuceneBatchInserterIndexProvider indexProvider ) throws FileNotFoundException
+    private void addPipelineStatistics( ImportPipeline<?, ?> pipeline )
     {
-        List<PropertyKey> nodePropertyKeys = null;
-        Collection<IndexEntry> indices = null;
-        long counter = 0;
-        Scanner nodeScanner = new Scanner( nodes );
-        while ( nodeScanner.hasNextLine() )
-        {
-            String[] nodeParts = nodeScanner.nextLine().split( "," );
-            List<String> properties = Arrays.asList( nodeParts ).subList( 1, nodeParts.length );
-            long id;
-            try
-            {
-                id = Long.parseLong( nodeParts[0] );
-            }
-            catch ( NumberFormatException e )
-            {
-                if ( nodePropertyKeys != null )
-                {
-                    throw new IllegalStateException( "Can only set property keys once." );
-                }
-                if ( properties.size() > 0 )
-                {
-                    nodePropertyKeys = parsePropertyKeys( properties );
-                    indices = configureIndices( nodePropertyKeys, indexProvider );
-                }
-                continue;
-            }
-            final Map<String, Object> props = getProperties( properties, nodePropertyKeys );
-            target.createNode( id, props );
-            indexProperties( id, indices, props );
-            if ( ++counter % 100000 == 0 ) System.out.println( "Created " + counter + " nodes." );
-        }
+        pipelineStatistics.addAll( pipeline.getStatistics() );
     }
 
-    private void indexProperties( long id, Collection<IndexEntry> indices, Map<String, Object> props )
+    public void setParserThreads( int parserThreads )
     {
-        if ( indices == null ) return;
-        for ( IndexEntry indexEntry : indices )
-        {
-            Map<String, Object> indexedKeys = new HashMap<String, Object>();
-            for ( String key : indexEntry.getKeys() )
-            {
-                indexedKeys.put( key, props.get( key ) );
-            }
-            indexEntry.getIndex().add( id, indexedKeys );
-        }
+        this.parserThreads = parserThreads;
     }
 
-    private Collection<IndexEntry> configureIndices( List<PropertyKey> nodePropertyKeys, LuceneBatchInserterIndexProvider indexProvider )
+    public void setDecompressionThreads( int decompressionThreads )
     {
-        Map<String, IndexEntry> indices = new HashMap<String, IndexEntry>();
-        for ( PropertyKey propertyKey : nodePropertyKeys )
-        {
-            if ( propertyKey.isIndexed() )
-            {
-                IndexEntry indexEntry = indices.get( propertyKey.getIndex() );
-                if (indexEntry == null)
-                {
-                    indexEntry = new IndexEntry( indexProvider.nodeIndex( propertyKey.getIndex(), MapUtil.stringMap( "type", "exact" ) ) );
-                    indices.put( propertyKey.getIndex(), indexEntry );
-                }
-                indexEntry.addKey( propertyKey.getName() );
-            }
-        }
-        return indices.values();
+        this.decompressionThreads = decompressionThreads;
     }
 
-    private void importRels( BatchInserter target ) throws FileNotFoundException
+    public void setDeltaImport( String markerColumn )
     {
-        List<PropertyKey> relPropertyKeys = null;
-        long counter = 0;
-        Scanner nodeScanner = new Scanner( rels );
-        while ( nodeScanner.hasNextLine() )
+        this.deltaImport = true;
+        this.markerColumn = markerColumn;
+    }
+
+    public void setTypeInference( long sampleRows )
+    {
+        this.typeSampleRows = sampleRows;
+    }
+
+    public void setCheckpointing( File checkpointFile )
+    {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public void setDelimiter( char delimiter )
+    {
+        this.delimiter = delimiter;
+    }
+
+    public void setArraySeparator( char separator )
+    {
+        if ( separator > 127 || separator == '"' || separator == '\n' || separator == '\r' )
         {
-            String[] relParts = nodeScanner.nextLine().split( "," );
-            if ( relParts.length < 3 )
-            {
-                throw new IllegalStateException( "Relationship must have at least <from>,<to>,<type>" );
-            }
-            List<String> properties = Arrays.asList( relParts ).subList( 3, relParts.length );
-            long from;
-            long to;
-            RelationshipType type;
-            try
-            {
-                from = Long.parseLong( relParts[0] );
-                to = Long.parseLong( relParts[1] );
-                type = DynamicRelationshipType.withName( relParts[2] );
-            }
-            catch ( NumberFormatException e )
-            {
-                if ( relPropertyKeys != null )
-                {
-                    throw new IllegalStateException( "Can only set property keys once." );
-                }
-                if ( properties.size() > 0 )
-                {
-                    relPropertyKeys = parsePropertyKeys( properties );
-                }
-                continue;
-            }
-            target.createRelationship( from, to, type, getProperties( properties, relPropertyKeys ) );
-            if ( ++counter % 100000 == 0 ) System.out.println( "Created " + counter + " relationships." );
+            throw new IllegalArgumentException( "Array separator has to be a single byte character other than quotes and line breaks, got '" + separator + "'" );
         }
+        this.arraySeparator = (byte) separator;
+    }
+
+    public void setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+    }
+
+    public void setDeferredIndexing( int indexThreads )
+    {
+        this.indexThreads = indexThreads;
     }
 
-    private List<PropertyKey> parsePropertyKeys( List<String> properties )
+    public void setTempDirectory( File tempDirectory )
+    {
+        this.tempDirectory = tempDirectory;
+    }
+
+    public void setRelationshipSorting( int runSize )
+    {
+        this.relationshipRunSize = runSize;
+    }
+
+    public void setDegreeGrouping( boolean degreeGrouping )
+    {
+        this.degreeGrouping = degreeGrouping;
+    }
+
+    public void setRejectFile( File rejectFile )
+    {
+        this.rejectFile = rejectFile;
+    }
+
+    public void setDuplicateSuppression( long expectedRelationships )
+    {
+        this.expectedRelationships = expectedRelationships;
+    }
+
+    public void setIdMapping( boolean idMapping )
+    {
+        this.idMapping = idMapping;
+    }
+
+    public void setIndexCacheCapacity( int indexCacheCapacity )
+    {
+        this.indexCacheCapacity = indexCacheCapacity;
+    }
+
+    @Override
+    public ImportMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public List<StageStatistics> getPipelineStatistics()
+    {
+        return pipelineStatistics;
+    }
+
+    private List<PropertyKey> parsePropertyKeys( CsvRecord record, int firstField )
     {
         List<PropertyKey> result = new ArrayList<PropertyKey>();
-        for ( String property : properties )
+        for ( int i = firstField; i < record.fieldCount(); i++ )
         {
-            result.add( new PropertyKey( parseName(property), parseType(property), parseIndex(property) ) );
+            String property = record.getString( i );
+            result.add( new PropertyKey( parseName(property), parseType( property, i - firstField ), parseIndex(property) ) );
         }
         return result;
     }
@@ -200,10 +1157,14 @@ public class CsvImporter implements BatchInserterImporter
         return parts.length > 1 ? parts[0] : null;
     }
 
-    private PropertyType parseType( String property )
+    private PropertyType parseType( String property, int column )
     {
         final String[] parts = property.split( "@" );
-        return parts.length > 1 ? PropertyType.parseType( parts[1] ) : PropertyType.stringType;
+        if ( parts.length > 1 )
+        {
+            return PropertyType.parseType( parts[1] );
+        }
+        return inferredTypes == null ? PropertyType.stringType : inferredTypes.type( column );
     }
 
     private String parseName( String property )
@@ -212,78 +1173,285 @@ public class CsvImporter implements BatchInserterImporter
         return parts.length > 1 ? parts[1] : parts[0];
     }
 
-    private Map<String, Object> getProperties( List<String> nodeParts, List<PropertyKey> propertyKeyLookupTable )
+    private void readProperties( CsvRecord record, int firstField, RowFormat format, PropertyRows rows, int row )
     {
-        if ( nodeParts.isEmpty() || propertyKeyLookupTable == null )
+        rows.clearRow( row );
+        int slots = format.types.length;
+        if ( slots == 0 )
         {
-            return Collections.emptyMap();
+            return;
         }
-        Map<String, Object> properties = new HashMap<String, Object>();
-        for ( int i = 0; i < nodeParts.size(); i++ )
+        for ( int i = firstField; i < record.fieldCount(); i++ )
         {
-            PropertyKey propertyKey = propertyKeyLookupTable.get( i );
-            String key = propertyKey.getName();
-            String value = nodeParts.get( i );
-            if ( !value.isEmpty() )
+            if ( !record.isEmpty( i ) )
             {
-                final Object propertyValue = getPropertyValue( value, propertyKey.getType() );
-                properties.put( key, propertyValue );
+                int slot = i - firstField;
+                if ( slot >= slots )
+                {
+                    throw new IllegalStateException( "Row has more fields than the header: " + record.getString( i ) );
+                }
+                if ( slot == format.marker )
+                {
+                    continue;
+                }
+                readPropertyValue( record, i, format.types[slot], rows, row, slot );
             }
         }
-        return properties;
     }
 
-    private Object getPropertyValue( String s, PropertyType type )
+    // the batch inserter can not delete nodes or relationships, marked rows are counted and left out
+    private boolean isMarkedDeleted( CsvRecord record, int firstField, RowFormat format )
     {
-        if ( type == PropertyType.stringType )
+        int field = firstField + format.marker;
+        if ( format.marker < 0 || field >= record.fieldCount() || record.isEmpty( field ) )
         {
-            return s;
+            return false;
         }
-        else if ( type == PropertyType.longType )
+        String marker = record.getString( field );
+        if ( marker.equalsIgnoreCase( "D" ) || marker.equalsIgnoreCase( "delete" ) )
         {
-            return Long.valueOf( s );
+            metrics.deleteSkipped();
+            return true;
         }
-        else if ( type == PropertyType.intType )
+        return false;
+    }
+
+    void readPropertyValue( CsvRecord record, int field, PropertyType type, PropertyRows rows, int row, int slot )
+    {
+        type.read( record, field, arraySeparator, rows, row, slot );
+    }
+
+    // each type parses its own columns, so the per-value dispatch is a single virtual call
+    enum PropertyType
+    {
+        stringType
         {
-            return Integer.valueOf( s );
-        }
-        else if ( type == PropertyType.byteType )
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setObject( row, slot, record.getString( field ) );
+            }
+        },
+        longType
         {
-            return Byte.valueOf( s );
-        }
-        else if ( type == PropertyType.shortType )
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setLong( row, slot, record.getLong( field ) );
+            }
+        },
+        intType
         {
-            return Short.valueOf( s );
-        }
-        else if ( type == PropertyType.charType )
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setInt( row, slot, record.getInt( field ) );
+            }
+        },
+        byteType
         {
-            return s.charAt( 0 );
-        }
-        else if ( type == PropertyType.booleanType )
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setByte( row, slot, record.getByte( field ) );
+            }
+        },
+        shortType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setShort( row, slot, record.getShort( field ) );
+            }
+        },
+        charType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setChar( row, slot, record.getChar( field ) );
+            }
+        },
+        booleanType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setBoolean( row, slot, record.getBoolean( field ) );
+            }
+        },
+        doubleType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setDouble( row, slot, record.getDouble( field ) );
+            }
+        },
+        floatType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setFloat( row, slot, record.getFloat( field ) );
+            }
+        },
+        stringArrayType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setObject( row, slot, record.getStringArray( field, separator ) );
+            }
+        },
+        longArrayType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setObject( row, slot, record.getLongArray( field, separator ) );
+            }
+        },
+        intArrayType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setObject( row, slot, record.getIntArray( field, separator ) );
+            }
+        },
+        byteArrayType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setObject( row, slot, record.getByteArray( field, separator ) );
+            }
+        },
+        shortArrayType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setObject( row, slot, record.getShortArray( field, separator ) );
+            }
+        },
+        charArrayType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setObject( row, slot, record.getCharArray( field, separator ) );
+            }
+        },
+        booleanArrayType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setObject( row, slot, record.getBooleanArray( field, separator ) );
+            }
+        },
+        doubleArrayType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setObject( row, slot, record.getDoubleArray( field, separator ) );
+            }
+        },
+        floatArrayType
+        {
+            @Override
+            void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot )
+            {
+                rows.setObject( row, slot, record.getFloatArray( field, separator ) );
+            }
+        };
+
+        abstract void read( CsvRecord record, int field, byte separator, PropertyRows rows, int row, int slot );
+
+        static PropertyType parseType( String name )
         {
-            return Boolean.valueOf( s );
+            if ( name.endsWith( "[]" ) )
+            {
+                return valueOf( name.substring( 0, name.length() - 2 ).toLowerCase() + "ArrayType" );
+            }
+            return valueOf( name.toLowerCase() + "Type" );
         }
-        else if ( type == PropertyType.doubleType )
+    }
+
+    private class RecordBatchSource implements ImportPipeline.Source<RecordBatch>
+    {
+        private final CsvReader reader;
+        private final long inputOffset;
+        private final Queue<long[]> positions = new ConcurrentLinkedQueue<long[]>();
+        private CsvRecord pending;
+
+        RecordBatchSource( CsvReader reader, CsvRecord pending, long inputOffset )
         {
-            return Double.valueOf( s );
+            this.reader = reader;
+            this.pending = pending;
+            this.inputOffset = inputOffset;
         }
-        else if ( type == PropertyType.floatType )
+
+        @Override
+        public RecordBatch next() throws IOException
         {
-            return Float.valueOf( s );
+            RecordBatch batch = new RecordBatch( batchSize );
+            if ( pending != null )
+            {
+                batch.add( pending );
+                pending = null;
+            }
+            CsvRecord record;
+            while ( !batch.isFull() && ( record = reader.next() ) != null )
+            {
+                batch.add( record );
+            }
+            metrics.setBytesRead( inputOffset + reader.position() );
+            if ( batch.size() == 0 )
+            {
+                return null;
+            }
+            if ( checkpoint != null )
+            {
+                positions.add( new long[] { reader.part(), reader.partOffset() } );
+            }
+            return batch;
         }
-        else
+
+        // batches are written in the order they were read
+        void written( int rows ) throws IOException
         {
-            throw new IllegalStateException( "Unknown type: " + type );
+            long[] position = positions.poll();
+            if ( position != null )
+            {
+                CsvImporter.this.written( (int) position[0], position[1], rows );
+            }
         }
     }
 
-    enum PropertyType
+    private static class RowFormat
     {
-        stringType, longType, intType, byteType, shortType, charType, booleanType, doubleType, floatType;
+        private final String[] names;
+        private final PropertyType[] types;
+        private int marker = -1;
 
-        static PropertyType parseType( String name )
+        RowFormat( List<PropertyKey> keys, String markerColumn )
         {
-            return valueOf( name.toLowerCase() + "Type" );
+            int count = keys == null ? 0 : keys.size();
+            names = new String[count];
+            types = new PropertyType[count];
+            for ( int i = 0; i < count; i++ )
+            {
+                names[i] = keys.get( i ).getName().intern();
+                types[i] = keys.get( i ).getType();
+                if ( names[i].equals( markerColumn ) )
+                {
+                    marker = i;
+                }
+            }
         }
     }
 
@@ -342,9 +1510,16 @@ public class CsvImporter implements BatchInserterImporter
     {
         private List<String> keys = new ArrayList<String>(  );
         private BatchInserterIndex index;
+        private final String name;
+        // one key map per index, refilled for every node instead of allocated per node
+        private final Map<String, Object> indexedKeys = new HashMap<String, Object>();
+        private File spoolFile;
+        private DataOutputStream spool;
+        private long spooled;
 
-        public IndexEntry( BatchInserterIndex index )
+        public IndexEntry( String name, BatchInserterIndex index )
         {
+            this.name = name;
             this.index = index;
         }
 
@@ -353,6 +1528,83 @@ public class CsvImporter implements BatchInserterImporter
             keys.add( name );
         }
 
+        public void add( long id, Map<String, Object> props ) throws IOException
+        {
+            if ( isIndexingDeferred() )
+            {
+                spool( id, props );
+                return;
+            }
+            indexedKeys.clear();
+            for ( String key : keys )
+            {
+                Object value = props.get( key );
+                if ( value != null )
+                {
+                    indexedKeys.put( key, value );
+                }
+            }
+            index( id );
+        }
+
+        private void spool( long id, Map<String, Object> props ) throws IOException
+        {
+            if ( spool == null )
+            {
+                spoolFile = File.createTempFile( "index-" + name + "-", ".spool", tempDirectory );
+                spoolFile.deleteOnExit();
+                spool = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( spoolFile ), 1 << 16 ) );
+            }
+            spool.writeLong( id );
+            for ( String key : keys )
+            {
+                PropertyValueCodec.write( spool, props.get( key ) );
+            }
+            spooled++;
+        }
+
+        public void buildFromSpool() throws IOException
+        {
+            if ( spool == null ) return;
+            spool.close();
+            DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( spoolFile ), 1 << 16 ) );
+            try
+            {
+                for ( long i = 0; i < spooled; i++ )
+                {
+                    long id = in.readLong();
+                    indexedKeys.clear();
+                    for ( String key : keys )
+                    {
+                        Object value = PropertyValueCodec.read( in );
+                        if ( value != null )
+                        {
+                            indexedKeys.put( key, value );
+                        }
+                    }
+                    index( id );
+                }
+            }
+            finally
+            {
+                in.close();
+                spoolFile.delete();
+            }
+        }
+
+        private void index( long id )
+        {
+            if ( deltaImport )
+            {
+                // replaces what an existing node had in the index, also when it no longer has indexed values
+                index.updateOrAdd( id, indexedKeys );
+            }
+            else if ( !indexedKeys.isEmpty() )
+            {
+                index.add( id, indexedKeys );
+            }
+        }
+
         public List<String> getKeys()
         {
             return keys;
@@ -0,0 +1,504 @@
+package org.neo4j.dataimport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+final class CsvReader implements Closeable
+{
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    static final int DEFAULT_STREAM_BUFFER_SIZE = 1 << 20;
+    static final int DEFAULT_DECOMPRESSION_THREADS = 2;
+    static final char DEFAULT_DELIMITER = ',';
+
+    private static final byte QUOTE = '"';
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate( 0 );
+
+    private final List<File> files;
+    private final int windowSize;
+    private final int decompressionThreads;
+    private ReadAheadInput readAhead;
+    private final CsvRecord record = new CsvRecord();
+    private int nextFile;
+    private long completedBytes;
+    private Part part;
+    private int partWindowSize;
+    private ByteBuffer window;
+    private long windowStart;
+    private long position;
+    private boolean firstLineOfPart;
+    private byte[] header;
+    private byte delimiter = DEFAULT_DELIMITER;
+    private boolean escapedQuotes;
+
+    CsvReader( File file ) throws IOException
+    {
+        this( file, DEFAULT_WINDOW_SIZE );
+    }
+
+    CsvReader( File file, int windowSize ) throws IOException
+    {
+        this( Collections.singletonList( file ), windowSize, DEFAULT_DECOMPRESSION_THREADS );
+    }
+
+    CsvReader( List<File> files, int windowSize, int decompressionThreads ) throws IOException
+    {
+        this.files = files;
+        this.windowSize = windowSize;
+        this.decompressionThreads = decompressionThreads;
+        openFrom( 0 );
+    }
+
+    public CsvRecord next() throws IOException
+    {
+        while ( part != null )
+        {
+            CsvRecord next = nextInPart();
+            if ( next == null )
+            {
+                nextPart();
+            }
+            else if ( firstLineOfPart && isHeader( next ) )
+            {
+                firstLineOfPart = false;
+            }
+            else
+            {
+                firstLineOfPart = false;
+                return next;
+            }
+        }
+        return null;
+    }
+
+    void setDelimiter( char delimiter )
+    {
+        if ( delimiter > 127 || delimiter == QUOTE || delimiter == '\n' || delimiter == '\r' )
+        {
+            throw new IllegalArgumentException( "Delimiter has to be a single byte character other than quotes and line breaks, got '" + delimiter + "'" );
+        }
+        this.delimiter = (byte) delimiter;
+    }
+
+    // parts after the first may repeat the header line, those copies are skipped
+    void skipRepeatedHeader( CsvRecord header )
+    {
+        int start = header.fieldStart( 0 );
+        this.header = new byte[header.fieldEnd( header.fieldCount() - 1 ) - start];
+        ByteBuffer source = header.buffer().duplicate();
+        source.position( start );
+        source.get( this.header );
+    }
+
+    int part()
+    {
+        return nextFile - 1;
+    }
+
+    long partOffset()
+    {
+        return position;
+    }
+
+    // moves to an offset previously taken from part() and partOffset(), compressed parts are decompressed up to it
+    void seek( int part, long offset ) throws IOException
+    {
+        if ( part != part() || offset < position )
+        {
+            if ( this.part != null )
+            {
+                this.part.close();
+                this.part = null;
+            }
+            openFrom( part );
+        }
+        window = null;
+        position = offset;
+        firstLineOfPart = firstLineOfPart && offset == 0;
+    }
+
+    long position()
+    {
+        return completedBytes + ( part == null ? 0 : part.inputBytes( position ) );
+    }
+
+    private CsvRecord nextInPart() throws IOException
+    {
+        while ( true )
+        {
+            if ( window == null || position >= windowStart + window.limit() )
+            {
+                window( position, partWindowSize );
+                if ( window.limit() == 0 )
+                {
+                    return null;
+                }
+            }
+            int lineStart = (int) ( position - windowStart );
+            int limit = window.limit();
+            boolean more = !part.endsAt( windowStart + limit );
+            record.reset( window );
+            int fieldStart = lineStart;
+            int cursor = lineStart;
+            boolean quotedLast = false;
+            while ( cursor < limit )
+            {
+                byte b = window.get( cursor );
+                if ( b == delimiter )
+                {
+                    record.addField( fieldStart, cursor );
+                    fieldStart = cursor + 1;
+                }
+                else if ( b == '\n' )
+                {
+                    break;
+                }
+                else if ( b == QUOTE && cursor == fieldStart )
+                {
+                    int close = closingQuote( cursor + 1, limit, more );
+                    if ( close == -1 )
+                    {
+                        cursor = limit;
+                        break;
+                    }
+                    record.addField( cursor + 1, close, escapedQuotes );
+                    cursor = close + 1;
+                    if ( cursor < limit && window.get( cursor ) == '\r' )
+                    {
+                        cursor++;
+                    }
+                    if ( cursor == limit && more )
+                    {
+                        break;
+                    }
+                    if ( cursor == limit || window.get( cursor ) == '\n' )
+                    {
+                        quotedLast = true;
+                        break;
+                    }
+                    if ( window.get( cursor ) != delimiter )
+                    {
+                        throw new IllegalStateException( "Unexpected character after quoted field: '" + (char) window.get( cursor ) + "'" );
+                    }
+                    fieldStart = cursor + 1;
+                }
+                cursor++;
+            }
+            if ( cursor == limit && more && !quotedLast )
+            {
+                window( position, Math.max( partWindowSize, ( limit - lineStart ) * 2 ) );
+                continue;
+            }
+            position = windowStart + cursor + 1;
+            if ( quotedLast )
+            {
+                return record;
+            }
+            int lineEnd = cursor;
+            if ( lineEnd > fieldStart && window.get( lineEnd - 1 ) == '\r' )
+            {
+                lineEnd--;
+            }
+            if ( lineEnd == lineStart )
+            {
+                continue;
+            }
+            record.addField( fieldStart, lineEnd );
+            return record;
+        }
+    }
+
+    // a doubled quote inside a quoted field stands for one quote
+    private int closingQuote( int from, int limit, boolean more )
+    {
+        escapedQuotes = false;
+        for ( int cursor = from; cursor < limit; cursor++ )
+        {
+            if ( window.get( cursor ) == QUOTE )
+            {
+                if ( cursor + 1 == limit && more )
+                {
+                    return -1;
+                }
+                if ( cursor + 1 == limit || window.get( cursor + 1 ) != QUOTE )
+                {
+                    return cursor;
+                }
+                escapedQuotes = true;
+                cursor++;
+            }
+        }
+        if ( !more )
+        {
+            throw new IllegalStateException( "Quoted field is not terminated before the end of the input" );
+        }
+        return -1;
+    }
+
+    private boolean isHeader( CsvRecord line )
+    {
+        if ( header == null )
+        {
+            return false;
+        }
+        int start = line.fieldStart( 0 );
+        if ( line.fieldEnd( line.fieldCount() - 1 ) - start != header.length )
+        {
+            return false;
+        }
+        ByteBuffer buffer = line.buffer();
+        for ( int i = 0; i < header.length; i++ )
+        {
+            if ( buffer.get( start + i ) != header[i] )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void window( long start, int size ) throws IOException
+    {
+        windowStart = start;
+        window = part.window( start, size );
+    }
+
+    private void openFrom( int first ) throws IOException
+    {
+        if ( readAhead != null )
+        {
+            readAhead.close();
+            readAhead = null;
+        }
+        completedBytes = InputFiles.length( files.subList( 0, first ) );
+        List<File> compressed = new ArrayList<File>();
+        for ( File file : files.subList( first, files.size() ) )
+        {
+            if ( InputFiles.isCompressed( file ) )
+            {
+                compressed.add( file );
+            }
+        }
+        if ( !compressed.isEmpty() )
+        {
+            readAhead = new ReadAheadInput( compressed, decompressionThreads );
+        }
+        nextFile = first;
+        nextPart();
+    }
+
+    private void nextPart() throws IOException
+    {
+        if ( part != null )
+        {
+            completedBytes += part.length();
+            part.close();
+            part = null;
+        }
+        window = null;
+        windowStart = 0;
+        position = 0;
+        firstLineOfPart = nextFile > 0;
+        if ( nextFile == files.size() )
+        {
+            return;
+        }
+        File file = files.get( nextFile++ );
+        if ( InputFiles.isCompressed( file ) )
+        {
+            partWindowSize = Math.min( windowSize, DEFAULT_STREAM_BUFFER_SIZE );
+            part = new StreamPart( file, readAhead.next(), partWindowSize );
+        }
+        else
+        {
+            partWindowSize = windowSize;
+            part = new MappedPart( file );
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        window = null;
+        if ( readAhead != null )
+        {
+            readAhead.close();
+        }
+        if ( part != null )
+        {
+            part.close();
+            part = null;
+        }
+    }
+
+    private interface Part extends Closeable
+    {
+        ByteBuffer window( long start, int size ) throws IOException;
+
+        boolean endsAt( long offset );
+
+        long inputBytes( long position );
+
+        long length();
+    }
+
+    private static final class MappedPart implements Part
+    {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final long fileSize;
+
+        MappedPart( File file ) throws IOException
+        {
+            this.file = new RandomAccessFile( file, "r" );
+            this.channel = this.file.getChannel();
+            this.fileSize = channel.size();
+        }
+
+        @Override
+        public ByteBuffer window( long start, int size ) throws IOException
+        {
+            if ( start >= fileSize )
+            {
+                return EMPTY;
+            }
+            return channel.map( FileChannel.MapMode.READ_ONLY, start, Math.min( size, fileSize - start ) );
+        }
+
+        @Override
+        public boolean endsAt( long offset )
+        {
+            return offset >= fileSize;
+        }
+
+        @Override
+        public long inputBytes( long position )
+        {
+            return Math.min( position, fileSize );
+        }
+
+        @Override
+        public long length()
+        {
+            return fileSize;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            file.close();
+        }
+    }
+
+    private static final class StreamPart implements Part
+    {
+        private final ReadAheadInput.Part source;
+        private final InputStream in;
+        private final long length;
+        private ByteBuffer buffer;
+        private long bufferStart;
+        private boolean eof;
+
+        StreamPart( File file, ReadAheadInput.Part source, int bufferSize )
+        {
+            this.source = source;
+            this.in = source.stream();
+            this.length = file.length();
+            this.buffer = ByteBuffer.allocate( bufferSize );
+            this.buffer.limit( 0 );
+        }
+
+        @Override
+        public ByteBuffer window( long start, int size ) throws IOException
+        {
+            // windows only move forward, so the bytes before start are dropped and the rest is moved to the front
+            skipTo( start );
+            int keep = (int) ( bufferStart + buffer.limit() - start );
+            if ( size > buffer.capacity() )
+            {
+                ByteBuffer larger = ByteBuffer.allocate( size );
+                buffer.position( buffer.limit() - keep );
+                larger.put( buffer );
+                buffer = larger;
+            }
+            else
+            {
+                buffer.position( buffer.limit() - keep );
+                buffer.compact();
+            }
+            bufferStart = start;
+            int filled = keep;
+            byte[] array = buffer.array();
+            while ( filled < size && !eof )
+            {
+                int read = in.read( array, filled, buffer.capacity() - filled );
+                if ( read == -1 )
+                {
+                    eof = true;
+                }
+                else
+                {
+                    filled += read;
+                }
+            }
+            buffer.clear();
+            buffer.limit( filled );
+            return buffer;
+        }
+
+        private void skipTo( long start ) throws IOException
+        {
+            byte[] array = buffer.array();
+            while ( bufferStart + buffer.limit() < start && !eof )
+            {
+                bufferStart += buffer.limit();
+                int read = in.read( array, 0, (int) Math.min( array.length, start - bufferStart ) );
+                if ( read == -1 )
+                {
+                    eof = true;
+                    read = 0;
+                }
+                buffer.clear();
+                buffer.limit( read );
+            }
+            if ( bufferStart + buffer.limit() < start )
+            {
+                // past the end, what is left is an empty window
+                bufferStart = start;
+                buffer.limit( 0 );
+            }
+        }
+
+        @Override
+        public boolean endsAt( long offset )
+        {
+            return eof && offset >= bufferStart + buffer.limit();
+        }
+
+        @Override
+        public long inputBytes( long position )
+        {
+            return eof && position >= bufferStart + buffer.limit() ? length : Math.min( source.getInputBytes(), length );
+        }
+
+        @Override
+        public long length()
+        {
+            return length;
+        }
+
+        @Override
+        public void close()
+        {
+            source.interrupt();
+        }
+    }
+}
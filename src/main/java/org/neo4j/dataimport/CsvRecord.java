@@ -0,0 +1,505 @@
+package org.neo4j.dataimport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.regex.Pattern;
+
+final class CsvRecord
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+    private static final double[] DOUBLE_POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final float[] FLOAT_POWERS = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
+    private ByteBuffer buffer;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] escaped = new boolean[16];
+    private int fieldCount;
+    private byte[] scratch = new byte[256];
+    private int[] elementEnds = new int[16];
+    private long decodedLong;
+    private long decodedMantissa;
+    private int decodedExponent;
+    private boolean decodedNegative;
+
+    void reset( ByteBuffer buffer )
+    {
+        this.buffer = buffer;
+        fieldCount = 0;
+    }
+
+    void addField( int start, int end )
+    {
+        addField( start, end, false );
+    }
+
+    // escaped fields are the inside of a quoted field that still holds doubled quotes
+    void addField( int start, int end, boolean escapedQuotes )
+    {
+        if ( fieldCount == starts.length )
+        {
+            int[] newStarts = new int[fieldCount * 2];
+            int[] newEnds = new int[fieldCount * 2];
+            boolean[] newEscaped = new boolean[fieldCount * 2];
+            System.arraycopy( starts, 0, newStarts, 0, fieldCount );
+            System.arraycopy( ends, 0, newEnds, 0, fieldCount );
+            System.arraycopy( escaped, 0, newEscaped, 0, fieldCount );
+            starts = newStarts;
+            ends = newEnds;
+            escaped = newEscaped;
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        escaped[fieldCount] = escapedQuotes;
+        fieldCount++;
+    }
+
+    ByteBuffer buffer()
+    {
+        return buffer;
+    }
+
+    int fieldStart( int field )
+    {
+        return starts[field];
+    }
+
+    int fieldEnd( int field )
+    {
+        return ends[field];
+    }
+
+    boolean isEscaped( int field )
+    {
+        return escaped[field];
+    }
+
+    public int fieldCount()
+    {
+        return fieldCount;
+    }
+
+    public boolean isEmpty( int field )
+    {
+        return starts[field] == ends[field];
+    }
+
+    public String getString( int field )
+    {
+        return string( starts[field], ends[field], escaped[field] );
+    }
+
+    private String string( int start, int end, boolean escapedQuotes )
+    {
+        int length = end - start;
+        if ( length > scratch.length )
+        {
+            scratch = new byte[Math.max( length, scratch.length * 2 )];
+        }
+        ByteBuffer source = buffer.duplicate();
+        source.position( start );
+        source.get( scratch, 0, length );
+        if ( escapedQuotes )
+        {
+            length = unescape( length );
+        }
+        return new String( scratch, 0, length, UTF_8 );
+    }
+
+    private int unescape( int length )
+    {
+        int written = 0;
+        for ( int read = 0; read < length; read++ )
+        {
+            scratch[written++] = scratch[read];
+            if ( scratch[read] == '"' )
+            {
+                read++;
+            }
+        }
+        return written;
+    }
+
+    public long getLong( int field )
+    {
+        if ( starts[field] == ends[field] )
+        {
+            throw new NumberFormatException( "Empty field " + field );
+        }
+        return longValue( starts[field], ends[field] );
+    }
+
+    // what getLong accepts, without throwing, so header lines can be told from data cheaply
+    public boolean isLong( int field )
+    {
+        return decodeLong( starts[field], ends[field] );
+    }
+
+    private long longValue( int start, int end )
+    {
+        if ( !decodeLong( start, end ) )
+        {
+            throw numberFormatException( start, end );
+        }
+        return decodedLong;
+    }
+
+    private boolean decodeLong( int start, int end )
+    {
+        int position = start;
+        if ( position == end )
+        {
+            return false;
+        }
+        boolean negative = false;
+        byte first = buffer.get( position );
+        if ( first == '-' || first == '+' )
+        {
+            negative = first == '-';
+            if ( ++position == end )
+            {
+                return false;
+            }
+        }
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for ( ; position < end; position++ )
+        {
+            int digit = buffer.get( position ) - '0';
+            if ( digit < 0 || digit > 9 || result < ( limit + digit ) / 10 )
+            {
+                return false;
+            }
+            result = result * 10 - digit;
+        }
+        decodedLong = negative ? result : -result;
+        return true;
+    }
+
+    public int getInt( int field )
+    {
+        return intValue( starts[field], ends[field] );
+    }
+
+    private int intValue( int start, int end )
+    {
+        long value = longValue( start, end );
+        if ( value < Integer.MIN_VALUE || value > Integer.MAX_VALUE )
+        {
+            throw numberFormatException( start, end );
+        }
+        return (int) value;
+    }
+
+    public short getShort( int field )
+    {
+        return shortValue( starts[field], ends[field] );
+    }
+
+    private short shortValue( int start, int end )
+    {
+        long value = longValue( start, end );
+        if ( value < Short.MIN_VALUE || value > Short.MAX_VALUE )
+        {
+            throw numberFormatException( start, end );
+        }
+        return (short) value;
+    }
+
+    public byte getByte( int field )
+    {
+        return byteValue( starts[field], ends[field] );
+    }
+
+    private byte byteValue( int start, int end )
+    {
+        long value = longValue( start, end );
+        if ( value < Byte.MIN_VALUE || value > Byte.MAX_VALUE )
+        {
+            throw numberFormatException( start, end );
+        }
+        return (byte) value;
+    }
+
+    public char getChar( int field )
+    {
+        return charValue( starts[field], ends[field], escaped[field] );
+    }
+
+    private char charValue( int start, int end, boolean escapedQuotes )
+    {
+        byte first = buffer.get( start );
+        return first >= 0 ? (char) first : string( start, end, escapedQuotes ).charAt( 0 );
+    }
+
+    // same result as Boolean.parseBoolean
+    public boolean getBoolean( int field )
+    {
+        return booleanValue( starts[field], ends[field] );
+    }
+
+    private boolean booleanValue( int start, int end )
+    {
+        if ( end - start != 4 )
+        {
+            return false;
+        }
+        return ( buffer.get( start ) | 0x20 ) == 't' && ( buffer.get( start + 1 ) | 0x20 ) == 'r'
+                && ( buffer.get( start + 2 ) | 0x20 ) == 'u' && ( buffer.get( start + 3 ) | 0x20 ) == 'e';
+    }
+
+    public double getDouble( int field )
+    {
+        return doubleValue( starts[field], ends[field], escaped[field] );
+    }
+
+    // exact when both the digits and the power of ten are exact doubles, anything else goes through Double.parseDouble
+    private double doubleValue( int start, int end, boolean escapedQuotes )
+    {
+        if ( !escapedQuotes && decodeDecimal( start, end, 15 ) && decodedExponent >= -22 && decodedExponent <= 22 )
+        {
+            double value = decodedExponent < 0 ? decodedMantissa / DOUBLE_POWERS[-decodedExponent] : decodedMantissa * DOUBLE_POWERS[decodedExponent];
+            return decodedNegative ? -value : value;
+        }
+        return Double.parseDouble( string( start, end, escapedQuotes ) );
+    }
+
+    public float getFloat( int field )
+    {
+        return floatValue( starts[field], ends[field], escaped[field] );
+    }
+
+    private float floatValue( int start, int end, boolean escapedQuotes )
+    {
+        if ( !escapedQuotes && decodeDecimal( start, end, 7 ) && decodedExponent >= -10 && decodedExponent <= 10 )
+        {
+            float value = decodedExponent < 0 ? decodedMantissa / FLOAT_POWERS[-decodedExponent] : decodedMantissa * FLOAT_POWERS[decodedExponent];
+            return decodedNegative ? -value : value;
+        }
+        return Float.parseFloat( string( start, end, escapedQuotes ) );
+    }
+
+    // [sign]digits[.digits][(e|E)[sign]digits] with at most maxDigits significant digits
+    private boolean decodeDecimal( int start, int end, int maxDigits )
+    {
+        int position = start;
+        if ( position == end )
+        {
+            return false;
+        }
+        byte b = buffer.get( position );
+        decodedNegative = b == '-';
+        if ( b == '-' || b == '+' )
+        {
+            position++;
+        }
+        long mantissa = 0;
+        int significant = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean fraction = false;
+        for ( ; position < end; position++ )
+        {
+            b = buffer.get( position );
+            if ( b >= '0' && b <= '9' )
+            {
+                digits++;
+                if ( mantissa != 0 || b != '0' )
+                {
+                    if ( ++significant > maxDigits )
+                    {
+                        return false;
+                    }
+                    mantissa = mantissa * 10 + ( b - '0' );
+                }
+                if ( fraction )
+                {
+                    exponent--;
+                }
+            }
+            else if ( b == '.' && !fraction )
+            {
+                fraction = true;
+            }
+            else
+            {
+                break;
+            }
+        }
+        if ( digits == 0 )
+        {
+            return false;
+        }
+        if ( position < end )
+        {
+            if ( b != 'e' && b != 'E' || ++position == end )
+            {
+                return false;
+            }
+            b = buffer.get( position );
+            boolean negativeExponent = b == '-';
+            if ( b == '-' || b == '+' )
+            {
+                if ( ++position == end )
+                {
+                    return false;
+                }
+            }
+            int power = 0;
+            for ( ; position < end; position++ )
+            {
+                int digit = buffer.get( position ) - '0';
+                if ( digit < 0 || digit > 9 )
+                {
+                    return false;
+                }
+                power = Math.min( power * 10 + digit, 1000 );
+            }
+            exponent += negativeExponent ? -power : power;
+        }
+        decodedMantissa = mantissa;
+        decodedExponent = exponent;
+        return true;
+    }
+
+    // arrays are split on the separator inside the field, straight into a primitive array
+    public String[] getStringArray( int field, byte separator )
+    {
+        if ( escaped[field] )
+        {
+            return getString( field ).split( Pattern.quote( String.valueOf( (char) separator ) ), -1 );
+        }
+        int count = split( field, separator );
+        String[] values = new String[count];
+        for ( int i = 0, start = starts[field]; i < count; start = elementEnds[i++] + 1 )
+        {
+            values[i] = string( start, elementEnds[i], false );
+        }
+        return values;
+    }
+
+    public long[] getLongArray( int field, byte separator )
+    {
+        int count = split( field, separator );
+        long[] values = new long[count];
+        for ( int i = 0, start = starts[field]; i < count; start = elementEnds[i++] + 1 )
+        {
+            values[i] = longValue( start, elementEnds[i] );
+        }
+        return values;
+    }
+
+    public int[] getIntArray( int field, byte separator )
+    {
+        int count = split( field, separator );
+        int[] values = new int[count];
+        for ( int i = 0, start = starts[field]; i < count; start = elementEnds[i++] + 1 )
+        {
+            values[i] = intValue( start, elementEnds[i] );
+        }
+        return values;
+    }
+
+    public short[] getShortArray( int field, byte separator )
+    {
+        int count = split( field, separator );
+        short[] values = new short[count];
+        for ( int i = 0, start = starts[field]; i < count; start = elementEnds[i++] + 1 )
+        {
+            values[i] = shortValue( start, elementEnds[i] );
+        }
+        return values;
+    }
+
+    public byte[] getByteArray( int field, byte separator )
+    {
+        int count = split( field, separator );
+        byte[] values = new byte[count];
+        for ( int i = 0, start = starts[field]; i < count; start = elementEnds[i++] + 1 )
+        {
+            values[i] = byteValue( start, elementEnds[i] );
+        }
+        return values;
+    }
+
+    public char[] getCharArray( int field, byte separator )
+    {
+        int count = split( field, separator );
+        char[] values = new char[count];
+        for ( int i = 0, start = starts[field]; i < count; start = elementEnds[i++] + 1 )
+        {
+            if ( start == elementEnds[i] )
+            {
+                throw new IllegalStateException( "Empty char in array: " + getString( field ) );
+            }
+            values[i] = charValue( start, elementEnds[i], escaped[field] );
+        }
+        return values;
+    }
+
+    public boolean[] getBooleanArray( int field, byte separator )
+    {
+        int count = split( field, separator );
+        boolean[] values = new boolean[count];
+        for ( int i = 0, start = starts[field]; i < count; start = elementEnds[i++] + 1 )
+        {
+            values[i] = booleanValue( start, elementEnds[i] );
+        }
+        return values;
+    }
+
+    public double[] getDoubleArray( int field, byte separator )
+    {
+        int count = split( field, separator );
+        double[] values = new double[count];
+        for ( int i = 0, start = starts[field]; i < count; start = elementEnds[i++] + 1 )
+        {
+            values[i] = doubleValue( start, elementEnds[i], escaped[field] );
+        }
+        return values;
+    }
+
+    public float[] getFloatArray( int field, byte separator )
+    {
+        int count = split( field, separator );
+        float[] values = new float[count];
+        for ( int i = 0, start = starts[field]; i < count; start = elementEnds[i++] + 1 )
+        {
+            values[i] = floatValue( start, elementEnds[i], escaped[field] );
+        }
+        return values;
+    }
+
+    private int split( int field, byte separator )
+    {
+        int count = 0;
+        int end = ends[field];
+        for ( int position = starts[field]; position < end; position++ )
+        {
+            if ( buffer.get( position ) == separator )
+            {
+                elementEnd( count++, position );
+            }
+        }
+        elementEnd( count++, end );
+        return count;
+    }
+
+    private void elementEnd( int element, int end )
+    {
+        if ( element == elementEnds.length )
+        {
+            int[] newEnds = new int[element * 2];
+            System.arraycopy( elementEnds, 0, newEnds, 0, element );
+            elementEnds = newEnds;
+        }
+        elementEnds[element] = end;
+    }
+
+    private NumberFormatException numberFormatException( int start, int end )
+    {
+        return new NumberFormatException( "For input string: \"" + string( start, end, false ) + "\"" );
+    }
+}
@@ -0,0 +1,70 @@
+package org.neo4j.dataimport;
+
+import org.neo4j.graphdb.RelationshipType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+// a bloom filter over start node, end node and type, so a relationship seen before is caught without touching the store
+final class DuplicateFilter
+{
+    // 16 bits and 11 probes per relationship, about one false positive in 2000
+    static final int BITS_PER_RELATIONSHIP = 16;
+    static final int PROBES = 11;
+    // the bits are split over direct buffers of 16 MB, so the filter is not held to the 2 GB of a single buffer
+    private static final int PAGE_BITS = 27;
+    private static final long PAGE_MASK = ( 1L << PAGE_BITS ) - 1;
+
+    private final LongBuffer[] pages;
+    private final long size;
+
+    DuplicateFilter( long expectedRelationships )
+    {
+        if ( expectedRelationships < 1 )
+        {
+            throw new IllegalArgumentException( "Expected relationship count must be positive, got " + expectedRelationships );
+        }
+        if ( expectedRelationships > Long.MAX_VALUE / BITS_PER_RELATIONSHIP - 63 )
+        {
+            throw new IllegalArgumentException( "Expected relationship count is too large for the filter, got " + expectedRelationships );
+        }
+        long words = ( expectedRelationships * BITS_PER_RELATIONSHIP + 63 ) >>> 6;
+        this.size = words << 6;
+        this.pages = new LongBuffer[(int) ( ( size + PAGE_MASK ) >>> PAGE_BITS )];
+        for ( int page = 0; page < pages.length; page++ )
+        {
+            long pageWords = Math.min( words - ( (long) page << ( PAGE_BITS - 6 ) ), 1L << ( PAGE_BITS - 6 ) );
+            pages[page] = ByteBuffer.allocateDirect( (int) ( pageWords * 8 ) ).order( ByteOrder.nativeOrder() ).asLongBuffer();
+        }
+    }
+
+    // true when the relationship may have been added before, otherwise it is added
+    boolean seen( long from, long to, RelationshipType type )
+    {
+        long hash = mix( mix( from * 0x9E3779B97F4A7C15L + to ) + type.name().hashCode() );
+        long second = mix( hash ) | 1;
+        boolean seen = true;
+        for ( int i = 0; i < PROBES; i++ )
+        {
+            long bit = ( ( hash + i * second ) & Long.MAX_VALUE ) % size;
+            LongBuffer page = pages[(int) ( bit >>> PAGE_BITS )];
+            int word = (int) ( ( bit & PAGE_MASK ) >>> 6 );
+            long mask = 1L << bit;
+            long value = page.get( word );
+            if ( ( value & mask ) == 0 )
+            {
+                seen = false;
+                page.put( word, value | mask );
+            }
+        }
+        return seen;
+    }
+
+    private static long mix( long value )
+    {
+        value = ( value ^ ( value >>> 33 ) ) * 0xFF51AFD7ED558CCDL;
+        value = ( value ^ ( value >>> 33 ) ) * 0xC4CEB9FE1A85EC53L;
+        return value ^ ( value >>> 33 );
+    }
+}
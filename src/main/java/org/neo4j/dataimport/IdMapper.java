@@ -0,0 +1,208 @@
+package org.neo4j.dataimport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+final class IdMapper implements Closeable
+{
+    static final long NOT_FOUND = -1;
+    static final long FIRST_ID = 1;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final long MAX_ID = 0xFFFFFFFFL;
+
+    private final File tempDirectory;
+    private final MappedMemory keys;
+    private final MappedMemory keyOffsets;
+    private MappedMemory slots;
+    private long capacity;
+    private long size;
+    private long keysEnd;
+
+    IdMapper( File tempDirectory ) throws IOException
+    {
+        this.tempDirectory = tempDirectory;
+        this.keys = new MappedMemory( tempDirectory, "id-keys" );
+        this.keyOffsets = new MappedMemory( tempDirectory, "id-offsets" );
+        this.slots = new MappedMemory( tempDirectory, "id-slots" );
+        this.capacity = INITIAL_CAPACITY;
+    }
+
+    synchronized long add( ByteBuffer buffer, int start, int end )
+    {
+        int hash = hash( buffer, start, end );
+        long slot = find( hash, buffer, start, end );
+        if ( slots.getLong( slot * 8 ) != 0 )
+        {
+            throw new IllegalStateException( "Duplicate node id '" + asString( buffer, start, end ) + "'" );
+        }
+        long id = FIRST_ID + size;
+        if ( id > MAX_ID )
+        {
+            throw new IllegalStateException( "Too many node ids for the id mapping: " + size );
+        }
+        slots.putLong( slot * 8, ( (long) hash << 32 ) | id );
+        keyOffsets.putLong( size * 8, appendKey( buffer, start, end ) );
+        size++;
+        if ( size * 10 > capacity * 7 )
+        {
+            grow();
+        }
+        return id;
+    }
+
+    long add( String key )
+    {
+        ByteBuffer buffer = ByteBuffer.wrap( key.getBytes( UTF_8 ) );
+        return add( buffer, 0, buffer.limit() );
+    }
+
+    long get( ByteBuffer buffer, int start, int end )
+    {
+        long entry = slots.getLong( find( hash( buffer, start, end ), buffer, start, end ) * 8 );
+        return entry == 0 ? NOT_FOUND : entry & MAX_ID;
+    }
+
+    long get( String key )
+    {
+        ByteBuffer buffer = ByteBuffer.wrap( key.getBytes( UTF_8 ) );
+        return get( buffer, 0, buffer.limit() );
+    }
+
+    long size()
+    {
+        return size;
+    }
+
+    private long find( int hash, ByteBuffer buffer, int start, int end )
+    {
+        long mask = capacity - 1;
+        long slot = spread( hash ) & mask;
+        while ( true )
+        {
+            long entry = slots.getLong( slot * 8 );
+            if ( entry == 0 || ( (int) ( entry >>> 32 ) == hash && keyEquals( entry & MAX_ID, buffer, start, end ) ) )
+            {
+                return slot;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+    }
+
+    private void grow()
+    {
+        MappedMemory oldSlots = slots;
+        long oldCapacity = capacity;
+        try
+        {
+            slots = new MappedMemory( tempDirectory, "id-slots" );
+        }
+        catch ( IOException e )
+        {
+            throw new DataImportException( e );
+        }
+        capacity = oldCapacity * 2;
+        long mask = capacity - 1;
+        for ( long i = 0; i < oldCapacity; i++ )
+        {
+            long entry = oldSlots.getLong( i * 8 );
+            if ( entry != 0 )
+            {
+                long slot = spread( (int) ( entry >>> 32 ) ) & mask;
+                while ( slots.getLong( slot * 8 ) != 0 )
+                {
+                    slot = ( slot + 1 ) & mask;
+                }
+                slots.putLong( slot * 8, entry );
+            }
+        }
+        try
+        {
+            oldSlots.close();
+        }
+        catch ( IOException e )
+        {
+            throw new DataImportException( e );
+        }
+    }
+
+    private long appendKey( ByteBuffer buffer, int start, int end )
+    {
+        int length = end - start;
+        if ( 4 + length > keys.chunkSize() )
+        {
+            throw new IllegalStateException( "Node id too long: " + length + " bytes" );
+        }
+        long chunkRemaining = keys.chunkSize() - ( keysEnd & ( keys.chunkSize() - 1 ) );
+        if ( chunkRemaining < 4 + length )
+        {
+            keysEnd += chunkRemaining;
+        }
+        long offset = keysEnd;
+        keys.putInt( offset, length );
+        for ( int i = 0; i < length; i++ )
+        {
+            keys.putByte( offset + 4 + i, buffer.get( start + i ) );
+        }
+        keysEnd = offset + 4 + length;
+        return offset;
+    }
+
+    private boolean keyEquals( long id, ByteBuffer buffer, int start, int end )
+    {
+        long offset = keyOffsets.getLong( ( id - FIRST_ID ) * 8 );
+        int length = end - start;
+        if ( keys.getInt( offset ) != length )
+        {
+            return false;
+        }
+        for ( int i = 0; i < length; i++ )
+        {
+            if ( keys.getByte( offset + 4 + i ) != buffer.get( start + i ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash( ByteBuffer buffer, int start, int end )
+    {
+        int hash = 0x811c9dc5;
+        for ( int i = start; i < end; i++ )
+        {
+            hash = ( hash ^ buffer.get( i ) ) * 0x01000193;
+        }
+        return hash;
+    }
+
+    private static long spread( int hash )
+    {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash & 0xFFFFFFFFL;
+    }
+
+    private static String asString( ByteBuffer buffer, int start, int end )
+    {
+        byte[] bytes = new byte[end - start];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            bytes[i] = buffer.get( start + i );
+        }
+        return new String( bytes, UTF_8 );
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        keys.close();
+        keyOffsets.close();
+        slots.close();
+    }
+}
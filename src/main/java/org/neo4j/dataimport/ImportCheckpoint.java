@@ -0,0 +1,220 @@
+package org.neo4j.dataimport;
+
+import org.neo4j.kernel.IdType;
+import org.neo4j.kernel.impl.batchinsert.BatchInserter;
+import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
+// only a clean shutdown after a failure leaves the store and the checkpoint in step, the 1.6 store is not flushed in between,
+// so the checkpoint is marked clean on failure only and a checkpoint left behind by a killed import is refused
+final class ImportCheckpoint
+{
+    static final String FILE_NAME = "import.checkpoint";
+    static final String OPTION = "--checkpoint";
+
+    private final File file;
+    private String input;
+    private ImportPhase phase = ImportPhase.NODES;
+    private boolean completed;
+    private int part;
+    private long offset;
+    private long rows;
+    private long nodes;
+    private long relationships;
+
+    ImportCheckpoint( File file )
+    {
+        this( file, null );
+    }
+
+    // the input is recorded with the checkpoint and a checkpoint for other input is refused, null takes the recorded input
+    ImportCheckpoint( File file, String input )
+    {
+        this.file = file;
+        this.input = input;
+    }
+
+    // paths, sizes and modification times, a changed file moves the recorded offsets
+    static String describe( List<File> files )
+    {
+        StringBuilder description = new StringBuilder();
+        for ( File file : files )
+        {
+            if ( description.length() > 0 )
+            {
+                description.append( ';' );
+            }
+            description.append( file.getAbsolutePath() ).append( ',' ).append( file.length() ).append( ',' ).append( file.lastModified() );
+        }
+        return description.toString();
+    }
+
+    boolean load() throws IOException
+    {
+        if ( !file.exists() )
+        {
+            return false;
+        }
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            properties.load( in );
+        }
+        finally
+        {
+            in.close();
+        }
+        if ( !Boolean.parseBoolean( properties.getProperty( "clean" ) ) )
+        {
+            throw new IllegalStateException( "Checkpoint " + file + " was left behind by an import that did not shut down cleanly, the store may be missing rows."
+                    + " Remove it and start over with a fresh store." );
+        }
+        String recorded = properties.getProperty( "input", "" );
+        if ( input == null )
+        {
+            input = recorded;
+        }
+        else if ( !input.equals( recorded ) )
+        {
+            throw new IllegalStateException( "Checkpoint " + file + " was written for other input, remove it and start over with a fresh store. Recorded: "
+                    + recorded + ", now: " + input );
+        }
+        phase = ImportPhase.valueOf( properties.getProperty( "phase" ) );
+        part = Integer.parseInt( properties.getProperty( "part" ) );
+        offset = Long.parseLong( properties.getProperty( "offset" ) );
+        rows = Long.parseLong( properties.getProperty( "rows" ) );
+        nodes = Long.parseLong( properties.getProperty( "nodes" ) );
+        relationships = Long.parseLong( properties.getProperty( "relationships" ) );
+        return true;
+    }
+
+    // marks the checkpoint as in use, an import killed from here on leaves it unclean
+    void started() throws IOException
+    {
+        save( false );
+    }
+
+    // the store was shut down after the failure, so it holds exactly what the checkpoint says
+    void failed() throws IOException
+    {
+        save( true );
+    }
+
+    // written to a temp file and renamed over the old one, so a crash leaves either checkpoint intact
+    private void save( boolean clean ) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty( "clean", String.valueOf( clean ) );
+        properties.setProperty( "input", input == null ? "" : input );
+        properties.setProperty( "phase", phase.name() );
+        properties.setProperty( "part", String.valueOf( part ) );
+        properties.setProperty( "offset", String.valueOf( offset ) );
+        properties.setProperty( "rows", String.valueOf( rows ) );
+        properties.setProperty( "nodes", String.valueOf( nodes ) );
+        properties.setProperty( "relationships", String.valueOf( relationships ) );
+        File temp = new File( file.getPath() + ".tmp" );
+        OutputStream out = new FileOutputStream( temp );
+        try
+        {
+            properties.store( out, "import checkpoint" );
+        }
+        finally
+        {
+            out.close();
+        }
+        if ( !temp.renameTo( file ) && !( file.delete() && temp.renameTo( file ) ) )
+        {
+            throw new IOException( "Unable to replace checkpoint " + file );
+        }
+    }
+
+    void phaseStarted( ImportPhase phase, long nodes, long relationships )
+    {
+        this.phase = phase;
+        position( 0, 0, 0, nodes, relationships );
+    }
+
+    // a finished import leaves nothing to resume, so the checkpoint is removed rather than applied to the next input
+    void completed() throws IOException
+    {
+        completed = true;
+        if ( file.exists() && !file.delete() )
+        {
+            throw new IOException( "Unable to delete checkpoint " + file );
+        }
+    }
+
+    void position( int part, long offset, long rows, long nodes, long relationships )
+    {
+        this.part = part;
+        this.offset = offset;
+        this.rows = rows;
+        this.nodes = nodes;
+        this.relationships = relationships;
+    }
+
+    // relationships written after the checkpoint are still in the store, relationship ids are handed out in order
+    long relationshipsAfterCheckpoint( BatchInserter target )
+    {
+        if ( !( target instanceof BatchInserterImpl ) )
+        {
+            return 0;
+        }
+        long stored = ( (BatchInserterImpl) target ).getIdGeneratorFactory().get( IdType.RELATIONSHIP ).getHighId();
+        return Math.max( 0, stored - relationships );
+    }
+
+    boolean isResumingPhase( ImportPhase phase )
+    {
+        return this.phase == phase;
+    }
+
+    boolean isPhaseDone( ImportPhase phase )
+    {
+        return this.phase.ordinal() > phase.ordinal();
+    }
+
+    boolean isCompleted()
+    {
+        return completed;
+    }
+
+    ImportPhase getPhase()
+    {
+        return phase;
+    }
+
+    int getPart()
+    {
+        return part;
+    }
+
+    long getOffset()
+    {
+        return offset;
+    }
+
+    long getRows()
+    {
+        return rows;
+    }
+
+    long getNodes()
+    {
+        return nodes;
+    }
+
+    long getRelationships()
+    {
+        return relationships;
+    }
+}
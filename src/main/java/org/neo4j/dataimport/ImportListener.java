@@ -0,0 +1,10 @@
+package org.neo4j.dataimport;
+
+public interface ImportListener
+{
+    void phaseStarted( ImportPhase phase, ImportMetrics metrics );
+
+    void phaseCompleted( ImportPhase phase, ImportMetrics metrics );
+
+    void progress( ImportMetrics metrics );
+}
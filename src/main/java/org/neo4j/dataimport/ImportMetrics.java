@@ -0,0 +1,388 @@
+package org.neo4j.dataimport;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ImportMetrics implements ImportMetricsMBean
+{
+    static final int PROGRESS_INTERVAL = 100000;
+
+    private final List<ImportListener> listeners = new CopyOnWriteArrayList<ImportListener>();
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong relationships = new AtomicLong();
+    private final AtomicLong rejectedRelationships = new AtomicLong();
+    private final AtomicLong skippedDeletes = new AtomicLong();
+    private final AtomicLong indexingNanos = new AtomicLong();
+    private final long[] phaseNanos = new long[ImportPhase.values().length];
+    private volatile ImportPhase phase;
+    private volatile long bytesRead;
+    private volatile long inputBytes;
+    private volatile long inputRows;
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile long phaseStartNanos;
+    private volatile long phaseEndNanos;
+    private volatile long phaseStartRows;
+    private long gcBaselineMillis;
+    private ObjectName objectName;
+    private final RelationshipTypes relationshipTypes;
+
+    public ImportMetrics()
+    {
+        this( null );
+    }
+
+    ImportMetrics( RelationshipTypes relationshipTypes )
+    {
+        this.relationshipTypes = relationshipTypes;
+    }
+
+    public void addListener( ImportListener listener )
+    {
+        listeners.add( listener );
+    }
+
+    public void removeListener( ImportListener listener )
+    {
+        listeners.remove( listener );
+    }
+
+    public void registerMBean( String name )
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName( "org.neo4j.dataimport:type=ImportMetrics,name=" + ObjectName.quote( name ) );
+            server.registerMBean( this, objectName );
+        }
+        catch ( JMException e )
+        {
+            throw new DataImportException( e );
+        }
+    }
+
+    public void unregisterMBean()
+    {
+        if ( objectName == null ) return;
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName );
+        }
+        catch ( JMException e )
+        {
+            throw new DataImportException( e );
+        }
+        objectName = null;
+    }
+
+    void started( long inputBytes )
+    {
+        this.inputBytes = inputBytes;
+        this.inputRows = 0;
+        gcBaselineMillis = totalGcMillis();
+        startNanos = System.nanoTime();
+        endNanos = 0;
+    }
+
+    // for inputs whose size is only known in rows, such as database tables
+    void startedRows( long inputRows )
+    {
+        started( 0 );
+        this.inputRows = inputRows;
+    }
+
+    void completed()
+    {
+        endNanos = System.nanoTime();
+    }
+
+    void phaseStarted( ImportPhase phase )
+    {
+        this.phase = phase;
+        phaseStartRows = phaseRows( phase );
+        phaseStartNanos = System.nanoTime();
+        phaseEndNanos = 0;
+        for ( ImportListener listener : listeners )
+        {
+            listener.phaseStarted( phase, this );
+        }
+    }
+
+    void phaseCompleted( ImportPhase phase )
+    {
+        phaseEndNanos = System.nanoTime();
+        phaseNanos[phase.ordinal()] += phaseEndNanos - phaseStartNanos;
+        for ( ImportListener listener : listeners )
+        {
+            listener.phaseCompleted( phase, this );
+        }
+    }
+
+    void nodeCreated()
+    {
+        if ( nodes.incrementAndGet() % PROGRESS_INTERVAL == 0 )
+        {
+            progress();
+        }
+    }
+
+    void relationshipCreated()
+    {
+        if ( relationships.incrementAndGet() % PROGRESS_INTERVAL == 0 )
+        {
+            progress();
+        }
+    }
+
+    void relationshipRejected()
+    {
+        rejectedRelationships.incrementAndGet();
+    }
+
+    void deleteSkipped()
+    {
+        skippedDeletes.incrementAndGet();
+    }
+
+    void nodesCreated( int count )
+    {
+        if ( crossedProgressInterval( nodes.addAndGet( count ), count ) )
+        {
+            progress();
+        }
+    }
+
+    void relationshipsCreated( int count )
+    {
+        if ( crossedProgressInterval( relationships.addAndGet( count ), count ) )
+        {
+            progress();
+        }
+    }
+
+    private static boolean crossedProgressInterval( long total, int added )
+    {
+        return total / PROGRESS_INTERVAL != ( total - added ) / PROGRESS_INTERVAL;
+    }
+
+    void indexed( long nanos )
+    {
+        indexingNanos.addAndGet( nanos );
+    }
+
+    void setBytesRead( long bytesRead )
+    {
+        this.bytesRead = bytesRead;
+    }
+
+    private void progress()
+    {
+        for ( ImportListener listener : listeners )
+        {
+            listener.progress( this );
+        }
+    }
+
+    private long phaseRows( ImportPhase phase )
+    {
+        if ( phase == ImportPhase.NODES )
+        {
+            return nodes.get();
+        }
+        else if ( phase == ImportPhase.RELATIONSHIPS )
+        {
+            return relationships.get();
+        }
+        return 0;
+    }
+
+    private long phaseElapsedNanos()
+    {
+        return ( phaseEndNanos == 0 ? System.nanoTime() : phaseEndNanos ) - phaseStartNanos;
+    }
+
+    private static long totalGcMillis()
+    {
+        long total = 0;
+        for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() )
+        {
+            total += Math.max( 0, collector.getCollectionTime() );
+        }
+        return total;
+    }
+
+    @Override
+    public String getPhase()
+    {
+        ImportPhase current = phase;
+        return current == null ? "NOT_STARTED" : current.name();
+    }
+
+    public ImportPhase getCurrentPhase()
+    {
+        return phase;
+    }
+
+    @Override
+    public long getNodes()
+    {
+        return nodes.get();
+    }
+
+    @Override
+    public long getRelationships()
+    {
+        return relationships.get();
+    }
+
+    @Override
+    public long getRejectedRelationships()
+    {
+        return rejectedRelationships.get();
+    }
+
+    @Override
+    public long getSkippedDeletes()
+    {
+        return skippedDeletes.get();
+    }
+
+    public Map<String, Long> getRelationshipTypeCounts()
+    {
+        if ( relationshipTypes == null )
+        {
+            return Collections.emptyMap();
+        }
+        return relationshipTypes.getCreated();
+    }
+
+    @Override
+    public long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    @Override
+    public long getInputBytes()
+    {
+        return inputBytes;
+    }
+
+    @Override
+    public long getInputRows()
+    {
+        return inputRows;
+    }
+
+    private long rowsDone()
+    {
+        return nodes.get() + relationships.get() + rejectedRelationships.get() + skippedDeletes.get();
+    }
+
+    @Override
+    public double getRowsPerSecond()
+    {
+        ImportPhase current = phase;
+        long nanos = phaseElapsedNanos();
+        if ( current == null || nanos <= 0 )
+        {
+            return 0;
+        }
+        return ( phaseRows( current ) - phaseStartRows ) * (double) TimeUnit.SECONDS.toNanos( 1 ) / nanos;
+    }
+
+    @Override
+    public long getElapsedMillis()
+    {
+        if ( startNanos == 0 )
+        {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis( ( endNanos == 0 ? System.nanoTime() : endNanos ) - startNanos );
+    }
+
+    public long getPhaseMillis( ImportPhase phase )
+    {
+        long nanos = phaseNanos[phase.ordinal()];
+        if ( phase == this.phase && phaseEndNanos == 0 )
+        {
+            nanos += phaseElapsedNanos();
+        }
+        return TimeUnit.NANOSECONDS.toMillis( nanos );
+    }
+
+    @Override
+    public long getNodesMillis()
+    {
+        return getPhaseMillis( ImportPhase.NODES );
+    }
+
+    @Override
+    public long getRelationshipsMillis()
+    {
+        return getPhaseMillis( ImportPhase.RELATIONSHIPS );
+    }
+
+    @Override
+    public long getIndexingMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( indexingNanos.get() );
+    }
+
+    @Override
+    public long getGcPauseMillis()
+    {
+        return startNanos == 0 ? 0 : totalGcMillis() - gcBaselineMillis;
+    }
+
+    @Override
+    public long getEtaMillis()
+    {
+        long read = inputRows > 0 ? rowsDone() : bytesRead;
+        long total = inputRows > 0 ? inputRows : inputBytes;
+        if ( read <= 0 || total <= 0 || endNanos != 0 )
+        {
+            return -1;
+        }
+        return Math.max( 0, (long) ( getElapsedMillis() * ( (double) ( total - read ) / read ) ) );
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( getPhase().toLowerCase() );
+        sb.append( ": " ).append( getNodes() ).append( " nodes, " ).append( getRelationships() ).append( " relationships" );
+        sb.append( String.format( ", %.0f rows/s", getRowsPerSecond() ) );
+        if ( getSkippedDeletes() > 0 )
+        {
+            sb.append( ", " ).append( getSkippedDeletes() ).append( " deletes skipped" );
+        }
+        if ( inputBytes > 0 )
+        {
+            sb.append( String.format( ", %d/%d MB read", bytesRead >> 20, inputBytes >> 20 ) );
+        }
+        if ( inputRows > 0 )
+        {
+            sb.append( String.format( ", %d/%d rows", rowsDone(), inputRows ) );
+        }
+        sb.append( ", elapsed " ).append( getElapsedMillis() / 1000 ).append( " s" );
+        sb.append( ", indexing " ).append( getIndexingMillis() ).append( " ms" );
+        sb.append( ", gc " ).append( getGcPauseMillis() ).append( " ms" );
+        long eta = getEtaMillis();
+        if ( eta >= 0 )
+        {
+            sb.append( ", eta " ).append( eta / 1000 ).append( " s" );
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,34 @@
+package org.neo4j.dataimport;
+
+public interface ImportMetricsMBean
+{
+    String getPhase();
+
+    long getNodes();
+
+    long getRelationships();
+
+    long getRejectedRelationships();
+
+    long getSkippedDeletes();
+
+    long getBytesRead();
+
+    long getInputBytes();
+
+    long getInputRows();
+
+    double getRowsPerSecond();
+
+    long getElapsedMillis();
+
+    long getNodesMillis();
+
+    long getRelationshipsMillis();
+
+    long getIndexingMillis();
+
+    long getGcPauseMillis();
+
+    long getEtaMillis();
+}
@@ -0,0 +1,6 @@
+package org.neo4j.dataimport;
+
+public enum ImportPhase
+{
+    NODES, RELATIONSHIPS, INDEXING
+}
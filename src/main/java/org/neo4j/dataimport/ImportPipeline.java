@@ -0,0 +1,269 @@
+package org.neo4j.dataimport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+class ImportPipeline<I extends ImportPipeline.Batch, O extends ImportPipeline.Batch>
+{
+    private static final long POLL_MILLIS = 100;
+
+    interface Batch
+    {
+        int size();
+    }
+
+    interface Source<I>
+    {
+        I next() throws Exception;
+    }
+
+    interface Stage<I, O>
+    {
+        O process( I input ) throws Exception;
+    }
+
+    interface Sink<O>
+    {
+        void accept( O output ) throws Exception;
+    }
+
+    private final String name;
+    private final int workers;
+    private final BlockingQueue<Sequenced<I>> inputQueue;
+    private final BlockingQueue<Sequenced<O>> outputQueue;
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private final StageStatistics readStatistics;
+    private final StageStatistics parseStatistics;
+    private final StageStatistics writeStatistics;
+
+    ImportPipeline( String name, int workers, int queueCapacity )
+    {
+        if ( workers < 1 )
+        {
+            throw new IllegalArgumentException( "Pipeline needs at least one worker, got " + workers );
+        }
+        this.name = name;
+        this.workers = workers;
+        this.inputQueue = new ArrayBlockingQueue<Sequenced<I>>( queueCapacity );
+        this.outputQueue = new ArrayBlockingQueue<Sequenced<O>>( queueCapacity );
+        this.readStatistics = new StageStatistics( name + " read", 1 );
+        this.parseStatistics = new StageStatistics( name + " parse", workers );
+        this.writeStatistics = new StageStatistics( name + " write", 1 );
+    }
+
+    public void run( final Source<I> source, final Stage<I, O> stage, Sink<O> sink ) throws Exception
+    {
+        List<Thread> threads = new ArrayList<Thread>();
+        threads.add( new Thread( name + "-reader" )
+        {
+            @Override
+            public void run()
+            {
+                read( source );
+            }
+        } );
+        for ( int i = 0; i < workers; i++ )
+        {
+            threads.add( new Thread( name + "-parser-" + i )
+            {
+                @Override
+                public void run()
+                {
+                    parse( stage );
+                }
+            } );
+        }
+        for ( Thread thread : threads )
+        {
+            thread.setDaemon( true );
+            thread.start();
+        }
+        try
+        {
+            write( sink );
+        }
+        catch ( Throwable e )
+        {
+            failure.compareAndSet( null, e );
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        Throwable cause = failure.get();
+        if ( cause instanceof Exception )
+        {
+            throw (Exception) cause;
+        }
+        else if ( cause != null )
+        {
+            throw (Error) cause;
+        }
+    }
+
+    public List<StageStatistics> getStatistics()
+    {
+        return Arrays.asList( readStatistics, parseStatistics, writeStatistics );
+    }
+
+    private void read( Source<I> source )
+    {
+        try
+        {
+            long sequence = 0;
+            while ( true )
+            {
+                long start = System.nanoTime();
+                I batch = source.next();
+                long read = System.nanoTime();
+                if ( batch == null )
+                {
+                    break;
+                }
+                readStatistics.processed( batch.size(), read - start );
+                if ( !put( inputQueue, new Sequenced<I>( sequence++, batch ) ) )
+                {
+                    return;
+                }
+                readStatistics.waited( System.nanoTime() - read );
+            }
+            for ( int i = 0; i < workers; i++ )
+            {
+                if ( !put( inputQueue, Sequenced.<I>endOfStream() ) )
+                {
+                    return;
+                }
+            }
+        }
+        catch ( Throwable e )
+        {
+            failure.compareAndSet( null, e );
+        }
+    }
+
+    private void parse( Stage<I, O> stage )
+    {
+        try
+        {
+            while ( true )
+            {
+                long start = System.nanoTime();
+                Sequenced<I> input = take( inputQueue );
+                if ( input == null )
+                {
+                    return;
+                }
+                long taken = System.nanoTime();
+                parseStatistics.waited( taken - start );
+                if ( input.isEndOfStream() )
+                {
+                    put( outputQueue, Sequenced.<O>endOfStream() );
+                    return;
+                }
+                O output = stage.process( input.item );
+                long processed = System.nanoTime();
+                parseStatistics.processed( input.item.size(), processed - taken );
+                if ( !put( outputQueue, new Sequenced<O>( input.sequence, output ) ) )
+                {
+                    return;
+                }
+                parseStatistics.waited( System.nanoTime() - processed );
+            }
+        }
+        catch ( Throwable e )
+        {
+            failure.compareAndSet( null, e );
+        }
+    }
+
+    private void write( Sink<O> sink ) throws Exception
+    {
+        Map<Long, O> pending = new HashMap<Long, O>();
+        long nextSequence = 0;
+        int finishedWorkers = 0;
+        while ( finishedWorkers < workers || !pending.isEmpty() )
+        {
+            long start = System.nanoTime();
+            Sequenced<O> output = take( outputQueue );
+            if ( output == null )
+            {
+                return;
+            }
+            writeStatistics.waited( System.nanoTime() - start );
+            if ( output.isEndOfStream() )
+            {
+                finishedWorkers++;
+            }
+            else
+            {
+                pending.put( output.sequence, output.item );
+            }
+            O next;
+            while ( ( next = pending.remove( nextSequence ) ) != null )
+            {
+                long writeStart = System.nanoTime();
+                sink.accept( next );
+                writeStatistics.processed( next.size(), System.nanoTime() - writeStart );
+                nextSequence++;
+            }
+            if ( finishedWorkers == workers && !pending.isEmpty() )
+            {
+                throw new IllegalStateException( "Missing batch " + nextSequence + " in " + name + " pipeline" );
+            }
+        }
+    }
+
+    private <T> boolean put( BlockingQueue<T> queue, T item ) throws InterruptedException
+    {
+        while ( failure.get() == null )
+        {
+            if ( queue.offer( item, POLL_MILLIS, TimeUnit.MILLISECONDS ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> T take( BlockingQueue<T> queue ) throws InterruptedException
+    {
+        while ( failure.get() == null )
+        {
+            T item = queue.poll( POLL_MILLIS, TimeUnit.MILLISECONDS );
+            if ( item != null )
+            {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private static class Sequenced<T>
+    {
+        private final long sequence;
+        private final T item;
+
+        Sequenced( long sequence, T item )
+        {
+            this.sequence = sequence;
+            this.item = item;
+        }
+
+        static <T> Sequenced<T> endOfStream()
+        {
+            return new Sequenced<T>( -1, null );
+        }
+
+        boolean isEndOfStream()
+        {
+            return item == null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.neo4j.dataimport;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+final class InputFiles
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private InputFiles()
+    {
+    }
+
+    static List<File> resolve( File input ) throws IOException
+    {
+        if ( input.isDirectory() )
+        {
+            return list( input, null );
+        }
+        String name = input.getName();
+        if ( name.indexOf( '*' ) < 0 && name.indexOf( '?' ) < 0 )
+        {
+            return Collections.singletonList( input );
+        }
+        File directory = input.getAbsoluteFile().getParentFile();
+        List<File> files = list( directory, globPattern( name ) );
+        if ( files.isEmpty() )
+        {
+            throw new FileNotFoundException( "No input files match " + input );
+        }
+        return files;
+    }
+
+    static long length( List<File> files )
+    {
+        long length = 0;
+        for ( File file : files )
+        {
+            length += file.length();
+        }
+        return length;
+    }
+
+    static boolean isCompressed( File file )
+    {
+        return isGzip( file ) || isZstd( file );
+    }
+
+    static InputStream decompress( File file, InputStream in ) throws IOException
+    {
+        if ( isGzip( file ) )
+        {
+            return new GZIPInputStream( in, BUFFER_SIZE );
+        }
+        if ( isZstd( file ) )
+        {
+            return new ZstdInputStream( in );
+        }
+        return in;
+    }
+
+    private static boolean isGzip( File file )
+    {
+        return file.getName().endsWith( ".gz" );
+    }
+
+    private static boolean isZstd( File file )
+    {
+        String name = file.getName();
+        return name.endsWith( ".zst" ) || name.endsWith( ".zstd" );
+    }
+
+    private static List<File> list( File directory, Pattern pattern ) throws IOException
+    {
+        File[] entries = directory.listFiles();
+        if ( entries == null )
+        {
+            throw new FileNotFoundException( "Unable to list " + directory );
+        }
+        Arrays.sort( entries );
+        List<File> files = new ArrayList<File>();
+        for ( File entry : entries )
+        {
+            String name = entry.getName();
+            // skip marker and checksum files such as _SUCCESS or .part-00000.crc
+            if ( !entry.isFile() || name.startsWith( "." ) || name.startsWith( "_" ) )
+            {
+                continue;
+            }
+            if ( pattern == null || pattern.matcher( name ).matches() )
+            {
+                files.add( entry );
+            }
+        }
+        return files;
+    }
+
+    private static Pattern globPattern( String glob )
+    {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for ( int i = 0; i < glob.length(); i++ )
+        {
+            char c = glob.charAt( i );
+            if ( c == '*' || c == '?' )
+            {
+                if ( i > literalStart )
+                {
+                    regex.append( Pattern.quote( glob.substring( literalStart, i ) ) );
+                }
+                regex.append( c == '*' ? ".*" : "." );
+                literalStart = i + 1;
+            }
+        }
+        if ( literalStart < glob.length() )
+        {
+            regex.append( Pattern.quote( glob.substring( literalStart ) ) );
+        }
+        return Pattern.compile( regex.toString() );
+    }
+}
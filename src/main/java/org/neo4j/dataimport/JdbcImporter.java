@@ -1,22 +1,36 @@
 package org.neo4j.dataimport;
 
-import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.kernel.impl.batchinsert.BatchInserter;
 import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
 
+import javax.sql.DataSource;
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public class JdbcImporter implements BatchInserterImporter
 {
+    static final int DEFAULT_FETCH_SIZE = 10000;
+    static final int DEFAULT_BATCH_SIZE = 10000;
+    static final int PARTITIONS_PER_THREAD = 4;
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
     private Connection connection;
     private String nodesTable;
     private String relsTable;
@@ -26,6 +40,40 @@ public class JdbcImporter implements BatchInserterImporter
     private String relTypeColumnName = "type";
     private PropertyStrategy nodePropertyStrategy = new ColumnPropertyStrategy();
     private PropertyStrategy relPropertyStrategy = new ColumnPropertyStrategy();
+    private int fetchSize;
+    private DataSource dataSource;
+    private int readerThreads;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean idMapping;
+    private File tempDirectory;
+    private IdMapper idMapper;
+    private int relationshipRunSize;
+    private boolean degreeGrouping;
+    private RelationshipSorter relationshipSorter;
+    private RowWriter rowWriter;
+    private RelationshipLookup relationshipLookup;
+    private RelationshipValidator validator;
+    private File rejectFile;
+    private long expectedRelationships;
+    private boolean deltaImport;
+    private String modifiedColumnName;
+    private Timestamp modifiedSince;
+    private File checkpointFile;
+    private ImportCheckpoint checkpoint;
+    private ImportPhase checkpointPhase;
+    private boolean resumed;
+    private long resumedNodes;
+    private long resumedRelationships;
+    private boolean reconcileNodes;
+    private long skipRelationships;
+    private long skipRows;
+    private long writtenRows;
+    // row counts of the last size estimate, -1 until the tables were counted
+    private long nodeRows = -1;
+    private long relationshipRows = -1;
+    private final List<StageStatistics> extractionStatistics = new ArrayList<StageStatistics>();
+    private final RelationshipTypes relationshipTypes = new RelationshipTypes();
+    private final ImportMetrics metrics = new ImportMetrics( relationshipTypes );
 
     public JdbcImporter( Connection connection, String nodes, String rels )
     {
@@ -36,21 +84,32 @@ public class JdbcImporter implements BatchInserterImporter
 
     public static void main( String[] args ) throws SQLException, IOException
     {
-        if ( args.length != 6 )
+        List<String> arguments = new ArrayList<String>( Arrays.asList( args ) );
+        boolean checkpointing = arguments.remove( ImportCheckpoint.OPTION );
+        if ( arguments.size() != 6 )
         {
-            System.out.println( "Args: <target store dir> <config file>" );
+            System.out.println( "Args: [" + ImportCheckpoint.OPTION + "] <target store dir> <jdbc url> <user> <password> <nodes table> <relationships table>" );
             System.exit( 1 );
         }
-        String storeDir = args[0];
-        String connectionString = args[1];
-        String user = args[2];
-        String pass = args[3];
-        String nodesTable = args[4];
-        String relsTable = args[5];
-        BatchInserter batchInserter = new BatchInserterImpl( storeDir, getConfig( storeDir ) );
+        String storeDir = arguments.get( 0 );
+        String connectionString = arguments.get( 1 );
+        String user = arguments.get( 2 );
+        String pass = arguments.get( 3 );
+        String nodesTable = arguments.get( 4 );
+        String relsTable = arguments.get( 5 );
+        JdbcImporter importer = new JdbcImporter( DriverManager.getConnection( connectionString, user, pass ), nodesTable, relsTable );
+        importer.setFetchSize( DEFAULT_FETCH_SIZE );
+        if ( checkpointing )
+        {
+            importer.setCheckpointing( new File( storeDir, ImportCheckpoint.FILE_NAME ) );
+        }
+        StoreSizeEstimate estimate = importer.estimateStoreSize( StoreSizeEstimate.DEFAULT_SAMPLE_ROWS );
+        System.out.println( "Estimated store: " + estimate );
+        Map<String, String> config = estimate.configure( getConfig( storeDir ), StoreSizeEstimate.availableMemory() );
+        BatchInserter batchInserter = new BatchInserterImpl( storeDir, config );
         try
         {
-            new JdbcImporter( DriverManager.getConnection( connectionString, user, pass ), nodesTable, relsTable ).importTo( batchInserter );
+            ProgressReporter.importWithProgress( importer, batchInserter, "jdbc" );
         }
         finally
         {
@@ -75,44 +134,745 @@ public class JdbcImporter implements BatchInserterImporter
         {
             doImport( target );
         }
+        catch ( Exception e )
+        {
+            saveCheckpointOnFailure();
+            throw new DataImportException( e );
+        }
+        finally
+        {
+            metrics.completed();
+            checkpoint = null;
+            checkpointPhase = null;
+        }
+    }
+
+    private void doImport( BatchInserter target ) throws Exception
+    {
+        boolean autoCommit = connection.getAutoCommit();
+        if ( isStreaming() && autoCommit )
+        {
+            // PostgreSQL only honours the fetch size inside a transaction
+            connection.setAutoCommit( false );
+        }
+        checkPartitionKeys();
+        if ( nodeRows < 0 && checkpointFile != null )
+        {
+            // the checkpoint names its input by the row counts, without an estimate they are counted here
+            countRows();
+        }
+        openCheckpoint( nodesTable + "," + nodeRows + ";" + relsTable + "," + relationshipRows );
+        rowWriter = new RowWriter( target );
+        relationshipLookup = deltaImport ? new RelationshipLookup( target ) : null;
+        validator = new RelationshipValidator( target, rejectFile, resumed, resumed || deltaImport, expectedRelationships );
+        if ( idMapping )
+        {
+            idMapper = new IdMapper( tempDirectory );
+        }
+        try
+        {
+            if ( nodeRows >= 0 )
+            {
+                // rows written before a resumed checkpoint are not counted again
+                metrics.startedRows( Math.max( 0, nodeRows + relationshipRows - resumedNodes - resumedRelationships ) );
+            }
+            if ( !isPhaseDone( ImportPhase.NODES ) )
+            {
+                metrics.phaseStarted( ImportPhase.NODES );
+                startPhase( ImportPhase.NODES, target );
+                importNodes( target );
+                metrics.phaseCompleted( ImportPhase.NODES );
+            }
+            if ( !isPhaseDone( ImportPhase.RELATIONSHIPS ) )
+            {
+                metrics.phaseStarted( ImportPhase.RELATIONSHIPS );
+                startPhase( ImportPhase.RELATIONSHIPS, target );
+                importRels( target );
+                metrics.phaseCompleted( ImportPhase.RELATIONSHIPS );
+            }
+            if ( checkpoint != null )
+            {
+                checkpoint.completed();
+            }
+        }
+        finally
+        {
+            if ( idMapper != null )
+            {
+                idMapper.close();
+                idMapper = null;
+            }
+            validator.close();
+            validator = null;
+            if ( connection.getAutoCommit() != autoCommit )
+            {
+                connection.commit();
+                connection.setAutoCommit( autoCommit );
+            }
+        }
+    }
+
+    // table contents are not compared, only the tables and their row counts
+    private void openCheckpoint( String input ) throws IOException
+    {
+        if ( checkpointFile == null ) return;
+        if ( idMapping )
+        {
+            throw new IllegalStateException( "Checkpoints can not be combined with id mapping, the id mapping is kept in temp files." );
+        }
+        // a refused checkpoint is left as it is, it only takes part in the import once it was loaded
+        ImportCheckpoint opened = new ImportCheckpoint( checkpointFile, input );
+        resumed = opened.load();
+        opened.started();
+        checkpoint = opened;
+        resumedNodes = resumed ? checkpoint.getNodes() : 0;
+        resumedRelationships = resumed ? checkpoint.getRelationships() : 0;
+    }
+
+    private boolean isPhaseDone( ImportPhase phase )
+    {
+        return resumed && checkpoint.isPhaseDone( phase );
+    }
+
+    private void startPhase( ImportPhase phase, BatchInserter target ) throws IOException
+    {
+        reconcileNodes = false;
+        skipRelationships = 0;
+        skipRows = 0;
+        writtenRows = 0;
+        if ( checkpoint == null ) return;
+        checkpointPhase = phase;
+        if ( resumed && checkpoint.isResumingPhase( phase ) )
+        {
+            skipRows = checkpoint.getRows();
+            writtenRows = skipRows;
+            // upserts can be applied twice, a fresh store is reconciled with what was written after the checkpoint
+            reconcileNodes = !deltaImport && phase == ImportPhase.NODES;
+            if ( !deltaImport && phase == ImportPhase.RELATIONSHIPS )
+            {
+                skipRelationships = checkpoint.relationshipsAfterCheckpoint( target );
+                if ( skipRelationships > 0 && dataSource != null )
+                {
+                    throw new IllegalStateException( "Relationships read in parallel arrive in no particular order, so an interrupted relationship import can not be resumed." );
+                }
+            }
+        }
+        else
+        {
+            checkpoint.phaseStarted( phase, totalNodes(), totalRelationships() );
+        }
+    }
+
+    private long totalNodes()
+    {
+        return resumedNodes + metrics.getNodes();
+    }
+
+    private long totalRelationships()
+    {
+        return resumedRelationships + metrics.getRelationships();
+    }
+
+    // only sequential reads have a stable row order to resume from, parallel reads checkpoint between phases
+    private boolean skipImportedRow()
+    {
+        if ( skipRows == 0 )
+        {
+            return false;
+        }
+        skipRows--;
+        return true;
+    }
+
+    private void written()
+    {
+        if ( checkpoint == null || relationshipSorter != null ) return;
+        writtenRows++;
+    }
+
+    // the store is shut down after a failure, so the last written row is the checkpoint
+    private void saveCheckpointOnFailure()
+    {
+        if ( checkpoint == null || checkpoint.isCompleted() ) return;
+        try
+        {
+            // parallel reads resume from the start of the phase
+            if ( checkpointPhase != null && dataSource == null )
+            {
+                checkpoint.position( 0, 0, writtenRows, totalNodes(), totalRelationships() );
+            }
+            checkpoint.failed();
+        }
+        catch ( Exception e )
+        {
+            System.err.println( "Unable to save checkpoint " + checkpointFile + ": " + e );
+        }
+    }
+
+    private void importNodes( final BatchInserter target ) throws Exception
+    {
+        if ( dataSource != null )
+        {
+            initializeStrategy( nodesTable, nodePropertyStrategy, reserved( nodeIdColumnName ) );
+            importPartitioned( nodesTable, nodeIdColumnName, new RowReader<NodeBatch>()
+            {
+                @Override
+                public NodeBatch newBatch()
+                {
+                    return new NodeBatch( batchSize, columnarKeys( nodePropertyStrategy ) );
+                }
+
+                @Override
+                public void read( ResultSet resultSet, NodeBatch batch ) throws SQLException
+                {
+                    if ( batch.rows() == null )
+                    {
+                        batch.add( nodeId( resultSet ), copy( nodePropertyStrategy.getPropertiesForCursorRow( resultSet ) ) );
+                        return;
+                    }
+                    int row = batch.add( nodeId( resultSet ) );
+                    ( (ColumnPropertyStrategy) nodePropertyStrategy ).readRow( resultSet, batch.rows(), row );
+                }
+            }, new ImportPipeline.Sink<NodeBatch>()
+            {
+                @Override
+                public void accept( NodeBatch batch )
+                {
+                    createNodes( target, batch );
+                }
+            } );
+            return;
+        }
+        PreparedStatement statement = prepareSelect( nodesTable );
+        try
+        {
+            ResultSet resultSet = statement.executeQuery();
+            nodePropertyStrategy.initialize( resultSet, reserved( nodeIdColumnName ) );
+            while ( resultSet.next() )
+            {
+                if ( skipImportedRow() ) continue;
+                createNode( target, nodeId( resultSet ),
+                    nodePropertyStrategy.getPropertiesForCursorRow( resultSet ) );
+                written();
+            }
+            resultSet.close();
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    private void importRels( final BatchInserter target ) throws Exception
+    {
+        if ( degreeGrouping )
+        {
+            int runSize = relationshipRunSize > 0 ? relationshipRunSize : RelationshipSorter.DEFAULT_RUN_SIZE;
+            relationshipSorter = new RelationshipSorter( tempDirectory, runSize, relationshipTypes, countDegrees() );
+        }
+        else if ( relationshipRunSize > 0 )
+        {
+            relationshipSorter = new RelationshipSorter( tempDirectory, relationshipRunSize, relationshipTypes );
+        }
+        try
+        {
+            readRels( target );
+            if ( relationshipSorter != null )
+            {
+                relationshipSorter.writeSorted( batchSize, new ImportPipeline.Sink<RelationshipBatch>()
+                {
+                    @Override
+                    public void accept( RelationshipBatch batch ) throws IOException
+                    {
+                        insertRelationships( target, batch );
+                    }
+                } );
+            }
+        }
+        finally
+        {
+            if ( relationshipSorter != null )
+            {
+                relationshipSorter.close();
+                relationshipSorter = null;
+            }
+        }
+    }
+
+    // a first pass that only selects the endpoint columns
+    private NodeDegrees countDegrees() throws SQLException
+    {
+        NodeDegrees degrees = new NodeDegrees();
+        PreparedStatement statement = connection.prepareStatement( "SELECT " + relSrcColumnName + ", " + relDestColumnName +
+            " FROM " + relsTable + modifiedCondition( " WHERE " ), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+        try
+        {
+            configureFetchSize( connection, statement );
+            bindModifiedSince( statement, 1 );
+            ResultSet resultSet = statement.executeQuery();
+            while ( resultSet.next() )
+            {
+                degrees.add( endpoint( resultSet, relSrcColumnName ), endpoint( resultSet, relDestColumnName ) );
+            }
+            resultSet.close();
+        }
+        finally
+        {
+            statement.close();
+        }
+        return degrees;
+    }
+
+    private void readRels( final BatchInserter target ) throws Exception
+    {
+        if ( dataSource != null )
+        {
+            initializeStrategy( relsTable, relPropertyStrategy, reserved( relSrcColumnName, relDestColumnName, relTypeColumnName ) );
+            importPartitioned( relsTable, relSrcColumnName, new RowReader<RelationshipBatch>()
+            {
+                @Override
+                public RelationshipBatch newBatch()
+                {
+                    return new RelationshipBatch( batchSize, columnarKeys( relPropertyStrategy ) );
+                }
+
+                @Override
+                public void read( ResultSet resultSet, RelationshipBatch batch ) throws SQLException
+                {
+                    long from = endpoint( resultSet, relSrcColumnName );
+                    long to = endpoint( resultSet, relDestColumnName );
+                    RelationshipType type = relationshipTypes.get( resultSet.getString( relTypeColumnName ) );
+                    if ( batch.rows() == null )
+                    {
+                        batch.add( from, to, type, copy( relPropertyStrategy.getPropertiesForCursorRow( resultSet ) ) );
+                        return;
+                    }
+                    int row = batch.add( from, to, type );
+                    ( (ColumnPropertyStrategy) relPropertyStrategy ).readRow( resultSet, batch.rows(), row );
+                }
+            }, new ImportPipeline.Sink<RelationshipBatch>()
+            {
+                @Override
+                public void accept( RelationshipBatch batch ) throws IOException
+                {
+                    if ( relationshipSorter == null )
+                    {
+                        insertRelationships( target, batch );
+                        return;
+                    }
+                    for ( int i = 0; i < batch.size(); i++ )
+                    {
+                        relationshipSorter.add( batch.getFrom( i ), batch.getTo( i ), batch.getType( i ), batch.getProperties( i ) );
+                    }
+                }
+            } );
+            return;
+        }
+        PreparedStatement statement = prepareSelect( relsTable );
+        try
+        {
+            ResultSet resultSet = statement.executeQuery();
+            relPropertyStrategy.initialize( resultSet, reserved( relSrcColumnName, relDestColumnName, relTypeColumnName ) );
+            while ( resultSet.next() )
+            {
+                if ( skipImportedRow() ) continue;
+                createRelationship( target, endpoint( resultSet, relSrcColumnName ),
+                    endpoint( resultSet, relDestColumnName ),
+                    relationshipTypes.get( resultSet.getString( relTypeColumnName ) ),
+                    relPropertyStrategy.getPropertiesForCursorRow( resultSet ) );
+                written();
+            }
+            resultSet.close();
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    private void createRelationship( BatchInserter target, long from, long to, RelationshipType type, Map<String, Object> properties ) throws IOException
+    {
+        if ( relationshipSorter != null )
+        {
+            relationshipSorter.add( from, to, type, properties );
+            return;
+        }
+        insertRelationship( target, from, to, type, properties );
+    }
+
+    private void insertRelationships( BatchInserter target, RelationshipBatch batch ) throws IOException
+    {
+        if ( skipRelationships > 0 || deltaImport )
+        {
+            for ( int i = 0; i < batch.size(); i++ )
+            {
+                insertRelationship( target, batch.getFrom( i ), batch.getTo( i ), batch.getType( i ), batch.getProperties( i ) );
+            }
+            return;
+        }
+        BitSet rejected = null;
+        for ( int i = 0; i < batch.size(); i++ )
+        {
+            if ( !validate( batch.getFrom( i ), batch.getTo( i ), batch.getType( i ) ) )
+            {
+                rejected = rejected == null ? new BitSet( batch.size() ) : rejected;
+                rejected.set( i );
+            }
+        }
+        if ( rejected != null )
+        {
+            for ( int i = rejected.nextClearBit( 0 ); i < batch.size(); i = rejected.nextClearBit( i + 1 ) )
+            {
+                writeRelationship( target, batch.getFrom( i ), batch.getTo( i ), batch.getType( i ), batch.getProperties( i ) );
+            }
+            return;
+        }
+        rowWriter.createRelationships( batch );
+        validator.written();
+        for ( int i = 0; i < batch.size(); i++ )
+        {
+            relationshipTypes.created( batch.getType( i ) );
+        }
+        metrics.relationshipsCreated( batch.size() );
+    }
+
+    private void insertRelationship( BatchInserter target, long from, long to, RelationshipType type, Map<String, Object> properties ) throws IOException
+    {
+        if ( validate( from, to, type ) )
+        {
+            writeRelationship( target, from, to, type, properties );
+        }
+    }
+
+    private boolean validate( long from, long to, RelationshipType type ) throws IOException
+    {
+        if ( validator.accept( from, to, type ) )
+        {
+            return true;
+        }
+        metrics.relationshipRejected();
+        return false;
+    }
+
+    private void writeRelationship( BatchInserter target, long from, long to, RelationshipType type, Map<String, Object> properties )
+    {
+        if ( skipRelationships > 0 )
+        {
+            // written after the checkpoint, relationship ids follow the insertion order
+            skipRelationships--;
+            validator.written();
+            relationshipTypes.created( type );
+            metrics.relationshipCreated();
+            return;
+        }
+        if ( deltaImport )
+        {
+            relationshipLookup.upsert( from, to, type, properties );
+        }
+        else
+        {
+            target.createRelationship( from, to, type, properties );
+        }
+        validator.written();
+        relationshipTypes.created( type );
+        metrics.relationshipCreated();
+    }
+
+    // whole batches go to the row writer unless rows need to be checked against the store one by one
+    private void createNodes( BatchInserter target, NodeBatch batch )
+    {
+        if ( reconcileNodes || deltaImport )
+        {
+            for ( int i = 0; i < batch.size(); i++ )
+            {
+                createNode( target, batch.getId( i ), batch.getProperties( i ) );
+            }
+            return;
+        }
+        rowWriter.createNodes( batch );
+        for ( int i = 0; i < batch.size(); i++ )
+        {
+            validator.nodeCreated( batch.getId( i ) );
+        }
+        metrics.nodesCreated( batch.size() );
+    }
+
+    private void createNode( BatchInserter target, long id, Map<String, Object> properties )
+    {
+        if ( reconcileNodes )
+        {
+            if ( target.nodeExists( id ) )
+            {
+                validator.nodeCreated( id );
+                metrics.nodeCreated();
+                return;
+            }
+            // parallel reads write nodes in no particular order, so they are checked until the phase ends
+            reconcileNodes = dataSource != null;
+        }
+        if ( deltaImport )
+        {
+            StoreUpdates.upsertNode( target, id, properties );
+        }
+        else
+        {
+            target.createNode( id, properties );
+        }
+        validator.nodeCreated( id );
+        metrics.nodeCreated();
+    }
+
+    private long nodeId( ResultSet resultSet ) throws SQLException
+    {
+        if ( idMapper == null )
+        {
+            return resultSet.getLong( nodeIdColumnName );
+        }
+        return idMapper.add( resultSet.getString( nodeIdColumnName ) );
+    }
+
+    private long endpoint( ResultSet resultSet, String column ) throws SQLException
+    {
+        if ( idMapper == null )
+        {
+            return resultSet.getLong( column );
+        }
+        String key = resultSet.getString( column );
+        long id = idMapper.get( key );
+        // with a reject file the row is rejected when it is written
+        if ( id == IdMapper.NOT_FOUND && rejectFile == null )
+        {
+            throw new IllegalStateException( "Relationship refers to unknown node id '" + key + "' in column " + column );
+        }
+        return id;
+    }
+
+    private static String[] columnarKeys( PropertyStrategy strategy )
+    {
+        return strategy instanceof ColumnPropertyStrategy ? ( (ColumnPropertyStrategy) strategy ).getPropertyKeys() : null;
+    }
+
+    private static Map<String, Object> copy( Map<String, Object> properties )
+    {
+        return new HashMap<String, Object>( properties );
+    }
+
+    // counts the rows of both tables and measures the properties of the first rows, so the store files can be planned before the import
+    public StoreSizeEstimate estimateStoreSize( int sampleRows )
+    {
+        try
+        {
+            StoreSizeEstimate estimate = new StoreSizeEstimate();
+            StoreSizeEstimate.Sample nodeSample = new StoreSizeEstimate.Sample();
+            sampleRows( nodesTable, nodePropertyStrategy, sampleRows, nodeSample, reserved( nodeIdColumnName ) );
+            countRows();
+            estimate.addNodes( nodeRows, nodeSample );
+            StoreSizeEstimate.Sample relSample = new StoreSizeEstimate.Sample();
+            sampleRows( relsTable, relPropertyStrategy, sampleRows, relSample, reserved( relSrcColumnName, relDestColumnName, relTypeColumnName ) );
+            estimate.addRelationships( relationshipRows, relSample );
+            return estimate;
+        }
         catch ( SQLException e )
         {
             throw new DataImportException( e );
         }
     }
 
-    private void doImport( BatchInserter target ) throws SQLException
+    // the import reuses these counts for its progress and checkpoint, the tables are only counted once
+    private void countRows() throws SQLException
     {
-        importNodes( target );
-        importRels( target );
+        nodeRows = countRows( nodesTable );
+        relationshipRows = countRows( relsTable );
     }
 
-    private void importNodes( BatchInserter target ) throws SQLException
+    private long countRows( String table ) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement( "SELECT COUNT(*) FROM " + table + modifiedCondition( " WHERE " ) );
+        try
+        {
+            bindModifiedSince( statement, 1 );
+            ResultSet resultSet = statement.executeQuery();
+            resultSet.next();
+            long count = resultSet.getLong( 1 );
+            resultSet.close();
+            return count;
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    private void sampleRows( String table, PropertyStrategy strategy, int sampleRows, StoreSizeEstimate.Sample sample, String... reservedColumns ) throws SQLException
     {
         Statement statement = connection.createStatement();
-        ResultSet resultSet = statement.executeQuery( "SELECT * FROM " + nodesTable );
-        nodePropertyStrategy.initialize( resultSet, nodeIdColumnName );
-        while ( resultSet.next() )
+        try
         {
-            target.createNode( resultSet.getLong( nodeIdColumnName ),
-                nodePropertyStrategy.getPropertiesForCursorRow( resultSet ) );
+            statement.setMaxRows( sampleRows );
+            ResultSet resultSet = statement.executeQuery( "SELECT * FROM " + table );
+            strategy.initialize( resultSet, reservedColumns );
+            while ( resultSet.next() )
+            {
+                for ( Object value : strategy.getPropertiesForCursorRow( resultSet ).values() )
+                {
+                    if ( value instanceof String )
+                    {
+                        // the string store holds encoded bytes, characters undercount anything outside ASCII
+                        sample.stringProperty( ( (String) value ).getBytes( UTF_8 ).length );
+                    }
+                    else if ( value != null )
+                    {
+                        sample.property();
+                    }
+                }
+                sample.endRow();
+            }
+            resultSet.close();
         }
-        statement.close();
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    private void initializeStrategy( String table, PropertyStrategy strategy, String... reservedColumns ) throws SQLException
+    {
+        Statement statement = connection.createStatement();
+        try
+        {
+            ResultSet resultSet = statement.executeQuery( "SELECT * FROM " + table + " WHERE 1 = 0" );
+            strategy.initialize( resultSet, reservedColumns );
+            resultSet.close();
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    private <O extends ImportPipeline.Batch> void importPartitioned( String table, String keyColumn, RowReader<O> rowReader,
+                                                                    ImportPipeline.Sink<O> sink ) throws Exception
+    {
+        List<KeyRangePartition<O>> partitions = new ArrayList<KeyRangePartition<O>>();
+        Statement statement = connection.createStatement();
+        try
+        {
+            ResultSet resultSet = statement.executeQuery( "SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM " + table );
+            resultSet.next();
+            long min = resultSet.getLong( 1 );
+            boolean empty = resultSet.wasNull();
+            long max = resultSet.getLong( 2 );
+            resultSet.close();
+            if ( !empty )
+            {
+                for ( long[] range : keyRanges( min, max, readerThreads * PARTITIONS_PER_THREAD ) )
+                {
+                    partitions.add( new KeyRangePartition<O>( table, keyColumn, range[0], range[1], rowReader ) );
+                }
+            }
+        }
+        finally
+        {
+            statement.close();
+        }
+        PartitionedExtraction<O> extraction = new PartitionedExtraction<O>( table, readerThreads, readerThreads * 2 );
+        extraction.run( partitions, sink );
+        extractionStatistics.addAll( extraction.getStatistics() );
+    }
+
+    // tables are split into ranges of integer keys, mapped ids may be strings that have no such ranges
+    private void checkPartitionKeys() throws SQLException
+    {
+        if ( dataSource == null || !idMapping ) return;
+        checkIntegerKey( nodesTable, nodeIdColumnName );
+        checkIntegerKey( relsTable, relSrcColumnName );
     }
 
-    private void importRels( BatchInserter target ) throws SQLException
+    private void checkIntegerKey( String table, String keyColumn ) throws SQLException
     {
         Statement statement = connection.createStatement();
-        ResultSet resultSet = statement.executeQuery( "SELECT * FROM " + relsTable );
-        relPropertyStrategy.initialize( resultSet, relSrcColumnName, relDestColumnName, relTypeColumnName );
-        while ( resultSet.next() )
+        try
+        {
+            ResultSet resultSet = statement.executeQuery( "SELECT " + keyColumn + " FROM " + table + " WHERE 1 = 0" );
+            int type = resultSet.getMetaData().getColumnType( 1 );
+            resultSet.close();
+            if ( type != Types.BIGINT && type != Types.INTEGER && type != Types.SMALLINT && type != Types.TINYINT )
+            {
+                throw new IllegalStateException( "Parallel reads split " + table + " by ranges of " + keyColumn
+                        + ", which needs an integer column, mapped string ids have to be read sequentially." );
+            }
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    // the width of the key range may not fit a long, e.g. for hash keys spread over all values
+    static List<long[]> keyRanges( long min, long max, int count )
+    {
+        BigInteger last = BigInteger.valueOf( max );
+        BigInteger span = last.subtract( BigInteger.valueOf( min ) ).divide( BigInteger.valueOf( count ) ).add( BigInteger.ONE );
+        List<long[]> ranges = new ArrayList<long[]>();
+        for ( BigInteger low = BigInteger.valueOf( min ); low.compareTo( last ) <= 0; low = low.add( span ) )
+        {
+            BigInteger high = low.add( span ).subtract( BigInteger.ONE ).min( last );
+            ranges.add( new long[] { low.longValue(), high.longValue() } );
+        }
+        return ranges;
+    }
+
+    private PreparedStatement prepareSelect( String table ) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement( "SELECT * FROM " + table + modifiedCondition( " WHERE " ),
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+        configureFetchSize( connection, statement );
+        bindModifiedSince( statement, 1 );
+        return statement;
+    }
+
+    private String modifiedCondition( String keyword )
+    {
+        return modifiedSince == null ? "" : keyword + modifiedColumnName + " > ?";
+    }
+
+    private void bindModifiedSince( PreparedStatement statement, int parameter ) throws SQLException
+    {
+        if ( modifiedSince != null )
+        {
+            statement.setTimestamp( parameter, modifiedSince );
+        }
+    }
+
+    private String[] reserved( String... columns )
+    {
+        if ( modifiedColumnName == null )
+        {
+            return columns;
+        }
+        String[] reserved = new String[columns.length + 1];
+        System.arraycopy( columns, 0, reserved, 0, columns.length );
+        reserved[columns.length] = modifiedColumnName;
+        return reserved;
+    }
+
+    private void configureFetchSize( Connection connection, Statement statement ) throws SQLException
+    {
+        if ( isStreaming() )
         {
-            target.createRelationship( resultSet.getLong( relSrcColumnName ),
-                resultSet.getLong( relDestColumnName ),
-                DynamicRelationshipType.withName( resultSet.getString( relTypeColumnName ) ),
-                relPropertyStrategy.getPropertiesForCursorRow( resultSet ) );
+            // MySQL Connector/J only streams rows one at a time when asked for Integer.MIN_VALUE
+            statement.setFetchSize( isMySql( connection ) ? Integer.MIN_VALUE : fetchSize );
         }
-        statement.close();
+    }
+
+    private boolean isStreaming()
+    {
+        return fetchSize > 0;
+    }
+
+    private static boolean isMySql( Connection connection ) throws SQLException
+    {
+        return connection.getMetaData().getDatabaseProductName().toLowerCase().contains( "mysql" );
     }
 
     public void setNodeIdColumnName( String nodeIdColumnName )
@@ -144,4 +904,156 @@ public class JdbcImporter implements BatchInserterImporter
     {
         this.relPropertyStrategy = relPropertyStrategy;
     }
+
+    public void setFetchSize( int fetchSize )
+    {
+        this.fetchSize = fetchSize;
+    }
+
+    public void setParallelReads( DataSource dataSource, int readerThreads )
+    {
+        if ( readerThreads < 1 )
+        {
+            throw new IllegalArgumentException( "Parallel reads need at least one reader thread, got " + readerThreads );
+        }
+        this.dataSource = dataSource;
+        this.readerThreads = readerThreads;
+    }
+
+    public void setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+    }
+
+    // only rows with a modified column after the given time are read, a null time reads every row
+    public void setDeltaImport( String modifiedColumnName, Timestamp modifiedSince )
+    {
+        this.deltaImport = true;
+        this.modifiedColumnName = modifiedColumnName;
+        this.modifiedSince = modifiedSince;
+    }
+
+    public void setCheckpointing( File checkpointFile )
+    {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public void setRelationshipSorting( int runSize )
+    {
+        this.relationshipRunSize = runSize;
+    }
+
+    public void setDegreeGrouping( boolean degreeGrouping )
+    {
+        this.degreeGrouping = degreeGrouping;
+    }
+
+    public void setRejectFile( File rejectFile )
+    {
+        this.rejectFile = rejectFile;
+    }
+
+    public void setDuplicateSuppression( long expectedRelationships )
+    {
+        this.expectedRelationships = expectedRelationships;
+    }
+
+    public void setIdMapping( boolean idMapping )
+    {
+        this.idMapping = idMapping;
+    }
+
+    public void setTempDirectory( File tempDirectory )
+    {
+        this.tempDirectory = tempDirectory;
+    }
+
+    @Override
+    public ImportMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public List<StageStatistics> getExtractionStatistics()
+    {
+        return extractionStatistics;
+    }
+
+    private interface RowReader<O>
+    {
+        O newBatch();
+
+        void read( ResultSet resultSet, O batch ) throws SQLException;
+    }
+
+    private class KeyRangePartition<O extends ImportPipeline.Batch> implements PartitionedExtraction.Partition<O>
+    {
+        private final String table;
+        private final String keyColumn;
+        private final long low;
+        private final long high;
+        private final RowReader<O> rowReader;
+
+        KeyRangePartition( String table, String keyColumn, long low, long high, RowReader<O> rowReader )
+        {
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.low = low;
+            this.high = high;
+            this.rowReader = rowReader;
+        }
+
+        @Override
+        public void extract( PartitionedExtraction.Output<O> output ) throws Exception
+        {
+            Connection partitionConnection = dataSource.getConnection();
+            try
+            {
+                boolean autoCommit = partitionConnection.getAutoCommit();
+                if ( isStreaming() && autoCommit )
+                {
+                    partitionConnection.setAutoCommit( false );
+                }
+                PreparedStatement statement = partitionConnection.prepareStatement(
+                    "SELECT * FROM " + table + " WHERE " + keyColumn + " >= ? AND " + keyColumn + " <= ?" + modifiedCondition( " AND " ),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+                try
+                {
+                    configureFetchSize( partitionConnection, statement );
+                    statement.setLong( 1, low );
+                    statement.setLong( 2, high );
+                    bindModifiedSince( statement, 3 );
+                    ResultSet resultSet = statement.executeQuery();
+                    O batch = rowReader.newBatch();
+                    while ( resultSet.next() )
+                    {
+                        rowReader.read( resultSet, batch );
+                        if ( batch.size() == batchSize )
+                        {
+                            output.emit( batch );
+                            batch = rowReader.newBatch();
+                        }
+                    }
+                    if ( batch.size() > 0 )
+                    {
+                        output.emit( batch );
+                    }
+                    resultSet.close();
+                }
+                finally
+                {
+                    statement.close();
+                }
+                if ( partitionConnection.getAutoCommit() != autoCommit )
+                {
+                    partitionConnection.commit();
+                    partitionConnection.setAutoCommit( autoCommit );
+                }
+            }
+            finally
+            {
+                partitionConnection.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,16 @@
+package org.neo4j.dataimport;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// adapts accessors written against column labels, the form accessors had before they were bound to column ordinals
+public abstract class LabelColumnAccessor implements ColumnAccessor
+{
+    public abstract Object getValue( ResultSet resultSet, String columnLabel ) throws SQLException;
+
+    @Override
+    public Object getValue( ResultSet resultSet, int column ) throws SQLException
+    {
+        return getValue( resultSet, resultSet.getMetaData().getColumnLabel( column ) );
+    }
+}
@@ -0,0 +1,102 @@
+package org.neo4j.dataimport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+final class MappedMemory implements Closeable
+{
+    static final int DEFAULT_CHUNK_BITS = 30;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final int chunkBits;
+    private final long chunkMask;
+    private MappedByteBuffer[] chunks = new MappedByteBuffer[4];
+
+    MappedMemory( File tempDirectory, String name ) throws IOException
+    {
+        this( tempDirectory, name, DEFAULT_CHUNK_BITS );
+    }
+
+    MappedMemory( File tempDirectory, String name, int chunkBits ) throws IOException
+    {
+        this.file = File.createTempFile( name + "-", ".mapped", tempDirectory );
+        this.file.deleteOnExit();
+        this.raf = new RandomAccessFile( file, "rw" );
+        this.channel = raf.getChannel();
+        this.chunkBits = chunkBits;
+        this.chunkMask = ( 1L << chunkBits ) - 1;
+    }
+
+    long chunkSize()
+    {
+        return 1L << chunkBits;
+    }
+
+    long getLong( long offset )
+    {
+        return chunk( offset ).getLong( (int) ( offset & chunkMask ) );
+    }
+
+    void putLong( long offset, long value )
+    {
+        chunk( offset ).putLong( (int) ( offset & chunkMask ), value );
+    }
+
+    int getInt( long offset )
+    {
+        return chunk( offset ).getInt( (int) ( offset & chunkMask ) );
+    }
+
+    void putInt( long offset, int value )
+    {
+        chunk( offset ).putInt( (int) ( offset & chunkMask ), value );
+    }
+
+    byte getByte( long offset )
+    {
+        return chunk( offset ).get( (int) ( offset & chunkMask ) );
+    }
+
+    void putByte( long offset, byte value )
+    {
+        chunk( offset ).put( (int) ( offset & chunkMask ), value );
+    }
+
+    private MappedByteBuffer chunk( long offset )
+    {
+        int index = (int) ( offset >>> chunkBits );
+        if ( index >= chunks.length )
+        {
+            chunks = Arrays.copyOf( chunks, Math.max( index + 1, chunks.length * 2 ) );
+        }
+        MappedByteBuffer chunk = chunks[index];
+        if ( chunk == null )
+        {
+            try
+            {
+                chunk = channel.map( FileChannel.MapMode.READ_WRITE, (long) index << chunkBits, 1L << chunkBits );
+            }
+            catch ( IOException e )
+            {
+                throw new DataImportException( e );
+            }
+            chunks[index] = chunk;
+        }
+        return chunk;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        chunks = new MappedByteBuffer[0];
+        raf.close();
+        file.delete();
+    }
+}
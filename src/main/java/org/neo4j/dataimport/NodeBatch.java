@@ -0,0 +1,69 @@
+package org.neo4j.dataimport;
+
+import java.util.Map;
+
+final class NodeBatch implements ImportPipeline.Batch
+{
+    private final long[] ids;
+    private final Map<String, Object>[] properties;
+    private final PropertyRows rows;
+    private final PropertyRow view;
+    private int size;
+
+    NodeBatch( int capacity )
+    {
+        this( capacity, null );
+    }
+
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    NodeBatch( int capacity, String[] propertyKeys )
+    {
+        this.ids = new long[capacity];
+        if ( propertyKeys == null )
+        {
+            this.properties = new Map[capacity];
+            this.rows = null;
+            this.view = null;
+        }
+        else
+        {
+            this.properties = null;
+            this.rows = new PropertyRows( propertyKeys, capacity );
+            this.view = new PropertyRow( rows );
+        }
+    }
+
+    void add( long id, Map<String, Object> properties )
+    {
+        ids[size] = id;
+        this.properties[size] = properties;
+        size++;
+    }
+
+    int add( long id )
+    {
+        ids[size] = id;
+        return size++;
+    }
+
+    PropertyRows rows()
+    {
+        return rows;
+    }
+
+    long getId( int index )
+    {
+        return ids[index];
+    }
+
+    Map<String, Object> getProperties( int index )
+    {
+        return rows != null ? view.at( index ) : properties[index];
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,53 @@
+package org.neo4j.dataimport;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+// one bit per node id in direct buffers, pages are only allocated for id ranges that hold nodes so sparse ids stay small
+final class NodeBitmap
+{
+    private static final int PAGE_BITS = 23;
+    private static final long PAGE_MASK = ( 1L << PAGE_BITS ) - 1;
+
+    private LongBuffer[] pages = new LongBuffer[0];
+
+    void set( long id )
+    {
+        if ( id < 0 )
+        {
+            return;
+        }
+        long bit = id & PAGE_MASK;
+        LongBuffer page = page( id >>> PAGE_BITS );
+        int word = (int) ( bit >>> 6 );
+        page.put( word, page.get( word ) | ( 1L << bit ) );
+    }
+
+    boolean contains( long id )
+    {
+        long page = id >>> PAGE_BITS;
+        if ( id < 0 || page >= pages.length || pages[(int) page] == null )
+        {
+            return false;
+        }
+        long bit = id & PAGE_MASK;
+        return ( pages[(int) page].get( (int) ( bit >>> 6 ) ) & ( 1L << bit ) ) != 0;
+    }
+
+    private LongBuffer page( long number )
+    {
+        if ( number >= pages.length )
+        {
+            pages = Arrays.copyOf( pages, (int) Math.max( number + 1, pages.length * 2L ) );
+        }
+        LongBuffer page = pages[(int) number];
+        if ( page == null )
+        {
+            page = ByteBuffer.allocateDirect( 1 << ( PAGE_BITS - 3 ) ).order( ByteOrder.nativeOrder() ).asLongBuffer();
+            pages[(int) number] = page;
+        }
+        return page;
+    }
+}
@@ -0,0 +1,71 @@
+package org.neo4j.dataimport;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+// relationship counts per node id, kept in direct buffers so hundreds of millions of nodes stay off the Java heap
+final class NodeDegrees
+{
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private IntBuffer[] pages = new IntBuffer[0];
+    private long relationships;
+
+    void add( long from, long to )
+    {
+        increment( from );
+        increment( to );
+        relationships++;
+    }
+
+    private void increment( long node )
+    {
+        if ( node < 0 )
+        {
+            // an endpoint that was not found, the row is rejected when it is written
+            return;
+        }
+        int index = (int) ( node & ( PAGE_SIZE - 1 ) );
+        IntBuffer page = page( node >>> PAGE_BITS );
+        page.put( index, page.get( index ) + 1 );
+    }
+
+    int get( long node )
+    {
+        long page = node >>> PAGE_BITS;
+        if ( node < 0 || page >= pages.length || pages[(int) page] == null )
+        {
+            return 0;
+        }
+        return pages[(int) page].get( (int) ( node & ( PAGE_SIZE - 1 ) ) );
+    }
+
+    // the endpoint whose chain the relationship is written with, the denser one so hub chains are written in one go
+    long anchor( long from, long to )
+    {
+        return get( to ) > get( from ) ? to : from;
+    }
+
+    long getRelationships()
+    {
+        return relationships;
+    }
+
+    private IntBuffer page( long number )
+    {
+        if ( number >= pages.length )
+        {
+            pages = Arrays.copyOf( pages, (int) Math.max( number + 1, pages.length * 2L ) );
+        }
+        IntBuffer page = pages[(int) number];
+        if ( page == null )
+        {
+            page = ByteBuffer.allocateDirect( PAGE_SIZE * 4 ).order( ByteOrder.nativeOrder() ).asIntBuffer();
+            pages[(int) number] = page;
+        }
+        return page;
+    }
+}
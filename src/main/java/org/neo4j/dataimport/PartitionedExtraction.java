@@ -0,0 +1,157 @@
+package org.neo4j.dataimport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+class PartitionedExtraction<O extends ImportPipeline.Batch>
+{
+    private static final long POLL_MILLIS = 100;
+
+    interface Partition<O>
+    {
+        void extract( Output<O> output ) throws Exception;
+    }
+
+    interface Output<O>
+    {
+        void emit( O batch ) throws InterruptedException;
+    }
+
+    private final String name;
+    private final int threads;
+    private final BlockingQueue<O> queue;
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private final AtomicInteger runningThreads = new AtomicInteger();
+    private final StageStatistics readStatistics;
+    private final StageStatistics writeStatistics;
+
+    PartitionedExtraction( String name, int threads, int queueCapacity )
+    {
+        if ( threads < 1 )
+        {
+            throw new IllegalArgumentException( "Extraction needs at least one thread, got " + threads );
+        }
+        this.name = name;
+        this.threads = threads;
+        this.queue = new ArrayBlockingQueue<O>( queueCapacity );
+        this.readStatistics = new StageStatistics( name + " read", threads );
+        this.writeStatistics = new StageStatistics( name + " write", 1 );
+    }
+
+    public void run( List<? extends Partition<O>> partitions, ImportPipeline.Sink<O> sink ) throws Exception
+    {
+        final Queue<Partition<O>> remaining = new ConcurrentLinkedQueue<Partition<O>>( partitions );
+        List<Thread> readers = new ArrayList<Thread>();
+        runningThreads.set( threads );
+        for ( int i = 0; i < threads; i++ )
+        {
+            Thread reader = new Thread( name + "-reader-" + i )
+            {
+                @Override
+                public void run()
+                {
+                    extract( remaining );
+                }
+            };
+            reader.setDaemon( true );
+            readers.add( reader );
+            reader.start();
+        }
+        try
+        {
+            write( sink );
+        }
+        catch ( Throwable e )
+        {
+            failure.compareAndSet( null, e );
+        }
+        for ( Thread reader : readers )
+        {
+            reader.join();
+        }
+        Throwable cause = failure.get();
+        if ( cause instanceof Exception )
+        {
+            throw (Exception) cause;
+        }
+        else if ( cause != null )
+        {
+            throw (Error) cause;
+        }
+    }
+
+    public List<StageStatistics> getStatistics()
+    {
+        return Arrays.asList( readStatistics, writeStatistics );
+    }
+
+    private void extract( Queue<Partition<O>> partitions )
+    {
+        Output<O> output = new Output<O>()
+        {
+            private long lastEmit = System.nanoTime();
+
+            @Override
+            public void emit( O batch ) throws InterruptedException
+            {
+                long start = System.nanoTime();
+                readStatistics.processed( batch.size(), start - lastEmit );
+                while ( !queue.offer( batch, POLL_MILLIS, TimeUnit.MILLISECONDS ) )
+                {
+                    if ( failure.get() != null )
+                    {
+                        throw new InterruptedException( "Aborting " + name + " extraction" );
+                    }
+                }
+                lastEmit = System.nanoTime();
+                readStatistics.waited( lastEmit - start );
+            }
+        };
+        try
+        {
+            Partition<O> partition;
+            while ( failure.get() == null && ( partition = partitions.poll() ) != null )
+            {
+                partition.extract( output );
+            }
+        }
+        catch ( Throwable e )
+        {
+            failure.compareAndSet( null, e );
+        }
+        finally
+        {
+            runningThreads.decrementAndGet();
+        }
+    }
+
+    private void write( ImportPipeline.Sink<O> sink ) throws Exception
+    {
+        while ( failure.get() == null )
+        {
+            long start = System.nanoTime();
+            boolean finished = runningThreads.get() == 0;
+            O batch = queue.poll( POLL_MILLIS, TimeUnit.MILLISECONDS );
+            long taken = System.nanoTime();
+            writeStatistics.waited( taken - start );
+            if ( batch == null )
+            {
+                if ( finished )
+                {
+                    return;
+                }
+                continue;
+            }
+            sink.accept( batch );
+            writeStatistics.processed( batch.size(), System.nanoTime() - taken );
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.neo4j.dataimport;
+
+import org.neo4j.kernel.impl.batchinsert.BatchInserter;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+public class ProgressReporter implements ImportListener
+{
+    static final long DEFAULT_INTERVAL_MILLIS = 10000;
+
+    private final PrintStream out;
+    private final long intervalMillis;
+    private Timer timer;
+
+    public ProgressReporter( PrintStream out, long intervalMillis )
+    {
+        this.out = out;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public static void importWithProgress( BatchInserterImporter importer, BatchInserter target, String name )
+    {
+        ImportMetrics metrics = importer.getMetrics();
+        ProgressReporter reporter = new ProgressReporter( System.out, DEFAULT_INTERVAL_MILLIS );
+        metrics.addListener( reporter );
+        metrics.registerMBean( name );
+        reporter.start( metrics );
+        try
+        {
+            importer.importTo( target );
+        }
+        finally
+        {
+            reporter.stop();
+            metrics.unregisterMBean();
+            metrics.removeListener( reporter );
+        }
+        reporter.report( "done", metrics );
+        for ( Map.Entry<String, Long> type : metrics.getRelationshipTypeCounts().entrySet() )
+        {
+            reporter.out.println( "  " + type.getKey() + ": " + type.getValue() + " relationships" );
+        }
+        if ( metrics.getRejectedRelationships() > 0 )
+        {
+            reporter.out.println( "  rejected: " + metrics.getRejectedRelationships() + " relationships" );
+        }
+    }
+
+    public synchronized void start( final ImportMetrics metrics )
+    {
+        if ( timer != null ) return;
+        timer = new Timer( "import-progress", true );
+        timer.scheduleAtFixedRate( new TimerTask()
+        {
+            @Override
+            public void run()
+            {
+                report( "progress", metrics );
+            }
+        }, intervalMillis, intervalMillis );
+    }
+
+    public synchronized void stop()
+    {
+        if ( timer == null ) return;
+        timer.cancel();
+        timer = null;
+    }
+
+    @Override
+    public void phaseStarted( ImportPhase phase, ImportMetrics metrics )
+    {
+        out.println( "Importing " + phase.name().toLowerCase() );
+    }
+
+    @Override
+    public void phaseCompleted( ImportPhase phase, ImportMetrics metrics )
+    {
+        out.println( "Imported " + phase.name().toLowerCase() + " in " + metrics.getPhaseMillis( phase ) + " ms" );
+    }
+
+    @Override
+    public void progress( ImportMetrics metrics )
+    {
+    }
+
+    private void report( String event, ImportMetrics metrics )
+    {
+        out.println( "[" + event + "] " + metrics );
+    }
+}
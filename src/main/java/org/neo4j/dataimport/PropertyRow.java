@@ -0,0 +1,185 @@
+package org.neo4j.dataimport;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+final class PropertyRow extends AbstractMap<String, Object>
+{
+    private final PropertyRows rows;
+    private final SlotEntry sharedEntry;
+    private int row;
+
+    PropertyRow( String[] keys )
+    {
+        this( new PropertyRows( keys, 1 ) );
+    }
+
+    PropertyRow( PropertyRows rows )
+    {
+        this( rows, false );
+    }
+
+    // with a shared entry every iteration step returns the same entry object, only for readers that do not keep entries
+    PropertyRow( PropertyRows rows, boolean shareEntry )
+    {
+        this.rows = rows;
+        this.sharedEntry = shareEntry ? new SlotEntry() : null;
+    }
+
+    PropertyRow at( int row )
+    {
+        this.row = row;
+        return this;
+    }
+
+    PropertyRows rows()
+    {
+        return rows;
+    }
+
+    int row()
+    {
+        return row;
+    }
+
+    boolean hasKeys( String[] keys )
+    {
+        return rows.keys() == keys;
+    }
+
+    void set( int slot, Object value )
+    {
+        rows.setObject( row, slot, value );
+    }
+
+    @Override
+    public void clear()
+    {
+        rows.clearRow( row );
+    }
+
+    @Override
+    public int size()
+    {
+        return rows.count( row );
+    }
+
+    @Override
+    public Object get( Object key )
+    {
+        int slot = slotOf( key );
+        return slot == -1 ? null : rows.get( row, slot );
+    }
+
+    @Override
+    public boolean containsKey( Object key )
+    {
+        int slot = slotOf( key );
+        return slot != -1 && rows.isPresent( row, slot );
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet()
+    {
+        return new AbstractSet<Entry<String, Object>>()
+        {
+            @Override
+            public Iterator<Entry<String, Object>> iterator()
+            {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size()
+            {
+                return rows.count( row );
+            }
+        };
+    }
+
+    private int slotOf( Object key )
+    {
+        String[] keys = rows.keys();
+        for ( int i = 0; i < keys.length; i++ )
+        {
+            if ( keys[i].equals( key ) )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, Object>>
+    {
+        private int next = advance( 0 );
+
+        private int advance( int from )
+        {
+            while ( from < rows.slots() && !rows.isPresent( row, from ) )
+            {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next < rows.slots();
+        }
+
+        @Override
+        public Entry<String, Object> next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            Entry<String, Object> entry;
+            if ( sharedEntry != null )
+            {
+                sharedEntry.slot = next;
+                entry = sharedEntry;
+            }
+            else
+            {
+                entry = new SimpleImmutableEntry<String, Object>( rows.keys()[next], rows.get( row, next ) );
+            }
+            next = advance( next + 1 );
+            return entry;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class SlotEntry implements Entry<String, Object>
+    {
+        private int slot;
+
+        @Override
+        public String getKey()
+        {
+            return rows.keys()[slot];
+        }
+
+        @Override
+        public Object getValue()
+        {
+            return rows.get( row, slot );
+        }
+
+        @Override
+        public Object setValue( Object value )
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.neo4j.dataimport;
+
+import java.util.Arrays;
+
+final class PropertyRows
+{
+    static final byte ABSENT = 0;
+    static final byte OBJECT = 1;
+    static final byte LONG = 2;
+    static final byte INT = 3;
+    static final byte SHORT = 4;
+    static final byte BYTE = 5;
+    static final byte CHAR = 6;
+    static final byte BOOLEAN = 7;
+    static final byte DOUBLE = 8;
+    static final byte FLOAT = 9;
+
+    private final String[] keys;
+    private final int slots;
+    private final byte[] kinds;
+    private final long[] primitives;
+    private final Object[] objects;
+
+    PropertyRows( String[] keys, int capacity )
+    {
+        this.keys = keys;
+        this.slots = keys.length;
+        this.kinds = new byte[capacity * slots];
+        this.primitives = new long[capacity * slots];
+        this.objects = new Object[capacity * slots];
+    }
+
+    String[] keys()
+    {
+        return keys;
+    }
+
+    int slots()
+    {
+        return slots;
+    }
+
+    void setObject( int row, int slot, Object value )
+    {
+        int cell = row * slots + slot;
+        kinds[cell] = value == null ? ABSENT : OBJECT;
+        objects[cell] = value;
+    }
+
+    void setLong( int row, int slot, long value )
+    {
+        setPrimitive( row * slots + slot, LONG, value );
+    }
+
+    void setInt( int row, int slot, int value )
+    {
+        setPrimitive( row * slots + slot, INT, value );
+    }
+
+    void setShort( int row, int slot, short value )
+    {
+        setPrimitive( row * slots + slot, SHORT, value );
+    }
+
+    void setByte( int row, int slot, byte value )
+    {
+        setPrimitive( row * slots + slot, BYTE, value );
+    }
+
+    void setChar( int row, int slot, char value )
+    {
+        setPrimitive( row * slots + slot, CHAR, value );
+    }
+
+    void setBoolean( int row, int slot, boolean value )
+    {
+        setPrimitive( row * slots + slot, BOOLEAN, value ? 1 : 0 );
+    }
+
+    void setDouble( int row, int slot, double value )
+    {
+        setPrimitive( row * slots + slot, DOUBLE, Double.doubleToRawLongBits( value ) );
+    }
+
+    void setFloat( int row, int slot, float value )
+    {
+        setPrimitive( row * slots + slot, FLOAT, Float.floatToRawIntBits( value ) );
+    }
+
+    void clear( int row, int slot )
+    {
+        int cell = row * slots + slot;
+        kinds[cell] = ABSENT;
+        objects[cell] = null;
+    }
+
+    void clearRow( int row )
+    {
+        int first = row * slots;
+        Arrays.fill( kinds, first, first + slots, ABSENT );
+        Arrays.fill( objects, first, first + slots, null );
+    }
+
+    boolean isPresent( int row, int slot )
+    {
+        return kinds[row * slots + slot] != ABSENT;
+    }
+
+    int count( int row )
+    {
+        int count = 0;
+        for ( int cell = row * slots, end = cell + slots; cell < end; cell++ )
+        {
+            if ( kinds[cell] != ABSENT )
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    Object get( int row, int slot )
+    {
+        int cell = row * slots + slot;
+        long bits = primitives[cell];
+        switch ( kinds[cell] )
+        {
+        case OBJECT:
+            return objects[cell];
+        case LONG:
+            return bits;
+        case INT:
+            return (int) bits;
+        case SHORT:
+            return (short) bits;
+        case BYTE:
+            return (byte) bits;
+        case CHAR:
+            return (char) bits;
+        case BOOLEAN:
+            return bits != 0;
+        case DOUBLE:
+            return Double.longBitsToDouble( bits );
+        case FLOAT:
+            return Float.intBitsToFloat( (int) bits );
+        default:
+            return null;
+        }
+    }
+
+    private void setPrimitive( int cell, byte kind, long bits )
+    {
+        kinds[cell] = kind;
+        primitives[cell] = bits;
+        objects[cell] = null;
+    }
+}
@@ -0,0 +1,301 @@
+package org.neo4j.dataimport;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+final class PropertyValueCodec
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INT = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte CHAR = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte FLOAT = 9;
+    private static final byte STRING_ARRAY = 10;
+    private static final byte LONG_ARRAY = 11;
+    private static final byte INT_ARRAY = 12;
+    private static final byte SHORT_ARRAY = 13;
+    private static final byte BYTE_ARRAY = 14;
+    private static final byte CHAR_ARRAY = 15;
+    private static final byte BOOLEAN_ARRAY = 16;
+    private static final byte DOUBLE_ARRAY = 17;
+    private static final byte FLOAT_ARRAY = 18;
+
+    private PropertyValueCodec()
+    {
+    }
+
+    static void write( DataOutput out, Object value ) throws IOException
+    {
+        if ( value == null )
+        {
+            out.writeByte( NULL );
+        }
+        else if ( value instanceof String )
+        {
+            out.writeByte( STRING );
+            writeString( out, (String) value );
+        }
+        else if ( value instanceof Long )
+        {
+            out.writeByte( LONG );
+            out.writeLong( (Long) value );
+        }
+        else if ( value instanceof Integer )
+        {
+            out.writeByte( INT );
+            out.writeInt( (Integer) value );
+        }
+        else if ( value instanceof Short )
+        {
+            out.writeByte( SHORT );
+            out.writeShort( (Short) value );
+        }
+        else if ( value instanceof Byte )
+        {
+            out.writeByte( BYTE );
+            out.writeByte( (Byte) value );
+        }
+        else if ( value instanceof Character )
+        {
+            out.writeByte( CHAR );
+            out.writeChar( (Character) value );
+        }
+        else if ( value instanceof Boolean )
+        {
+            out.writeByte( BOOLEAN );
+            out.writeBoolean( (Boolean) value );
+        }
+        else if ( value instanceof Double )
+        {
+            out.writeByte( DOUBLE );
+            out.writeDouble( (Double) value );
+        }
+        else if ( value instanceof Float )
+        {
+            out.writeByte( FLOAT );
+            out.writeFloat( (Float) value );
+        }
+        else
+        {
+            writeArray( out, value );
+        }
+    }
+
+    private static void writeArray( DataOutput out, Object value ) throws IOException
+    {
+        if ( value instanceof String[] )
+        {
+            String[] array = (String[]) value;
+            out.writeByte( STRING_ARRAY );
+            out.writeInt( array.length );
+            for ( String item : array )
+            {
+                writeString( out, item );
+            }
+        }
+        else if ( value instanceof long[] )
+        {
+            long[] array = (long[]) value;
+            out.writeByte( LONG_ARRAY );
+            out.writeInt( array.length );
+            for ( long item : array )
+            {
+                out.writeLong( item );
+            }
+        }
+        else if ( value instanceof int[] )
+        {
+            int[] array = (int[]) value;
+            out.writeByte( INT_ARRAY );
+            out.writeInt( array.length );
+            for ( int item : array )
+            {
+                out.writeInt( item );
+            }
+        }
+        else if ( value instanceof short[] )
+        {
+            short[] array = (short[]) value;
+            out.writeByte( SHORT_ARRAY );
+            out.writeInt( array.length );
+            for ( short item : array )
+            {
+                out.writeShort( item );
+            }
+        }
+        else if ( value instanceof byte[] )
+        {
+            byte[] array = (byte[]) value;
+            out.writeByte( BYTE_ARRAY );
+            out.writeInt( array.length );
+            out.write( array );
+        }
+        else if ( value instanceof char[] )
+        {
+            char[] array = (char[]) value;
+            out.writeByte( CHAR_ARRAY );
+            out.writeInt( array.length );
+            for ( char item : array )
+            {
+                out.writeChar( item );
+            }
+        }
+        else if ( value instanceof boolean[] )
+        {
+            boolean[] array = (boolean[]) value;
+            out.writeByte( BOOLEAN_ARRAY );
+            out.writeInt( array.length );
+            for ( boolean item : array )
+            {
+                out.writeBoolean( item );
+            }
+        }
+        else if ( value instanceof double[] )
+        {
+            double[] array = (double[]) value;
+            out.writeByte( DOUBLE_ARRAY );
+            out.writeInt( array.length );
+            for ( double item : array )
+            {
+                out.writeDouble( item );
+            }
+        }
+        else if ( value instanceof float[] )
+        {
+            float[] array = (float[]) value;
+            out.writeByte( FLOAT_ARRAY );
+            out.writeInt( array.length );
+            for ( float item : array )
+            {
+                out.writeFloat( item );
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException( "Unsupported property value: " + value.getClass().getName() );
+        }
+    }
+
+    static Object read( DataInput in ) throws IOException
+    {
+        byte type = in.readByte();
+        switch ( type )
+        {
+        case NULL:
+            return null;
+        case STRING:
+            return readString( in );
+        case LONG:
+            return in.readLong();
+        case INT:
+            return in.readInt();
+        case SHORT:
+            return in.readShort();
+        case BYTE:
+            return in.readByte();
+        case CHAR:
+            return in.readChar();
+        case BOOLEAN:
+            return in.readBoolean();
+        case DOUBLE:
+            return in.readDouble();
+        case FLOAT:
+            return in.readFloat();
+        default:
+            return readArray( type, in );
+        }
+    }
+
+    private static Object readArray( byte type, DataInput in ) throws IOException
+    {
+        int length = in.readInt();
+        switch ( type )
+        {
+        case STRING_ARRAY:
+            String[] strings = new String[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                strings[i] = readString( in );
+            }
+            return strings;
+        case LONG_ARRAY:
+            long[] longs = new long[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                longs[i] = in.readLong();
+            }
+            return longs;
+        case INT_ARRAY:
+            int[] ints = new int[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                ints[i] = in.readInt();
+            }
+            return ints;
+        case SHORT_ARRAY:
+            short[] shorts = new short[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                shorts[i] = in.readShort();
+            }
+            return shorts;
+        case BYTE_ARRAY:
+            byte[] bytes = new byte[length];
+            in.readFully( bytes );
+            return bytes;
+        case CHAR_ARRAY:
+            char[] chars = new char[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                chars[i] = in.readChar();
+            }
+            return chars;
+        case BOOLEAN_ARRAY:
+            boolean[] booleans = new boolean[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                booleans[i] = in.readBoolean();
+            }
+            return booleans;
+        case DOUBLE_ARRAY:
+            double[] doubles = new double[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                doubles[i] = in.readDouble();
+            }
+            return doubles;
+        case FLOAT_ARRAY:
+            float[] floats = new float[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                floats[i] = in.readFloat();
+            }
+            return floats;
+        default:
+            throw new IOException( "Unknown property value type " + type );
+        }
+    }
+
+    private static void writeString( DataOutput out, String value ) throws IOException
+    {
+        byte[] bytes = value.getBytes( UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    private static String readString( DataInput in ) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        return new String( bytes, UTF_8 );
+    }
+}
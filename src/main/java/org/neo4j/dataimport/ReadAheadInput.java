@@ -0,0 +1,236 @@
+package org.neo4j.dataimport;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+final class ReadAheadInput implements Closeable
+{
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    static final int DEFAULT_CHUNKS_AHEAD = 4;
+
+    private static final Chunk END = new Chunk( new byte[0], 0 );
+
+    private final List<File> files;
+    private final int threads;
+    private final int chunkSize;
+    private final int chunksAhead;
+    private final List<Part> started = new ArrayList<Part>();
+    private int opened;
+
+    ReadAheadInput( List<File> files, int threads )
+    {
+        this( files, threads, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNKS_AHEAD );
+    }
+
+    ReadAheadInput( List<File> files, int threads, int chunkSize, int chunksAhead )
+    {
+        if ( threads < 1 )
+        {
+            throw new IllegalArgumentException( "Read ahead needs at least one thread, got " + threads );
+        }
+        this.files = files;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.chunksAhead = chunksAhead;
+    }
+
+    // keeps up to threads files, including the returned one, decompressing at most chunksAhead chunks ahead
+    Part next()
+    {
+        if ( opened == files.size() )
+        {
+            return null;
+        }
+        while ( started.size() < files.size() && started.size() < opened + threads )
+        {
+            Part part = new Part( files.get( started.size() ) );
+            started.add( part );
+            part.start();
+        }
+        return started.get( opened++ );
+    }
+
+    @Override
+    public void close()
+    {
+        for ( Part part : started )
+        {
+            part.interrupt();
+        }
+    }
+
+    final class Part extends Thread
+    {
+        private final File file;
+        private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<Chunk>( chunksAhead );
+        private volatile long inputBytes;
+        private volatile Throwable failure;
+
+        Part( File file )
+        {
+            super( "read-ahead-" + file.getName() );
+            this.file = file;
+            setDaemon( true );
+        }
+
+        File getFile()
+        {
+            return file;
+        }
+
+        long getInputBytes()
+        {
+            return inputBytes;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                InputStream in = InputFiles.decompress( file, new BufferedInputStream( new FilterInputStream( new FileInputStream( file ) )
+                {
+                    @Override
+                    public int read( byte[] b, int off, int len ) throws IOException
+                    {
+                        int read = super.read( b, off, len );
+                        if ( read > 0 )
+                        {
+                            inputBytes += read;
+                        }
+                        return read;
+                    }
+                }, 1 << 16 ) );
+                try
+                {
+                    boolean eof = false;
+                    while ( !eof )
+                    {
+                        byte[] data = new byte[chunkSize];
+                        int length = 0;
+                        while ( length < data.length )
+                        {
+                            int read = in.read( data, length, data.length - length );
+                            if ( read == -1 )
+                            {
+                                eof = true;
+                                break;
+                            }
+                            length += read;
+                        }
+                        if ( length > 0 )
+                        {
+                            chunks.put( new Chunk( data, length ) );
+                        }
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                return;
+            }
+            catch ( Throwable e )
+            {
+                failure = e;
+            }
+            try
+            {
+                chunks.put( END );
+            }
+            catch ( InterruptedException e )
+            {
+                // closed while the consumer was away, nobody is waiting for the end marker
+            }
+        }
+
+        InputStream stream()
+        {
+            return new InputStream()
+            {
+                private Chunk chunk;
+                private int offset;
+
+                @Override
+                public int read() throws IOException
+                {
+                    byte[] single = new byte[1];
+                    return read( single, 0, 1 ) == -1 ? -1 : single[0] & 0xFF;
+                }
+
+                @Override
+                public int read( byte[] b, int off, int len ) throws IOException
+                {
+                    if ( chunk == END )
+                    {
+                        return -1;
+                    }
+                    if ( chunk == null || offset == chunk.length )
+                    {
+                        chunk = take();
+                        offset = 0;
+                        if ( chunk == END )
+                        {
+                            return -1;
+                        }
+                    }
+                    int count = Math.min( len, chunk.length - offset );
+                    System.arraycopy( chunk.data, offset, b, off, count );
+                    offset += count;
+                    return count;
+                }
+            };
+        }
+
+        private Chunk take() throws IOException
+        {
+            Chunk next;
+            try
+            {
+                next = chunks.take();
+            }
+            catch ( InterruptedException e )
+            {
+                throw new InterruptedIOException( "Interrupted while reading " + file );
+            }
+            if ( next == END && failure != null )
+            {
+                if ( failure instanceof IOException )
+                {
+                    throw new IOException( "Unable to read " + file + ": " + failure.getMessage(), failure );
+                }
+                if ( failure instanceof Error )
+                {
+                    throw (Error) failure;
+                }
+                throw new DataImportException( (Exception) failure );
+            }
+            return next;
+        }
+    }
+
+    private static final class Chunk
+    {
+        private final byte[] data;
+        private final int length;
+
+        Chunk( byte[] data, int length )
+        {
+            this.data = data;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.neo4j.dataimport;
+
+import java.nio.ByteBuffer;
+
+final class RecordBatch implements ImportPipeline.Batch
+{
+    private byte[] data;
+    private int dataLength;
+    private int[] fields;
+    private int fieldsLength;
+    private final int[] recordFields;
+    private int size;
+    private ByteBuffer view;
+
+    RecordBatch( int capacity )
+    {
+        this.data = new byte[capacity * 64];
+        this.fields = new int[capacity * 12];
+        this.recordFields = new int[capacity + 1];
+    }
+
+    boolean isFull()
+    {
+        return size == recordFields.length - 1;
+    }
+
+    void add( CsvRecord record )
+    {
+        int fieldCount = record.fieldCount();
+        int start = record.fieldStart( 0 );
+        int length = record.fieldEnd( fieldCount - 1 ) - start;
+        ensureCapacity( length, fieldCount * 3 );
+        ByteBuffer source = record.buffer().duplicate();
+        source.position( start );
+        source.get( data, dataLength, length );
+        int offset = dataLength - start;
+        for ( int i = 0; i < fieldCount; i++ )
+        {
+            fields[fieldsLength++] = record.fieldStart( i ) + offset;
+            fields[fieldsLength++] = record.fieldEnd( i ) + offset;
+            fields[fieldsLength++] = record.isEscaped( i ) ? 1 : 0;
+        }
+        dataLength += length;
+        recordFields[++size] = fieldsLength;
+    }
+
+    CsvRecord record( int index, CsvRecord into )
+    {
+        if ( view == null )
+        {
+            view = ByteBuffer.wrap( data, 0, dataLength );
+        }
+        into.reset( view );
+        for ( int i = recordFields[index]; i < recordFields[index + 1]; i += 3 )
+        {
+            into.addField( fields[i], fields[i + 1], fields[i + 2] != 0 );
+        }
+        return into;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    private void ensureCapacity( int bytes, int fieldInts )
+    {
+        if ( dataLength + bytes > data.length )
+        {
+            byte[] newData = new byte[Math.max( dataLength + bytes, data.length * 2 )];
+            System.arraycopy( data, 0, newData, 0, dataLength );
+            data = newData;
+        }
+        if ( fieldsLength + fieldInts > fields.length )
+        {
+            int[] newFields = new int[Math.max( fieldsLength + fieldInts, fields.length * 2 )];
+            System.arraycopy( fields, 0, newFields, 0, fieldsLength );
+            fields = newFields;
+        }
+    }
+}
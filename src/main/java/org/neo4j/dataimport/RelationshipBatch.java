@@ -0,0 +1,85 @@
+package org.neo4j.dataimport;
+
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.Map;
+
+final class RelationshipBatch implements ImportPipeline.Batch
+{
+    private final long[] from;
+    private final long[] to;
+    private final RelationshipType[] types;
+    private final Map<String, Object>[] properties;
+    private final PropertyRows rows;
+    private final PropertyRow view;
+    private int size;
+
+    RelationshipBatch( int capacity )
+    {
+        this( capacity, null );
+    }
+
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    RelationshipBatch( int capacity, String[] propertyKeys )
+    {
+        this.from = new long[capacity];
+        this.to = new long[capacity];
+        this.types = new RelationshipType[capacity];
+        if ( propertyKeys == null )
+        {
+            this.properties = new Map[capacity];
+            this.rows = null;
+            this.view = null;
+        }
+        else
+        {
+            this.properties = null;
+            this.rows = new PropertyRows( propertyKeys, capacity );
+            this.view = new PropertyRow( rows );
+        }
+    }
+
+    void add( long from, long to, RelationshipType type, Map<String, Object> properties )
+    {
+        this.properties[add( from, to, type )] = properties;
+    }
+
+    int add( long from, long to, RelationshipType type )
+    {
+        this.from[size] = from;
+        this.to[size] = to;
+        types[size] = type;
+        return size++;
+    }
+
+    PropertyRows rows()
+    {
+        return rows;
+    }
+
+    long getFrom( int index )
+    {
+        return from[index];
+    }
+
+    long getTo( int index )
+    {
+        return to[index];
+    }
+
+    RelationshipType getType( int index )
+    {
+        return types[index];
+    }
+
+    Map<String, Object> getProperties( int index )
+    {
+        return rows != null ? view.at( index ) : properties[index];
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+}
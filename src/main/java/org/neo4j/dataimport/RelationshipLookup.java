@@ -0,0 +1,92 @@
+package org.neo4j.dataimport;
+
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.kernel.impl.batchinsert.BatchInserter;
+import org.neo4j.kernel.impl.batchinsert.SimpleRelationship;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// relationships by start node, end node and type, each start node's chain is walked once instead of once per row
+final class RelationshipLookup
+{
+    static final int DEFAULT_CAPACITY = 1000000;
+
+    private final BatchInserter target;
+    private final int capacity;
+    private final LinkedHashMap<Long, Map<String, Long>> outgoing = new LinkedHashMap<Long, Map<String, Long>>( 16, 0.75f, true );
+    private int size;
+
+    RelationshipLookup( BatchInserter target )
+    {
+        this( target, DEFAULT_CAPACITY );
+    }
+
+    RelationshipLookup( BatchInserter target, int capacity )
+    {
+        if ( capacity < 1 )
+        {
+            throw new IllegalArgumentException( "Lookup capacity has to be at least one relationship, got " + capacity );
+        }
+        this.target = target;
+        this.capacity = capacity;
+    }
+
+    // relationships are identified by start node, end node and type
+    void upsert( long from, long to, RelationshipType type, Map<String, Object> properties )
+    {
+        Map<String, Long> relationships = outgoing( from );
+        String key = key( to, type.name() );
+        Long id = relationships.get( key );
+        if ( id != null )
+        {
+            target.setRelationshipProperties( id, properties );
+            return;
+        }
+        relationships.put( key, target.createRelationship( from, to, type, properties ) );
+        size++;
+        evict();
+    }
+
+    private Map<String, Long> outgoing( long node )
+    {
+        Map<String, Long> relationships = outgoing.get( node );
+        if ( relationships == null )
+        {
+            relationships = new HashMap<String, Long>();
+            for ( SimpleRelationship relationship : target.getRelationships( node ) )
+            {
+                if ( relationship.getStartNode() == node )
+                {
+                    relationships.put( key( relationship.getEndNode(), relationship.getType().name() ), relationship.getId() );
+                }
+            }
+            outgoing.put( node, relationships );
+            size += relationships.size();
+        }
+        return relationships;
+    }
+
+    // least recently used start nodes go first, the node being written is the most recent one and stays
+    private void evict()
+    {
+        Iterator<Map<String, Long>> eldest = outgoing.values().iterator();
+        while ( size > capacity && outgoing.size() > 1 )
+        {
+            size -= eldest.next().size();
+            eldest.remove();
+        }
+    }
+
+    private static String key( long to, String type )
+    {
+        return to + ":" + type;
+    }
+
+    int size()
+    {
+        return size;
+    }
+}
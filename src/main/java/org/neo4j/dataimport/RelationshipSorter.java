@@ -0,0 +1,444 @@
+package org.neo4j.dataimport;
+
+import org.neo4j.graphdb.RelationshipType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+final class RelationshipSorter implements Closeable
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+    static final int DEFAULT_RUN_SIZE = 1 << 20;
+    // runs merged at once, each one holds an open file and a read buffer
+    static final int DEFAULT_MERGE_FAN_IN = 64;
+
+    private final File tempDirectory;
+    private final long[] anchors;
+    private final long[] from;
+    private final long[] to;
+    private final RelationshipType[] types;
+    private final Map<String, Object>[] properties;
+    private final List<File> runs = new ArrayList<File>();
+    private final RelationshipTypes typeCache;
+    private final NodeDegrees degrees;
+    private int mergeFanIn = DEFAULT_MERGE_FAN_IN;
+    private int spilledRuns;
+    private int size;
+
+    RelationshipSorter( File tempDirectory, int runSize )
+    {
+        this( tempDirectory, runSize, new RelationshipTypes() );
+    }
+
+    RelationshipSorter( File tempDirectory, int runSize, RelationshipTypes typeCache )
+    {
+        this( tempDirectory, runSize, typeCache, null );
+    }
+
+    // with node degrees the relationships are grouped by their denser endpoint instead of their start node
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    RelationshipSorter( File tempDirectory, int runSize, RelationshipTypes typeCache, NodeDegrees degrees )
+    {
+        if ( runSize < 1 )
+        {
+            throw new IllegalArgumentException( "Sort runs need room for at least one relationship, got " + runSize );
+        }
+        this.tempDirectory = tempDirectory;
+        this.anchors = new long[runSize];
+        this.from = new long[runSize];
+        this.to = new long[runSize];
+        this.types = new RelationshipType[runSize];
+        this.properties = new Map[runSize];
+        this.typeCache = typeCache;
+        this.degrees = degrees;
+    }
+
+    void add( long from, long to, RelationshipType type, Map<String, Object> properties ) throws IOException
+    {
+        anchors[size] = degrees == null ? from : degrees.anchor( from, to );
+        this.from[size] = from;
+        this.to[size] = to;
+        types[size] = type;
+        this.properties[size] = properties == null || properties.isEmpty()
+            ? Collections.<String, Object>emptyMap() : new HashMap<String, Object>( properties );
+        size++;
+        if ( size == this.from.length )
+        {
+            spill();
+        }
+    }
+
+    void setMergeFanIn( int mergeFanIn )
+    {
+        if ( mergeFanIn < 2 )
+        {
+            throw new IllegalArgumentException( "Merging needs at least two runs at a time, got " + mergeFanIn );
+        }
+        this.mergeFanIn = mergeFanIn;
+    }
+
+    int getRunCount()
+    {
+        return spilledRuns;
+    }
+
+    void writeSorted( int batchSize, ImportPipeline.Sink<RelationshipBatch> sink ) throws Exception
+    {
+        if ( runs.isEmpty() )
+        {
+            sort( 0, size - 1 );
+            RelationshipBatch batch = new RelationshipBatch( batchSize );
+            for ( int i = 0; i < size; i++ )
+            {
+                batch = emit( batch, batchSize, sink, from[i], to[i], types[i], properties[i] );
+            }
+            clear();
+            flush( batch, sink );
+            return;
+        }
+        spill();
+        // earlier passes merge groups of runs into longer runs, so the last pass opens at most mergeFanIn files
+        while ( runs.size() > mergeFanIn )
+        {
+            List<File> merged = new ArrayList<File>();
+            for ( int start = 0; start < runs.size(); start += mergeFanIn )
+            {
+                List<File> group = runs.subList( start, Math.min( start + mergeFanIn, runs.size() ) );
+                merged.add( group.size() == 1 ? group.get( 0 ) : mergeToRun( group ) );
+            }
+            runs.clear();
+            runs.addAll( merged );
+        }
+        BatchMerge batches = new BatchMerge( batchSize, sink );
+        merge( runs, batches );
+        flush( batches.batch, sink );
+    }
+
+    private File mergeToRun( List<File> group ) throws Exception
+    {
+        File file = createRunFile();
+        final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ), BUFFER_SIZE ) );
+        try
+        {
+            merge( group, new Merged()
+            {
+                @Override
+                public void start( long count ) throws IOException
+                {
+                    out.writeLong( count );
+                }
+
+                @Override
+                public void accept( Run run ) throws IOException
+                {
+                    write( out, run.anchor, run.from, run.to, run.type, run.properties );
+                }
+            } );
+        }
+        finally
+        {
+            out.close();
+        }
+        for ( File input : group )
+        {
+            input.delete();
+        }
+        return file;
+    }
+
+    private void merge( List<File> files, Merged merged ) throws Exception
+    {
+        PriorityQueue<Run> queue = new PriorityQueue<Run>( files.size(), new Comparator<Run>()
+        {
+            @Override
+            public int compare( Run a, Run b )
+            {
+                return compareEndpoints( a.anchor, a.from, a.to, b.anchor, b.from, b.to );
+            }
+        } );
+        List<Run> open = new ArrayList<Run>();
+        try
+        {
+            long count = 0;
+            for ( File file : files )
+            {
+                Run run = new Run( file );
+                open.add( run );
+                count += run.remaining;
+            }
+            merged.start( count );
+            for ( Run run : open )
+            {
+                if ( run.advance() )
+                {
+                    queue.add( run );
+                }
+            }
+            Run run;
+            while ( ( run = queue.poll() ) != null )
+            {
+                merged.accept( run );
+                if ( run.advance() )
+                {
+                    queue.add( run );
+                }
+            }
+        }
+        finally
+        {
+            for ( Run each : open )
+            {
+                each.close();
+            }
+        }
+    }
+
+    private RelationshipBatch emit( RelationshipBatch batch, int batchSize, ImportPipeline.Sink<RelationshipBatch> sink,
+                                    long from, long to, RelationshipType type, Map<String, Object> properties ) throws Exception
+    {
+        batch.add( from, to, type, properties );
+        if ( batch.size() == batchSize )
+        {
+            sink.accept( batch );
+            return new RelationshipBatch( batchSize );
+        }
+        return batch;
+    }
+
+    private void flush( RelationshipBatch batch, ImportPipeline.Sink<RelationshipBatch> sink ) throws Exception
+    {
+        if ( batch.size() > 0 )
+        {
+            sink.accept( batch );
+        }
+    }
+
+    private void spill() throws IOException
+    {
+        if ( size == 0 ) return;
+        sort( 0, size - 1 );
+        File file = createRunFile();
+        runs.add( file );
+        spilledRuns++;
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ), BUFFER_SIZE ) );
+        try
+        {
+            out.writeLong( size );
+            for ( int i = 0; i < size; i++ )
+            {
+                write( out, anchors[i], from[i], to[i], types[i], properties[i] );
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        clear();
+    }
+
+    private File createRunFile() throws IOException
+    {
+        File file = File.createTempFile( "relationships-", ".run", tempDirectory );
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static void write( DataOutputStream out, long anchor, long from, long to, RelationshipType type,
+                               Map<String, Object> properties ) throws IOException
+    {
+        out.writeLong( anchor );
+        out.writeLong( from );
+        out.writeLong( to );
+        out.writeUTF( type.name() );
+        out.writeInt( properties == null ? 0 : properties.size() );
+        if ( properties != null )
+        {
+            for ( Map.Entry<String, Object> property : properties.entrySet() )
+            {
+                out.writeUTF( property.getKey() );
+                PropertyValueCodec.write( out, property.getValue() );
+            }
+        }
+    }
+
+    private void clear()
+    {
+        for ( int i = 0; i < size; i++ )
+        {
+            types[i] = null;
+            properties[i] = null;
+        }
+        size = 0;
+    }
+
+    private void sort( int low, int high )
+    {
+        while ( low < high )
+        {
+            int middle = ( low + high ) >>> 1;
+            long pivotAnchor = anchors[middle];
+            long pivotFrom = from[middle];
+            long pivotTo = to[middle];
+            int i = low;
+            int j = high;
+            while ( i <= j )
+            {
+                while ( compareEndpoints( anchors[i], from[i], to[i], pivotAnchor, pivotFrom, pivotTo ) < 0 ) i++;
+                while ( compareEndpoints( anchors[j], from[j], to[j], pivotAnchor, pivotFrom, pivotTo ) > 0 ) j--;
+                if ( i <= j )
+                {
+                    swap( i++, j-- );
+                }
+            }
+            // recurse into the smaller half to bound the stack depth
+            if ( j - low < high - i )
+            {
+                sort( low, j );
+                low = i;
+            }
+            else
+            {
+                sort( i, high );
+                high = j;
+            }
+        }
+    }
+
+    private void swap( int a, int b )
+    {
+        long anchorA = anchors[a];
+        anchors[a] = anchors[b];
+        anchors[b] = anchorA;
+        long fromA = from[a];
+        from[a] = from[b];
+        from[b] = fromA;
+        long toA = to[a];
+        to[a] = to[b];
+        to[b] = toA;
+        RelationshipType typeA = types[a];
+        types[a] = types[b];
+        types[b] = typeA;
+        Map<String, Object> propertiesA = properties[a];
+        properties[a] = properties[b];
+        properties[b] = propertiesA;
+    }
+
+    private static int compareEndpoints( long anchorA, long fromA, long toA, long anchorB, long fromB, long toB )
+    {
+        if ( anchorA != anchorB )
+        {
+            return anchorA < anchorB ? -1 : 1;
+        }
+        if ( fromA != fromB )
+        {
+            return fromA < fromB ? -1 : 1;
+        }
+        return toA < toB ? -1 : ( toA == toB ? 0 : 1 );
+    }
+
+    @Override
+    public void close()
+    {
+        clear();
+        for ( File file : runs )
+        {
+            file.delete();
+        }
+        runs.clear();
+    }
+
+    private interface Merged
+    {
+        void start( long count ) throws Exception;
+
+        void accept( Run run ) throws Exception;
+    }
+
+    private final class BatchMerge implements Merged
+    {
+        private final int batchSize;
+        private final ImportPipeline.Sink<RelationshipBatch> sink;
+        private RelationshipBatch batch;
+
+        BatchMerge( int batchSize, ImportPipeline.Sink<RelationshipBatch> sink )
+        {
+            this.batchSize = batchSize;
+            this.sink = sink;
+            this.batch = new RelationshipBatch( batchSize );
+        }
+
+        @Override
+        public void start( long count )
+        {
+        }
+
+        @Override
+        public void accept( Run run ) throws Exception
+        {
+            batch = emit( batch, batchSize, sink, run.from, run.to, run.type, run.properties );
+        }
+    }
+
+    private class Run
+    {
+        private final DataInputStream in;
+        private long remaining;
+        private long anchor;
+        private long from;
+        private long to;
+        private RelationshipType type;
+        private Map<String, Object> properties;
+
+        Run( File file ) throws IOException
+        {
+            in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), BUFFER_SIZE ) );
+            remaining = in.readLong();
+        }
+
+        boolean advance() throws IOException
+        {
+            if ( remaining == 0 )
+            {
+                return false;
+            }
+            remaining--;
+            anchor = in.readLong();
+            from = in.readLong();
+            to = in.readLong();
+            type = typeCache.get( in.readUTF() );
+            int count = in.readInt();
+            if ( count == 0 )
+            {
+                properties = Collections.emptyMap();
+            }
+            else
+            {
+                properties = new HashMap<String, Object>();
+                for ( int i = 0; i < count; i++ )
+                {
+                    properties.put( in.readUTF(), PropertyValueCodec.read( in ) );
+                }
+            }
+            return true;
+        }
+
+        void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.neo4j.dataimport;
+
+import org.neo4j.graphdb.RelationshipType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+final class RelationshipTypes
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    // read without locking, a new type copies the table and publishes it, there are only a handful of types
+    private volatile Type[] table = new Type[16];
+    private volatile Type[] types = new Type[0];
+
+    RelationshipType get( CsvRecord record, int field )
+    {
+        if ( record.isEscaped( field ) )
+        {
+            return get( record.getString( field ) );
+        }
+        ByteBuffer buffer = record.buffer();
+        int start = record.fieldStart( field );
+        int end = record.fieldEnd( field );
+        int hash = 1;
+        for ( int i = start; i < end; i++ )
+        {
+            hash = 31 * hash + buffer.get( i );
+        }
+        Type[] table = this.table;
+        for ( int slot = hash & ( table.length - 1 ); table[slot] != null; slot = ( slot + 1 ) & ( table.length - 1 ) )
+        {
+            if ( table[slot].hash == hash && table[slot].matches( buffer, start, end ) )
+            {
+                return table[slot];
+            }
+        }
+        return get( record.getString( field ) );
+    }
+
+    RelationshipType get( String name )
+    {
+        Type[] types = this.types;
+        for ( Type type : types )
+        {
+            if ( type.name.equals( name ) )
+            {
+                return type;
+            }
+        }
+        return add( name );
+    }
+
+    // called by the single thread writing relationships
+    void created( RelationshipType type )
+    {
+        Type known = type instanceof Type ? (Type) type : (Type) get( type.name() );
+        known.created++;
+    }
+
+    Map<String, Long> getCreated()
+    {
+        Map<String, Long> created = new LinkedHashMap<String, Long>();
+        for ( Type type : types )
+        {
+            if ( type.created > 0 )
+            {
+                created.put( type.name, type.created );
+            }
+        }
+        return created;
+    }
+
+    private synchronized Type add( String name )
+    {
+        for ( Type type : types )
+        {
+            if ( type.name.equals( name ) )
+            {
+                return type;
+            }
+        }
+        Type added = new Type( name );
+        Type[] grown = new Type[types.length + 1];
+        System.arraycopy( types, 0, grown, 0, types.length );
+        grown[types.length] = added;
+        Type[] rehashed = new Type[Math.max( table.length, Integer.highestOneBit( grown.length * 4 - 1 ) << 1 )];
+        for ( Type type : grown )
+        {
+            int slot = type.hash & ( rehashed.length - 1 );
+            while ( rehashed[slot] != null )
+            {
+                slot = ( slot + 1 ) & ( rehashed.length - 1 );
+            }
+            rehashed[slot] = type;
+        }
+        table = rehashed;
+        types = grown;
+        return added;
+    }
+
+    private static final class Type implements RelationshipType
+    {
+        private final String name;
+        private final byte[] bytes;
+        private final int hash;
+        private long created;
+
+        Type( String name )
+        {
+            this.name = name;
+            this.bytes = name.getBytes( UTF_8 );
+            int hash = 1;
+            for ( byte b : bytes )
+            {
+                hash = 31 * hash + b;
+            }
+            this.hash = hash;
+        }
+
+        boolean matches( ByteBuffer buffer, int start, int end )
+        {
+            if ( end - start != bytes.length )
+            {
+                return false;
+            }
+            for ( int i = 0; i < bytes.length; i++ )
+            {
+                if ( buffer.get( start + i ) != bytes[i] )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String name()
+        {
+            return name;
+        }
+
+        @Override
+        public boolean equals( Object other )
+        {
+            return other instanceof RelationshipType && name.equals( ( (RelationshipType) other ).name() );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+}
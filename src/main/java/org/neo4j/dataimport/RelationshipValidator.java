@@ -0,0 +1,156 @@
+package org.neo4j.dataimport;
+
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.kernel.IdType;
+import org.neo4j.kernel.impl.batchinsert.BatchInserter;
+import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
+import org.neo4j.kernel.impl.batchinsert.SimpleRelationship;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+// checks relationships against the nodes written by this import before they reach the store
+final class RelationshipValidator implements Closeable
+{
+    private final BatchInserter target;
+    private final NodeBitmap nodes = new NodeBitmap();
+    private final DuplicateFilter duplicates;
+    private final Writer rejects;
+    // ids below these were in the store before this import
+    private final long storedNodes;
+    private final long storedRelationships;
+    // accepted relationships that are not in the store yet, a batch is validated before it is written
+    private long[] pending = new long[0];
+    private RelationshipType[] pendingTypes = new RelationshipType[0];
+    private int pendingCount;
+
+    // only an existing store, resumed or updated, has nodes that are not written by this import
+    RelationshipValidator( BatchInserter target, File rejectFile, boolean append, boolean existingStore, long expectedRelationships ) throws IOException
+    {
+        this.target = target;
+        this.duplicates = expectedRelationships > 0 ? new DuplicateFilter( expectedRelationships ) : null;
+        this.rejects = rejectFile == null ? null
+            : new BufferedWriter( new OutputStreamWriter( new FileOutputStream( rejectFile, append ), "UTF-8" ) );
+        this.storedNodes = highId( target, IdType.NODE, existingStore );
+        this.storedRelationships = highId( target, IdType.RELATIONSHIP, existingStore );
+    }
+
+    private static long highId( BatchInserter target, IdType type, boolean existingStore )
+    {
+        if ( target instanceof BatchInserterImpl )
+        {
+            return ( (BatchInserterImpl) target ).getIdGeneratorFactory().get( type ).getHighId();
+        }
+        return existingStore ? Long.MAX_VALUE : 0;
+    }
+
+    void nodeCreated( long id )
+    {
+        nodes.set( id );
+    }
+
+    // false for rows that go to the reject file or are dropped as duplicates, without a reject file a missing node fails the import
+    boolean accept( long from, long to, RelationshipType type ) throws IOException
+    {
+        if ( !exists( from ) || !exists( to ) )
+        {
+            long missing = exists( from ) ? to : from;
+            String reason = missing < 0 ? "unknown node id" : "missing node " + missing;
+            if ( rejects == null )
+            {
+                throw new IllegalStateException( "Relationship " + from + "-[" + type.name() + "]->" + to + " refers to " + reason );
+            }
+            reject( from, to, type, reason );
+            return false;
+        }
+        if ( duplicates != null && duplicates.seen( from, to, type ) && isDuplicate( from, to, type ) )
+        {
+            if ( rejects != null )
+            {
+                reject( from, to, type, "duplicate" );
+            }
+            return false;
+        }
+        if ( duplicates != null )
+        {
+            addPending( from, to, type );
+        }
+        return true;
+    }
+
+    // the importer calls this once the accepted relationships are in the store
+    void written()
+    {
+        pendingCount = 0;
+    }
+
+    // the bloom filter has false positives, a hit is confirmed against this import's relationships
+    private boolean isDuplicate( long from, long to, RelationshipType type )
+    {
+        for ( int i = 0; i < pendingCount; i++ )
+        {
+            if ( pending[i * 2] == from && pending[i * 2 + 1] == to && pendingTypes[i].name().equals( type.name() ) )
+            {
+                return true;
+            }
+        }
+        for ( SimpleRelationship relationship : target.getRelationships( from ) )
+        {
+            if ( relationship.getId() >= storedRelationships && relationship.getStartNode() == from
+                && relationship.getEndNode() == to && relationship.getType().name().equals( type.name() ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addPending( long from, long to, RelationshipType type )
+    {
+        if ( pendingCount == pendingTypes.length )
+        {
+            int capacity = Math.max( 16, pendingCount * 2 );
+            pending = Arrays.copyOf( pending, capacity * 2 );
+            pendingTypes = Arrays.copyOf( pendingTypes, capacity );
+        }
+        pending[pendingCount * 2] = from;
+        pending[pendingCount * 2 + 1] = to;
+        pendingTypes[pendingCount] = type;
+        pendingCount++;
+    }
+
+    // nodes from an earlier import or from before a resumed checkpoint are only in the store, they are looked up once
+    private boolean exists( long id )
+    {
+        if ( nodes.contains( id ) )
+        {
+            return true;
+        }
+        if ( id < 0 || id >= storedNodes || !target.nodeExists( id ) )
+        {
+            return false;
+        }
+        nodes.set( id );
+        return true;
+    }
+
+    private void reject( long from, long to, RelationshipType type, String reason ) throws IOException
+    {
+        rejects.write( from + "," + to + "," + type.name() + "," + reason + "\n" );
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if ( rejects != null )
+        {
+            rejects.close();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.neo4j.dataimport;
+
+import org.neo4j.kernel.impl.batchinsert.BatchInserter;
+import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// writes the rows of a batch one by one, the batch inserter has no bulk API
+final class RowWriter
+{
+    private final BatchInserter target;
+    // BatchInserterImpl reads each entry once while it encodes the property chain, so one entry serves the whole batch
+    private final boolean sharedEntries;
+
+    RowWriter( BatchInserter target )
+    {
+        this.target = target;
+        this.sharedEntries = target instanceof BatchInserterImpl;
+    }
+
+    void createNodes( NodeBatch batch )
+    {
+        PropertyRow view = view( batch.rows() );
+        for ( int i = 0; i < batch.size(); i++ )
+        {
+            target.createNode( batch.getId( i ), view == null ? properties( batch.rows(), batch.getProperties( i ) ) : view.at( i ) );
+        }
+    }
+
+    void createRelationships( RelationshipBatch batch )
+    {
+        PropertyRow view = view( batch.rows() );
+        for ( int i = 0; i < batch.size(); i++ )
+        {
+            target.createRelationship( batch.getFrom( i ), batch.getTo( i ), batch.getType( i ),
+                    view == null ? properties( batch.rows(), batch.getProperties( i ) ) : view.at( i ) );
+        }
+    }
+
+    private PropertyRow view( PropertyRows rows )
+    {
+        return rows == null || !sharedEntries ? null : new PropertyRow( rows, true );
+    }
+
+    // columnar rows come through the batch's single reused view, other inserters may keep the map so they get a copy per row
+    private static Map<String, Object> properties( PropertyRows rows, Map<String, Object> properties )
+    {
+        return rows == null ? properties : new HashMap<String, Object>( properties );
+    }
+}
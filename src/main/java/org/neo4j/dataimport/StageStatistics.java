@@ -0,0 +1,68 @@
+package org.neo4j.dataimport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StageStatistics
+{
+    private final String name;
+    private final int threads;
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    StageStatistics( String name, int threads )
+    {
+        this.name = name;
+        this.threads = threads;
+    }
+
+    void processed( int rows, long nanos )
+    {
+        this.rows.addAndGet( rows );
+        busyNanos.addAndGet( nanos );
+    }
+
+    void waited( long nanos )
+    {
+        waitNanos.addAndGet( nanos );
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    public long getRows()
+    {
+        return rows.get();
+    }
+
+    public long getBusyMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( busyNanos.get() );
+    }
+
+    public long getWaitMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( waitNanos.get() );
+    }
+
+    public double getRowsPerSecond()
+    {
+        long busy = busyNanos.get();
+        return busy == 0 ? 0 : rows.get() * threads * (double) TimeUnit.SECONDS.toNanos( 1 ) / busy;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "%s: %d rows, %.0f rows/s, busy %d ms, waiting %d ms, %d thread(s)",
+                name, getRows(), getRowsPerSecond(), getBusyMillis(), getWaitMillis(), threads );
+    }
+}
@@ -0,0 +1,184 @@
+package org.neo4j.dataimport;
+
+import org.neo4j.kernel.Config;
+import org.neo4j.kernel.impl.nioneo.store.NodeStore;
+import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+public class StoreSizeEstimate
+{
+    static final int DEFAULT_SAMPLE_ROWS = 10000;
+
+    // strings up to this many bytes usually fit into the property record as short strings
+    static final int SHORT_STRING_BYTES = 8;
+    static final int PROPERTY_BLOCKS_PER_RECORD = 4;
+    static final int STRING_RECORD_SIZE = PropertyStore.DEFAULT_DATA_BLOCK_SIZE + 8;
+
+    // the rest is left to the operating system and the Lucene indexes
+    static final double MAPPED_SHARE = 0.75;
+
+    private long nodes;
+    private long relationships;
+    private long propertyRecords;
+    private long stringRecords;
+
+    void addNodes( long count, Sample sample )
+    {
+        nodes += count;
+        addProperties( count, sample );
+    }
+
+    void addRelationships( long count, Sample sample )
+    {
+        relationships += count;
+        addProperties( count, sample );
+    }
+
+    private void addProperties( long count, Sample sample )
+    {
+        propertyRecords += sample.scale( sample.propertyRecords, count );
+        stringRecords += sample.scale( sample.stringRecords, count );
+    }
+
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+    public long getRelationships()
+    {
+        return relationships;
+    }
+
+    public long getNodeStoreBytes()
+    {
+        return nodes * NodeStore.RECORD_SIZE;
+    }
+
+    public long getRelationshipStoreBytes()
+    {
+        return relationships * RelationshipStore.RECORD_SIZE;
+    }
+
+    public long getPropertyStoreBytes()
+    {
+        return propertyRecords * PropertyStore.RECORD_SIZE;
+    }
+
+    public long getStringStoreBytes()
+    {
+        return stringRecords * STRING_RECORD_SIZE;
+    }
+
+    // settings already in the config are kept, the budget goes to the stores in the order they are written
+    public Map<String, String> configure( Map<String, String> config, long availableBytes )
+    {
+        long remaining = (long) ( availableBytes * MAPPED_SHARE );
+        remaining = assign( config, Config.NODE_STORE_MMAP_SIZE, getNodeStoreBytes(), remaining );
+        remaining = assign( config, Config.RELATIONSHIP_STORE_MMAP_SIZE, getRelationshipStoreBytes(), remaining );
+        remaining = assign( config, Config.PROPERTY_STORE_MMAP_SIZE, getPropertyStoreBytes(), remaining );
+        assign( config, Config.STRING_PROPERTY_STORE_MMAP_SIZE, getStringStoreBytes(), remaining );
+        return config;
+    }
+
+    private static long assign( Map<String, String> config, String key, long bytes, long remaining )
+    {
+        if ( config.containsKey( key ) || bytes == 0 )
+        {
+            return remaining;
+        }
+        // a tenth more for the records that the estimate misses
+        long megabytes = Math.min( ( ( bytes + bytes / 10 ) >> 20 ) + 1, remaining >> 20 );
+        if ( megabytes < 1 )
+        {
+            return remaining;
+        }
+        config.put( key, megabytes + "M" );
+        return remaining - ( megabytes << 20 );
+    }
+
+    // physical memory outside the Java heap, 0 when the JVM does not tell
+    public static long availableMemory()
+    {
+        long physical = physicalMemory( ManagementFactory.getOperatingSystemMXBean() );
+        return physical <= 0 ? 0 : Math.max( 0, physical - Runtime.getRuntime().maxMemory() );
+    }
+
+    // looked up by name, newer JVMs renamed the deprecated getTotalPhysicalMemorySize to getTotalMemorySize
+    static long physicalMemory( OperatingSystemMXBean os )
+    {
+        if ( !( os instanceof com.sun.management.OperatingSystemMXBean ) )
+        {
+            return 0;
+        }
+        for ( String name : new String[] { "getTotalMemorySize", "getTotalPhysicalMemorySize" } )
+        {
+            try
+            {
+                Method method = com.sun.management.OperatingSystemMXBean.class.getMethod( name );
+                return ( (Number) method.invoke( os ) ).longValue();
+            }
+            catch ( NoSuchMethodException e )
+            {
+                // try the older name
+            }
+            catch ( Exception e )
+            {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "%d nodes (%d MB), %d relationships (%d MB), properties %d MB, strings %d MB",
+                nodes, getNodeStoreBytes() >> 20, relationships, getRelationshipStoreBytes() >> 20,
+                getPropertyStoreBytes() >> 20, getStringStoreBytes() >> 20 );
+    }
+
+    static final class Sample
+    {
+        private long rows;
+        private long propertyRecords;
+        private long stringRecords;
+        private int rowProperties;
+
+        void property()
+        {
+            rowProperties++;
+        }
+
+        void stringProperty( int bytes )
+        {
+            rowProperties++;
+            if ( bytes > SHORT_STRING_BYTES )
+            {
+                stringRecords += ( bytes + PropertyStore.DEFAULT_DATA_BLOCK_SIZE - 1 ) / PropertyStore.DEFAULT_DATA_BLOCK_SIZE;
+            }
+        }
+
+        void endRow()
+        {
+            propertyRecords += ( rowProperties + PROPERTY_BLOCKS_PER_RECORD - 1 ) / PROPERTY_BLOCKS_PER_RECORD;
+            rowProperties = 0;
+            rows++;
+        }
+
+        long getRows()
+        {
+            return rows;
+        }
+
+        private long scale( long sampled, long count )
+        {
+            return rows == 0 ? 0 : (long) ( (double) sampled * count / rows );
+        }
+    }
+}
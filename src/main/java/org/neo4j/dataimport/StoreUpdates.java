@@ -0,0 +1,25 @@
+package org.neo4j.dataimport;
+
+import org.neo4j.kernel.impl.batchinsert.BatchInserter;
+
+import java.util.Map;
+
+final class StoreUpdates
+{
+    private StoreUpdates()
+    {
+    }
+
+    // the row holds the full state of the node, properties missing from it are removed
+    static void upsertNode( BatchInserter target, long id, Map<String, Object> properties )
+    {
+        if ( target.nodeExists( id ) )
+        {
+            target.setNodeProperties( id, properties );
+        }
+        else
+        {
+            target.createNode( id, properties );
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.neo4j.dataimport;
+
+import java.nio.ByteBuffer;
+
+final class TypeInference
+{
+    private static final int LONG = 1;
+    private static final int DOUBLE = 2;
+    private static final int BOOLEAN = 4;
+    private static final int ANY = LONG | DOUBLE | BOOLEAN;
+
+    // longer numbers may overflow a long, they are still valid doubles
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final int[] candidates;
+    private final boolean[] seen;
+
+    TypeInference( int columns )
+    {
+        candidates = new int[columns];
+        seen = new boolean[columns];
+        for ( int i = 0; i < columns; i++ )
+        {
+            candidates[i] = ANY;
+        }
+    }
+
+    void sample( CsvRecord record, int firstField )
+    {
+        int columns = Math.min( record.fieldCount() - firstField, candidates.length );
+        for ( int column = 0; column < columns; column++ )
+        {
+            int field = column + firstField;
+            if ( candidates[column] != 0 && !record.isEmpty( field ) )
+            {
+                seen[column] = true;
+                candidates[column] &= matches( record.buffer(), record.fieldStart( field ), record.fieldEnd( field ) );
+            }
+        }
+    }
+
+    // the narrowest type every sampled value fits, columns without values stay strings
+    CsvImporter.PropertyType type( int column )
+    {
+        if ( column >= candidates.length || !seen[column] )
+        {
+            return CsvImporter.PropertyType.stringType;
+        }
+        int matched = candidates[column];
+        if ( ( matched & LONG ) != 0 )
+        {
+            return CsvImporter.PropertyType.longType;
+        }
+        if ( ( matched & DOUBLE ) != 0 )
+        {
+            return CsvImporter.PropertyType.doubleType;
+        }
+        if ( ( matched & BOOLEAN ) != 0 )
+        {
+            return CsvImporter.PropertyType.booleanType;
+        }
+        return CsvImporter.PropertyType.stringType;
+    }
+
+    private static int matches( ByteBuffer buffer, int start, int end )
+    {
+        if ( isBoolean( buffer, start, end ) )
+        {
+            return BOOLEAN;
+        }
+        int position = start;
+        byte first = buffer.get( position );
+        if ( first == '+' )
+        {
+            // phone numbers and similar codes, converting them would drop the sign
+            return 0;
+        }
+        if ( first == '-' )
+        {
+            position++;
+        }
+        int digits = digits( buffer, position, end );
+        if ( digits > 1 && buffer.get( position ) == '0' )
+        {
+            // zip codes and zero padded keys, converting them would drop the zeros
+            return 0;
+        }
+        position += digits;
+        if ( position == end )
+        {
+            return digits == 0 ? 0 : digits <= MAX_LONG_DIGITS ? LONG | DOUBLE : DOUBLE;
+        }
+        if ( buffer.get( position ) == '.' )
+        {
+            int fraction = digits( buffer, position + 1, end );
+            position += 1 + fraction;
+            digits += fraction;
+        }
+        if ( digits == 0 )
+        {
+            return 0;
+        }
+        if ( position < end && ( buffer.get( position ) == 'e' || buffer.get( position ) == 'E' ) )
+        {
+            position++;
+            if ( position < end && ( buffer.get( position ) == '-' || buffer.get( position ) == '+' ) )
+            {
+                position++;
+            }
+            int exponent = digits( buffer, position, end );
+            if ( exponent == 0 )
+            {
+                return 0;
+            }
+            position += exponent;
+        }
+        return position == end ? DOUBLE : 0;
+    }
+
+    private static int digits( ByteBuffer buffer, int from, int end )
+    {
+        int position = from;
+        while ( position < end && buffer.get( position ) >= '0' && buffer.get( position ) <= '9' )
+        {
+            position++;
+        }
+        return position - from;
+    }
+
+    private static boolean isBoolean( ByteBuffer buffer, int start, int end )
+    {
+        return matchesIgnoreCase( buffer, start, end, "true" ) || matchesIgnoreCase( buffer, start, end, "false" );
+    }
+
+    private static boolean matchesIgnoreCase( ByteBuffer buffer, int start, int end, String word )
+    {
+        if ( end - start != word.length() )
+        {
+            return false;
+        }
+        for ( int i = 0; i < word.length(); i++ )
+        {
+            if ( Character.toLowerCase( (char) buffer.get( start + i ) ) != word.charAt( i ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -6,11 +6,18 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
@@ -143,6 +150,236 @@ public class ColumnPropertyStrategyTest
         assertEquals( 123L, properties.get( "since" ) );
     }
 
+    @Test
+    public void testExtendedPropertyTypes() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT IDENTITY, c CHAR(5), t LONGVARCHAR, n NUMERIC(10,0), dc DECIMAL(10,2), r REAL, " +
+            "dt DATE, ts TIMESTAMP, vb VARBINARY)" );
+        update( "INSERT INTO nodes (id,c,t,n,dc,r,dt,ts,vb) VALUES(1,'abc','text',1234567890,12.5,1.5," +
+            "'2012-03-04','2012-03-04 05:06:07.0','0aff')" );
+        update( "INSERT INTO nodes (id) VALUES(2)" );
+
+        ResultSet rs = query( "SELECT * FROM nodes" );
+        ColumnPropertyStrategy strategy = new ColumnPropertyStrategy();
+        strategy.initialize( rs, ID_COLUMN_NAME );
+
+        rs.next();
+        Map<String, Object> properties = strategy.getPropertiesForCursorRow( rs );
+        Assert.assertEquals( "text", properties.get( "t" ) );
+        Assert.assertEquals( 1234567890L, properties.get( "n" ) );
+        Assert.assertEquals( 12.5d, properties.get( "dc" ) );
+        Assert.assertEquals( 1.5f, properties.get( "r" ) );
+        Assert.assertEquals( java.sql.Date.valueOf( "2012-03-04" ).getTime(), properties.get( "dt" ) );
+        Assert.assertEquals( java.sql.Timestamp.valueOf( "2012-03-04 05:06:07.0" ).getTime(), properties.get( "ts" ) );
+        Assert.assertArrayEquals( new byte[] { 0x0a, (byte) 0xff }, (byte[]) properties.get( "vb" ) );
+        Assert.assertTrue( ( (String) properties.get( "c" ) ).startsWith( "abc" ) );
+
+        rs.next();
+        properties = strategy.getPropertiesForCursorRow( rs );
+        assertFalse( properties.containsKey( "n" ) );
+        assertFalse( properties.containsKey( "dt" ) );
+        assertFalse( properties.containsKey( "ts" ) );
+    }
+
+    @Test
+    public void shouldUseRegisteredAccessors() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT IDENTITY, name VARCHAR)" );
+        update( "INSERT INTO nodes (id,name) VALUES(1,'hello')" );
+
+        ResultSet rs = query( "SELECT * FROM nodes" );
+        ColumnTypeRegistry registry = new ColumnTypeRegistry();
+        registry.register( Types.VARCHAR, new ColumnAccessor()
+        {
+            @Override
+            public Object getValue( ResultSet resultSet, int column ) throws SQLException
+            {
+                return resultSet.getString( column ).toUpperCase();
+            }
+        } );
+        ColumnPropertyStrategy strategy = new ColumnPropertyStrategy();
+        strategy.setTypeRegistry( registry );
+        strategy.initialize( rs, ID_COLUMN_NAME );
+
+        rs.next();
+        assertEquals( "HELLO", strategy.getPropertiesForCursorRow( rs ).get( "name" ) );
+    }
+
+    @Test
+    public void shouldAdaptLabelAccessors() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT IDENTITY, name VARCHAR)" );
+        update( "INSERT INTO nodes (id,name) VALUES(1,'hello')" );
+
+        ResultSet rs = query( "SELECT * FROM nodes" );
+        ColumnTypeRegistry registry = new ColumnTypeRegistry();
+        registry.register( Types.VARCHAR, new LabelColumnAccessor()
+        {
+            @Override
+            public Object getValue( ResultSet resultSet, String columnLabel ) throws SQLException
+            {
+                return columnLabel.toLowerCase() + "=" + resultSet.getString( columnLabel );
+            }
+        } );
+        ColumnPropertyStrategy strategy = new ColumnPropertyStrategy();
+        strategy.setTypeRegistry( registry );
+        strategy.initialize( rs, ID_COLUMN_NAME );
+
+        rs.next();
+        assertEquals( "name=hello", strategy.getPropertiesForCursorRow( rs ).get( "name" ) );
+    }
+
+    @Test
+    public void shouldRejectArraysWithNullElements()
+    {
+        Assert.assertTrue( ColumnTypeRegistry.hasNullElement( new Long[] { 1L, null, 3L } ) );
+        Assert.assertFalse( ColumnTypeRegistry.hasNullElement( new long[] { 1, 3 } ) );
+        for ( int baseType : new int[] { Types.BIGINT, Types.BOOLEAN, Types.VARCHAR } )
+        {
+            try
+            {
+                ColumnTypeRegistry.toPrimitiveArray( baseType, new Object[] { null } );
+                Assert.fail( "NULL array elements should be rejected" );
+            }
+            catch ( IllegalStateException e )
+            {
+                Assert.assertTrue( e.getMessage(), e.getMessage().contains( "NULL" ) );
+            }
+        }
+    }
+
+    @Test
+    public void shouldFreeArraysAfterReadingThem() throws SQLException
+    {
+        FakeArray values = new FakeArray( new Long[] { 1L, 2L } );
+        Assert.assertArrayEquals( new long[] { 1, 2 }, (long[]) ColumnTypeRegistry.ARRAY.getValue( resultSetWith( values ), 1 ) );
+        Assert.assertTrue( values.freed );
+
+        FakeArray withNull = new FakeArray( new Long[] { 1L, null } );
+        try
+        {
+            ColumnTypeRegistry.ARRAY.getValue( resultSetWith( withNull ), 1 );
+            Assert.fail( "NULL array elements should be rejected" );
+        }
+        catch ( IllegalStateException e )
+        {
+            Assert.assertTrue( e.getMessage(), e.getMessage().contains( "scores" ) );
+        }
+        Assert.assertTrue( withNull.freed );
+    }
+
+    // a BIGINT array column labelled scores, only what the ARRAY accessor reads
+    private static ResultSet resultSetWith( final Array array )
+    {
+        final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance( ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler()
+        {
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] args )
+            {
+                return method.getName().equals( "getColumnLabel" ) ? "scores" : null;
+            }
+        } );
+        return (ResultSet) Proxy.newProxyInstance( ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                new InvocationHandler()
+        {
+            @Override
+            public Object invoke( Object proxy, Method method, Object[] args )
+            {
+                return method.getName().equals( "getArray" ) ? array : method.getName().equals( "getMetaData" ) ? metaData : null;
+            }
+        } );
+    }
+
+    private static final class FakeArray implements Array
+    {
+        private final Object values;
+        private boolean freed;
+
+        FakeArray( Object values )
+        {
+            this.values = values;
+        }
+
+        @Override
+        public String getBaseTypeName()
+        {
+            return "BIGINT";
+        }
+
+        @Override
+        public int getBaseType()
+        {
+            return Types.BIGINT;
+        }
+
+        @Override
+        public Object getArray()
+        {
+            return values;
+        }
+
+        @Override
+        public Object getArray( Map<String, Class<?>> map )
+        {
+            return values;
+        }
+
+        @Override
+        public Object getArray( long index, int count )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object getArray( long index, int count, Map<String, Class<?>> map )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getResultSet()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getResultSet( Map<String, Class<?>> map )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getResultSet( long index, int count )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getResultSet( long index, int count, Map<String, Class<?>> map )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void free()
+        {
+            freed = true;
+        }
+    }
+
+    @Test
+    public void shouldConvertArraysToPrimitiveArrays()
+    {
+        Assert.assertArrayEquals( new long[] { 1, 2 }, (long[]) ColumnTypeRegistry.toPrimitiveArray( Types.BIGINT, new Long[] { 1L, 2L } ) );
+        Assert.assertArrayEquals( new int[] { 3 }, (int[]) ColumnTypeRegistry.toPrimitiveArray( Types.INTEGER, new Integer[] { 3 } ) );
+        Assert.assertArrayEquals( new double[] { 0.5 }, (double[]) ColumnTypeRegistry.toPrimitiveArray( Types.DOUBLE, new Double[] { 0.5 } ), 0 );
+        Assert.assertArrayEquals( new String[] { "a", "b" }, (String[]) ColumnTypeRegistry.toPrimitiveArray( Types.VARCHAR, new Object[] { "a", "b" } ) );
+        Assert.assertTrue( Arrays.equals( new boolean[] { true }, (boolean[]) ColumnTypeRegistry.toPrimitiveArray( Types.BOOLEAN, new Boolean[] { true } ) ) );
+        long[] primitive = new long[] { 4 };
+        Assert.assertSame( primitive, ColumnTypeRegistry.toPrimitiveArray( Types.BIGINT, primitive ) );
+    }
+
     private void update( String sql ) throws SQLException
     {
         Statement statement = connection.createStatement();
@@ -0,0 +1,71 @@
+package org.neo4j.dataimport;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+class ConnectionDataSource implements DataSource
+{
+    private final String url;
+
+    ConnectionDataSource( String url )
+    {
+        this.url = url;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException
+    {
+        return DriverManager.getConnection( url, "sa", "" );
+    }
+
+    @Override
+    public Connection getConnection( String username, String password ) throws SQLException
+    {
+        return DriverManager.getConnection( url, username, password );
+    }
+
+    @Override
+    public PrintWriter getLogWriter()
+    {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter( PrintWriter out )
+    {
+    }
+
+    @Override
+    public void setLoginTimeout( int seconds )
+    {
+    }
+
+    @Override
+    public int getLoginTimeout()
+    {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException
+    {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap( Class<T> iface ) throws SQLException
+    {
+        throw new SQLException( "Not a wrapper" );
+    }
+
+    @Override
+    public boolean isWrapperFor( Class<?> iface )
+    {
+        return false;
+    }
+}
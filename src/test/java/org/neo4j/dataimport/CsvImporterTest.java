@@ -10,17 +10,26 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.kernel.EmbeddedGraphDatabase;
 import org.neo4j.kernel.impl.batchinsert.BatchInserter;
 import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -173,6 +182,63 @@ public class CsvImporterTest
         assertEquals( 1, entitiesIndex.get( "entityid", 35 ).getSingle().getId() );
     }
 
+    @Test
+    public void testBatchedIndexing() throws IOException
+    {
+        addNode( "id,people|name,people|nick,places|city" );
+        for ( int i = 1; i <= 25; i++ )
+        {
+            addNode( i + ",name" + i + "," + ( i % 2 == 0 ? "nick" + i : "" ) + ",city" + i );
+        }
+
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setIndexCacheCapacity( 100 );
+        csvImporter.importTo( batchInserter );
+
+        importComplete();
+
+        final Index<Node> peopleIndex = graphDb.index().forNodes( "people" );
+        final Index<Node> placesIndex = graphDb.index().forNodes( "places" );
+        for ( int i = 1; i <= 25; i++ )
+        {
+            assertEquals( i, peopleIndex.get( "name", "name" + i ).getSingle().getId() );
+            assertEquals( i, placesIndex.get( "city", "city" + i ).getSingle().getId() );
+        }
+        assertEquals( 12, peopleIndex.get( "nick", "nick12" ).getSingle().getId() );
+        assertEquals( null, peopleIndex.get( "nick", "nick13" ).getSingle() );
+    }
+
+    @Test
+    public void testDeferredIndexing() throws IOException
+    {
+        addNode( "id,people|name,people|age@int,places|city" );
+        for ( int i = 1; i <= 50; i++ )
+        {
+            addNode( i + ",name" + i + "," + i + "," + ( i % 5 == 0 ? "" : "city" + i ) );
+        }
+        addRel( "1,2,KNOWS" );
+
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setDeferredIndexing( 2 );
+        csvImporter.importTo( batchInserter );
+
+        importComplete();
+
+        final Index<Node> peopleIndex = graphDb.index().forNodes( "people" );
+        final Index<Node> placesIndex = graphDb.index().forNodes( "places" );
+        for ( int i = 1; i <= 50; i++ )
+        {
+            assertEquals( i, peopleIndex.get( "name", "name" + i ).getSingle().getId() );
+            assertEquals( i, peopleIndex.get( "age", i ).getSingle().getId() );
+        }
+        assertEquals( 7, placesIndex.get( "city", "city7" ).getSingle().getId() );
+        assertEquals( null, placesIndex.get( "city", "city10" ).getSingle() );
+    }
+
     @Test
     public void testRelationshipPropertyImport() throws IOException
     {
@@ -261,6 +327,827 @@ public class CsvImporterTest
         assertEquals( 26L, node3.getProperty( "age" ) );
     }
 
+    @Test
+    public void testParallelImport() throws IOException
+    {
+        addNode( "id,people|name,age@int" );
+        for ( int i = 1; i <= 1000; i++ )
+        {
+            addNode( i + ",name" + i + "," + i % 100 );
+        }
+        addRel( "from,to,type,since@long" );
+        for ( int i = 1; i < 1000; i++ )
+        {
+            addRel( i + "," + ( i + 1 ) + ",KNOWS," + i );
+        }
+
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setParserThreads( 3 );
+        csvImporter.setBatchSize( 7 );
+        csvImporter.importTo( batchInserter );
+
+        importComplete();
+
+        for ( int i = 1; i < 1000; i++ )
+        {
+            Node node = graphDb.getNodeById( i );
+            assertEquals( "name" + i, node.getProperty( "name" ) );
+            assertEquals( i % 100, node.getProperty( "age" ) );
+            Relationship rel = node.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+            assertEquals( i + 1, rel.getEndNode().getId() );
+            assertEquals( (long) i, rel.getProperty( "since" ) );
+        }
+        final Index<Node> index = graphDb.index().forNodes( "people" );
+        assertEquals( 500, index.get( "name", "name500" ).getSingle().getId() );
+        assertEquals( 6, csvImporter.getPipelineStatistics().size() );
+        assertEquals( 1000, csvImporter.getPipelineStatistics().get( 2 ).getRows() );
+    }
+
+    @Test
+    public void testSortedRelationships() throws IOException
+    {
+        for ( int i = 1; i <= 20; i++ )
+        {
+            addNode( String.valueOf( i ) );
+        }
+        addRel( "from,to,type,weight@int" );
+        for ( int i = 20; i > 1; i-- )
+        {
+            addRel( i + "," + ( i - 1 ) + ",KNOWS," + i );
+        }
+
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setRelationshipSorting( 4 );
+        csvImporter.importTo( batchInserter );
+
+        importComplete();
+
+        for ( int i = 2; i <= 20; i++ )
+        {
+            Relationship rel = graphDb.getNodeById( i ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+            assertEquals( i - 2, rel.getId() );
+            assertEquals( i - 1, rel.getEndNode().getId() );
+            assertEquals( i, rel.getProperty( "weight" ) );
+        }
+    }
+
+    @Test
+    public void testDegreeGrouping() throws IOException
+    {
+        for ( int i = 1; i <= 6; i++ )
+        {
+            addNode( String.valueOf( i ) );
+        }
+        addRel( "from,to,type" );
+        addRel( "2,1,KNOWS" );
+        addRel( "2,3,LIKES" );
+        addRel( "3,1,KNOWS" );
+        addRel( "3,4,LIKES" );
+        for ( int i = 4; i <= 6; i++ )
+        {
+            addRel( i + ",1,KNOWS" );
+        }
+
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setDegreeGrouping( true );
+        csvImporter.importTo( batchInserter );
+
+        importComplete();
+
+        // the hub's relationships are written first and in a row, then the ones grouped under node 3
+        for ( int i = 2; i <= 6; i++ )
+        {
+            Relationship rel = graphDb.getNodeById( i ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+            assertEquals( i - 2, rel.getId() );
+            assertEquals( 1, rel.getEndNode().getId() );
+        }
+        assertEquals( 2, graphDb.getRelationshipById( 5 ).getStartNode().getId() );
+        assertEquals( 4, graphDb.getRelationshipById( 6 ).getEndNode().getId() );
+        assertEquals( 7, csvImporter.getMetrics().getRelationships() );
+    }
+
+    @Test
+    public void testRelationshipTypeCounts() throws IOException
+    {
+        addNode( "id" );
+        for ( int i = 1; i <= 10; i++ )
+        {
+            addNode( String.valueOf( i ) );
+        }
+        addRel( "from,to,type" );
+        for ( int i = 1; i < 10; i++ )
+        {
+            addRel( i + "," + ( i + 1 ) + "," + ( i % 3 == 0 ? "\"LIKES\"" : "KNOWS" ) );
+        }
+
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setParserThreads( 2 );
+        csvImporter.setRelationshipSorting( 4 );
+        csvImporter.importTo( batchInserter );
+
+        Map<String, Long> counts = csvImporter.getMetrics().getRelationshipTypeCounts();
+        assertEquals( 2, counts.size() );
+        assertEquals( Long.valueOf( 6 ), counts.get( "KNOWS" ) );
+        assertEquals( Long.valueOf( 3 ), counts.get( "LIKES" ) );
+
+        importComplete();
+
+        assertEquals( "LIKES", graphDb.getNodeById( 3 ).getSingleRelationship( DynamicRelationshipType.withName( "LIKES" ), Direction.OUTGOING ).getType().name() );
+        assertEquals( 5, graphDb.getNodeById( 4 ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING ).getEndNode().getId() );
+    }
+
+    @Test
+    public void testEstimateStoreSize() throws IOException
+    {
+        StringBuilder longName = new StringBuilder();
+        for ( int i = 0; i < 200; i++ )
+        {
+            longName.append( 'x' );
+        }
+        addNode( "id,name,age@int" );
+        addNode( "1,Dave,27" );
+        addNode( "2," + longName + ",21" );
+        addNode( "3,Anna,30" );
+        addNode( "4,," );
+        addRel( "from,to,type,since@long" );
+        addRel( "1,2,KNOWS,100" );
+        addRel( "2,3,KNOWS," );
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        StoreSizeEstimate estimate = csvImporter.estimateStoreSize( 100 );
+        assertEquals( 4, estimate.getNodes() );
+        assertEquals( 2, estimate.getRelationships() );
+        assertEquals( 4 * 9, estimate.getNodeStoreBytes() );
+        assertEquals( 2 * 33, estimate.getRelationshipStoreBytes() );
+        assertEquals( 4 * 41, estimate.getPropertyStoreBytes() );
+        assertEquals( 2 * StoreSizeEstimate.STRING_RECORD_SIZE, estimate.getStringStoreBytes() );
+
+        long sampledNodes = csvImporter.estimateStoreSize( 1 ).getNodes();
+        assertTrue( "Estimated " + sampledNodes + " nodes", sampledNodes >= 1 && sampledNodes <= 8 );
+
+        Map<String, String> config = new HashMap<String, String>();
+        config.put( "neostore.nodestore.db.mapped_memory", "5M" );
+        estimate.configure( config, 1L << 30 );
+        assertEquals( "5M", config.get( "neostore.nodestore.db.mapped_memory" ) );
+        assertEquals( "1M", config.get( "neostore.relationshipstore.db.mapped_memory" ) );
+        assertEquals( "1M", config.get( "neostore.propertystore.db.strings.mapped_memory" ) );
+        assertTrue( estimate.configure( new HashMap<String, String>(), 0 ).isEmpty() );
+    }
+
+    @Test
+    public void testImportMetrics() throws IOException
+    {
+        addNode( "id,people|name" );
+        addNode( "1,Dave" );
+        addNode( "2,Mike" );
+        addRel( "1,2,KNOWS" );
+
+        writeFiles();
+
+        final List<String> events = new ArrayList<String>();
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setDeferredIndexing( 1 );
+        csvImporter.getMetrics().addListener( new ImportListener()
+        {
+            @Override
+            public void phaseStarted( ImportPhase phase, ImportMetrics metrics )
+            {
+                events.add( "start " + phase );
+            }
+
+            @Override
+            public void phaseCompleted( ImportPhase phase, ImportMetrics metrics )
+            {
+                events.add( "complete " + phase );
+            }
+
+            @Override
+            public void progress( ImportMetrics metrics )
+            {
+                events.add( "progress" );
+            }
+        } );
+        csvImporter.importTo( batchInserter );
+
+        ImportMetrics metrics = csvImporter.getMetrics();
+        assertEquals( "[start NODES, complete NODES, start RELATIONSHIPS, complete RELATIONSHIPS, start INDEXING, complete INDEXING]",
+            events.toString() );
+        assertEquals( 2, metrics.getNodes() );
+        assertEquals( 1, metrics.getRelationships() );
+        assertEquals( nodes.length() + rels.length(), metrics.getInputBytes() );
+        assertEquals( metrics.getInputBytes(), metrics.getBytesRead() );
+        assertEquals( "INDEXING", metrics.getPhase() );
+        assertEquals( -1, metrics.getEtaMillis() );
+    }
+
+    @Test
+    public void testIdMapping() throws IOException
+    {
+        addNode( "id,people|name" );
+        addNode( "alice@example.com,Alice" );
+        addNode( "9000000000000,Bob" );
+        addRel( "from,to,type,since@long" );
+        addRel( "alice@example.com,9000000000000,KNOWS,2011" );
+
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setIdMapping( true );
+        csvImporter.importTo( batchInserter );
+
+        importComplete();
+
+        Node alice = graphDb.getNodeById( 1 );
+        assertEquals( "Alice", alice.getProperty( "name" ) );
+        Relationship rel = alice.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+        assertEquals( "Bob", rel.getEndNode().getProperty( "name" ) );
+        assertEquals( 2011L, rel.getProperty( "since" ) );
+        final Index<Node> index = graphDb.index().forNodes( "people" );
+        assertEquals( 2, index.get( "name", "Bob" ).getSingle().getId() );
+    }
+
+    @Test
+    public void testParallelIdMapping() throws IOException
+    {
+        addNode( "id,name" );
+        for ( int i = 1; i <= 500; i++ )
+        {
+            addNode( "user-" + i + ",name" + i );
+        }
+        addRel( "from,to,type" );
+        for ( int i = 1; i < 500; i++ )
+        {
+            addRel( "user-" + i + ",user-" + ( i + 1 ) + ",KNOWS" );
+        }
+
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setIdMapping( true );
+        csvImporter.setParserThreads( 3 );
+        csvImporter.setBatchSize( 11 );
+        csvImporter.importTo( batchInserter );
+
+        importComplete();
+
+        for ( int i = 1; i <= 500; i++ )
+        {
+            Node node = graphDb.getNodeById( i );
+            String name = (String) node.getProperty( "name" );
+            int user = Integer.parseInt( name.substring( "name".length() ) );
+            Relationship rel = node.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+            if ( user == 500 )
+            {
+                assertEquals( null, rel );
+            }
+            else
+            {
+                assertEquals( "name" + ( user + 1 ), rel.getEndNode().getProperty( "name" ) );
+            }
+        }
+    }
+
+    @Test(expected = DataImportException.class)
+    public void testUnknownMappedId() throws IOException
+    {
+        addNode( "id" );
+        addNode( "a" );
+        addRel( "from,to,type" );
+        addRel( "a,b,KNOWS" );
+
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setIdMapping( true );
+        csvImporter.importTo( batchInserter );
+    }
+
+    @Test
+    public void testQuotedValuesWithPipeDelimiter() throws IOException
+    {
+        addNode( "id|\"users|name\"|bio" );
+        addNode( "1|\"Dave|Smith\"|\"likes \"\"quotes\"\"\nand lines\"" );
+        addNode( "2|Mike|" );
+        addRel( "from|to|type|note" );
+        addRel( "1|2|KNOWS|\"a, b\"" );
+
+        writeFiles();
+
+        for ( int parserThreads : new int[] { 0, 2 } )
+        {
+            if ( batchInserter == null )
+            {
+                graphDb.shutdown();
+                graphDb = null;
+                storePath = createTempDir().getAbsolutePath();
+                batchInserter = new BatchInserterImpl( storePath );
+            }
+            CsvImporter csvImporter = new CsvImporter( nodes, rels );
+            csvImporter.setDelimiter( '|' );
+            csvImporter.setParserThreads( parserThreads );
+            csvImporter.importTo( batchInserter );
+
+            importComplete();
+
+            Node dave = graphDb.getNodeById( 1 );
+            assertEquals( "Dave|Smith", dave.getProperty( "name" ) );
+            assertEquals( "likes \"quotes\"\nand lines", dave.getProperty( "bio" ) );
+            assertEquals( 1, graphDb.index().forNodes( "users" ).get( "name", "Dave|Smith" ).getSingle().getId() );
+            Relationship rel = dave.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+            assertEquals( "a, b", rel.getProperty( "note" ) );
+        }
+    }
+
+    @Test
+    public void testResumeNodesAfterFailure() throws IOException
+    {
+        addNode( "id,people|name" );
+        for ( int i = 1; i <= 100; i++ )
+        {
+            addNode( i + ",name" + i );
+        }
+        addRel( "from,to,type" );
+        addRel( "1,2,KNOWS" );
+        writeFiles();
+        File checkpointFile = new File( storePath, "import.checkpoint" );
+
+        batchInserter.shutdown();
+        batchInserter = new FailingBatchInserter( storePath, 60, 0 );
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setCheckpointing( checkpointFile );
+        try
+        {
+            csvImporter.importTo( batchInserter );
+            fail( "Should have failed on the 60th node" );
+        }
+        catch ( DataImportException e )
+        {
+        }
+        batchInserter.shutdown();
+
+        batchInserter = new BatchInserterImpl( storePath );
+        csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setCheckpointing( checkpointFile );
+        csvImporter.importTo( batchInserter );
+        assertEquals( 41, csvImporter.getMetrics().getNodes() );
+        assertFalse( checkpointFile.exists() );
+
+        importComplete();
+
+        Index<Node> index = graphDb.index().forNodes( "people" );
+        for ( int i = 1; i <= 100; i++ )
+        {
+            assertEquals( "name" + i, graphDb.getNodeById( i ).getProperty( "name" ) );
+            assertEquals( i, index.get( "name", "name" + i ).getSingle().getId() );
+        }
+        assertEquals( 2, graphDb.getNodeById( 1 ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING ).getEndNode().getId() );
+    }
+
+    @Test
+    public void testResumeRelationshipsAfterFailure() throws IOException
+    {
+        addNode( "id" );
+        for ( int i = 1; i <= 100; i++ )
+        {
+            addNode( String.valueOf( i ) );
+        }
+        addRel( "from,to,type" );
+        for ( int i = 1; i < 100; i++ )
+        {
+            addRel( i + "," + ( i + 1 ) + ",KNOWS" );
+        }
+        writeFiles();
+        File checkpointFile = new File( storePath, "import.checkpoint" );
+
+        batchInserter.shutdown();
+        batchInserter = new FailingBatchInserter( storePath, 0, 60 );
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setParserThreads( 2 );
+        csvImporter.setBatchSize( 10 );
+        csvImporter.setCheckpointing( checkpointFile );
+        try
+        {
+            csvImporter.importTo( batchInserter );
+            fail( "Should have failed on the 60th relationship" );
+        }
+        catch ( DataImportException e )
+        {
+        }
+        batchInserter.shutdown();
+
+        // the failing batch was partly written, those relationships are in the store and skipped on resume
+        ImportCheckpoint checkpoint = new ImportCheckpoint( checkpointFile );
+        assertTrue( checkpoint.load() );
+        assertEquals( ImportPhase.RELATIONSHIPS, checkpoint.getPhase() );
+        assertEquals( 50, checkpoint.getRows() );
+        assertEquals( 50, checkpoint.getRelationships() );
+
+        batchInserter = new BatchInserterImpl( storePath );
+        csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setParserThreads( 2 );
+        csvImporter.setBatchSize( 10 );
+        csvImporter.setCheckpointing( checkpointFile );
+        csvImporter.importTo( batchInserter );
+        assertFalse( checkpointFile.exists() );
+
+        importComplete();
+
+        for ( int i = 1; i < 100; i++ )
+        {
+            Relationship rel = graphDb.getNodeById( i ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+            assertEquals( i + 1, rel.getEndNode().getId() );
+        }
+    }
+
+    @Test
+    public void testRefuseCheckpointForChangedInput() throws IOException
+    {
+        addNode( "id,name" );
+        for ( int i = 1; i <= 100; i++ )
+        {
+            addNode( i + ",name" + i );
+        }
+        addRel( "from,to,type" );
+        writeFiles();
+        File checkpointFile = new File( storePath, "import.checkpoint" );
+
+        batchInserter.shutdown();
+        batchInserter = new FailingBatchInserter( storePath, 60, 0 );
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setCheckpointing( checkpointFile );
+        try
+        {
+            csvImporter.importTo( batchInserter );
+            fail( "Should have failed on the 60th node" );
+        }
+        catch ( DataImportException e )
+        {
+        }
+        batchInserter.shutdown();
+
+        addNode( "101,name101" );
+        writeFiles();
+        batchInserter = new BatchInserterImpl( storePath );
+        csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setCheckpointing( checkpointFile );
+        try
+        {
+            csvImporter.importTo( batchInserter );
+            fail( "Should have refused the checkpoint of the old input" );
+        }
+        catch ( DataImportException e )
+        {
+            assertTrue( e.getCause() instanceof IllegalStateException );
+        }
+        assertTrue( checkpointFile.exists() );
+    }
+
+    @Test
+    public void testRefuseCheckpointOfKilledImport() throws IOException
+    {
+        addNode( "id" );
+        addNode( "1" );
+        addRel( "from,to,type" );
+        writeFiles();
+        File checkpointFile = new File( storePath, "import.checkpoint" );
+        // an import that was killed never marked its checkpoint clean
+        new ImportCheckpoint( checkpointFile ).started();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setCheckpointing( checkpointFile );
+        try
+        {
+            csvImporter.importTo( batchInserter );
+            fail( "Should have refused the checkpoint of the killed import" );
+        }
+        catch ( DataImportException e )
+        {
+            assertTrue( e.getCause() instanceof IllegalStateException );
+        }
+        assertTrue( checkpointFile.exists() );
+    }
+
+    @Test
+    public void testArrayProperties() throws IOException
+    {
+        addNode( "id,tags@string[],scores@int[],weights@double[],flags@boolean[],initials@char[]" );
+        addNode( "1,graph;\"db\";,1;-2;3,0.5;1e3,true;FALSE,a;b" );
+        addNode( "2,\"say \"\"hi\"\";bye\",,,," );
+        addRel( "from,to,type,since@long[]" );
+        addRel( "1,2,KNOWS,2010;2012" );
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.importTo( batchInserter );
+
+        importComplete();
+
+        Node node1 = graphDb.getNodeById( 1 );
+        assertTrue( Arrays.equals( new String[] { "graph", "\"db\"", "" }, (String[]) node1.getProperty( "tags" ) ) );
+        assertTrue( Arrays.equals( new int[] { 1, -2, 3 }, (int[]) node1.getProperty( "scores" ) ) );
+        assertTrue( Arrays.equals( new double[] { 0.5, 1000 }, (double[]) node1.getProperty( "weights" ) ) );
+        assertTrue( Arrays.equals( new boolean[] { true, false }, (boolean[]) node1.getProperty( "flags" ) ) );
+        assertTrue( Arrays.equals( new char[] { 'a', 'b' }, (char[]) node1.getProperty( "initials" ) ) );
+        Node node2 = graphDb.getNodeById( 2 );
+        assertTrue( Arrays.equals( new String[] { "say \"hi\"", "bye" }, (String[]) node2.getProperty( "tags" ) ) );
+        assertTrue( !node2.hasProperty( "scores" ) );
+        Relationship knows = node1.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+        assertTrue( Arrays.equals( new long[] { 2010, 2012 }, (long[]) knows.getProperty( "since" ) ) );
+    }
+
+    @Test
+    public void testTypeInference() throws IOException
+    {
+        addNode( "id,name,age,score,active,code@string,empty,mixed" );
+        addNode( "1,Dave,27,1.5,true,007,,12" );
+        addNode( "2,Mike,-3,2e3,FALSE,008,,x12" );
+        addRel( "from,to,type,since,weight" );
+        addRel( "1,2,KNOWS,12345678901,0.25" );
+        addRel( "2,1,KNOWS,12,1" );
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setTypeInference( CsvImporter.INFER_FROM_ALL_ROWS );
+        csvImporter.importTo( batchInserter );
+
+        importComplete();
+
+        Node dave = graphDb.getNodeById( 1 );
+        assertEquals( "Dave", dave.getProperty( "name" ) );
+        assertEquals( 27L, dave.getProperty( "age" ) );
+        assertEquals( 1.5d, dave.getProperty( "score" ) );
+        assertEquals( true, dave.getProperty( "active" ) );
+        assertEquals( "007", dave.getProperty( "code" ) );
+        assertEquals( "12", dave.getProperty( "mixed" ) );
+        Node mike = graphDb.getNodeById( 2 );
+        assertEquals( -3L, mike.getProperty( "age" ) );
+        assertEquals( 2000d, mike.getProperty( "score" ) );
+        assertEquals( false, mike.getProperty( "active" ) );
+        Relationship knows = dave.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+        assertEquals( 12345678901L, knows.getProperty( "since" ) );
+        assertEquals( 0.25d, knows.getProperty( "weight" ) );
+        assertEquals( 12L, mike.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING ).getProperty( "since" ) );
+    }
+
+    @Test
+    public void testTypeInferenceKeepsLeadingZerosAndPlusSigns() throws IOException
+    {
+        addNode( "id,zip,phone,count,offset,ratio,padded" );
+        addNode( "1,00123,+42,0,-0,0.5,007.5" );
+        addNode( "2,12345,42,10,-10,-0.25,7.5" );
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setTypeInference( CsvImporter.INFER_FROM_ALL_ROWS );
+        csvImporter.importTo( batchInserter );
+
+        importComplete();
+
+        Node dave = graphDb.getNodeById( 1 );
+        assertEquals( "00123", dave.getProperty( "zip" ) );
+        assertEquals( "+42", dave.getProperty( "phone" ) );
+        assertEquals( 0L, dave.getProperty( "count" ) );
+        assertEquals( 0L, dave.getProperty( "offset" ) );
+        assertEquals( 0.5d, dave.getProperty( "ratio" ) );
+        assertEquals( "007.5", dave.getProperty( "padded" ) );
+        Node mike = graphDb.getNodeById( 2 );
+        assertEquals( "12345", mike.getProperty( "zip" ) );
+        assertEquals( "42", mike.getProperty( "phone" ) );
+        assertEquals( -10L, mike.getProperty( "offset" ) );
+    }
+
+    @Test(expected = DataImportException.class)
+    public void testTypeInferenceFailsOnValueOutsideSample() throws IOException
+    {
+        addNode( "id,age" );
+        addNode( "1,27" );
+        addNode( "2,unknown" );
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setTypeInference( 1 );
+        csvImporter.importTo( batchInserter );
+    }
+
+    @Test
+    public void testRejectFile() throws IOException
+    {
+        addNode( "id" );
+        for ( int i = 1; i <= 3; i++ )
+        {
+            addNode( String.valueOf( i ) );
+        }
+        addRel( "from,to,type" );
+        addRel( "1,2,KNOWS" );
+        addRel( "1,99,KNOWS" );
+        addRel( "1,2,KNOWS" );
+        addRel( "1,2,LIKES" );
+        addRel( "2,3,KNOWS" );
+        writeFiles();
+
+        File rejectFile = new File( storePath, "rejected.csv" );
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setParserThreads( 2 );
+        csvImporter.setRejectFile( rejectFile );
+        csvImporter.setDuplicateSuppression( 100 );
+        csvImporter.importTo( batchInserter );
+
+        assertEquals( Arrays.asList( "1,99,KNOWS,missing node 99", "1,2,KNOWS,duplicate" ), FileUtils.readLines( rejectFile ) );
+        assertEquals( 2, csvImporter.getMetrics().getRejectedRelationships() );
+        assertEquals( 3, csvImporter.getMetrics().getRelationships() );
+
+        importComplete();
+
+        assertEquals( 2, graphDb.getNodeById( 1 ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING ).getEndNode().getId() );
+        assertEquals( 2, graphDb.getNodeById( 1 ).getSingleRelationship( DynamicRelationshipType.withName( "LIKES" ), Direction.OUTGOING ).getEndNode().getId() );
+    }
+
+    @Test(expected = DataImportException.class)
+    public void testMissingNodeFailsImport() throws IOException
+    {
+        addNode( "1" );
+        addRel( "1,2,KNOWS" );
+        writeFiles();
+
+        new CsvImporter( nodes, rels ).importTo( batchInserter );
+    }
+
+    @Test
+    public void testDuplicateSuppressionConfirmsFilterHits() throws IOException
+    {
+        addNode( "id" );
+        for ( int i = 1; i <= 50; i++ )
+        {
+            addNode( String.valueOf( i ) );
+        }
+        addRel( "from,to,type" );
+        for ( int i = 1; i < 50; i++ )
+        {
+            addRel( i + "," + ( i + 1 ) + ",KNOWS" );
+            if ( i % 10 == 0 )
+            {
+                addRel( i + "," + ( i + 1 ) + ",KNOWS" );
+            }
+        }
+        writeFiles();
+
+        File rejectFile = new File( storePath, "rejected.csv" );
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setParserThreads( 2 );
+        csvImporter.setBatchSize( 10 );
+        csvImporter.setRejectFile( rejectFile );
+        // a filter sized for one relationship takes almost every new one for a duplicate
+        csvImporter.setDuplicateSuppression( 1 );
+        csvImporter.importTo( batchInserter );
+
+        assertEquals( 49, csvImporter.getMetrics().getRelationships() );
+        assertEquals( 4, csvImporter.getMetrics().getRejectedRelationships() );
+        assertEquals( Arrays.asList( "10,11,KNOWS,duplicate", "20,21,KNOWS,duplicate", "30,31,KNOWS,duplicate", "40,41,KNOWS,duplicate" ),
+                FileUtils.readLines( rejectFile ) );
+    }
+
+    @Test
+    public void testDeltaImport() throws IOException
+    {
+        addNode( "id,people|name,age@int" );
+        addNode( "1,Dave,27" );
+        addNode( "2,Mike,21" );
+        addRel( "from,to,type,since@long" );
+        addRel( "1,2,KNOWS,100" );
+        writeFiles();
+        new CsvImporter( nodes, rels ).importTo( batchInserter );
+        batchInserter.shutdown();
+
+        nodeLines.clear();
+        relLines.clear();
+        addNode( "id,op,people|name,age@int" );
+        addNode( "2,U,Michael," );
+        addNode( "3,,Anna,30" );
+        addRel( "from,to,type,op,since@long" );
+        addRel( "1,2,KNOWS,U,200" );
+        addRel( "2,3,KNOWS,,300" );
+        writeFiles();
+        batchInserter = new BatchInserterImpl( storePath );
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setDeltaImport( "op" );
+        csvImporter.importTo( batchInserter );
+
+        importComplete();
+
+        Node mike = graphDb.getNodeById( 2 );
+        assertEquals( "Michael", mike.getProperty( "name" ) );
+        assertTrue( !mike.hasProperty( "age" ) );
+        assertTrue( !mike.hasProperty( "op" ) );
+        assertEquals( 27, graphDb.getNodeById( 1 ).getProperty( "age" ) );
+        assertEquals( "Anna", graphDb.getNodeById( 3 ).getProperty( "name" ) );
+        Index<Node> index = graphDb.index().forNodes( "people" );
+        assertEquals( 2, index.get( "name", "Michael" ).getSingle().getId() );
+        assertEquals( null, index.get( "name", "Mike" ).getSingle() );
+        assertEquals( 1, index.get( "name", "Dave" ).getSingle().getId() );
+        Relationship knows = graphDb.getNodeById( 1 ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+        assertEquals( 200L, knows.getProperty( "since" ) );
+        assertEquals( 300L, mike.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING ).getProperty( "since" ) );
+    }
+
+    @Test
+    public void testDeltaImportSkipsDeletes() throws IOException
+    {
+        addNode( "id,op,name" );
+        addNode( "1,,Dave" );
+        addNode( "2,D,Mike" );
+        addNode( "3,,Anna" );
+        addRel( "from,to,type,op,since@long" );
+        addRel( "1,3,KNOWS,,100" );
+        addRel( "1,2,KNOWS,delete,200" );
+        addRel( "1,3,KNOWS,U,300" );
+        writeFiles();
+
+        CsvImporter csvImporter = new CsvImporter( nodes, rels );
+        csvImporter.setDeltaImport( "op" );
+        csvImporter.importTo( batchInserter );
+        assertEquals( 2, csvImporter.getMetrics().getSkippedDeletes() );
+        assertEquals( 2, csvImporter.getMetrics().getNodes() );
+
+        importComplete();
+
+        Relationship knows = graphDb.getNodeById( 1 ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+        assertEquals( 3, knows.getEndNode().getId() );
+        assertEquals( 300L, knows.getProperty( "since" ) );
+        try
+        {
+            graphDb.getNodeById( 2 );
+            fail( "Node marked for deletion should not have been created" );
+        }
+        catch ( NotFoundException e )
+        {
+        }
+    }
+
+    @Test
+    public void testCompressedPartFiles() throws IOException
+    {
+        File parts = createTempDir();
+        assertTrue( parts.mkdirs() );
+        try
+        {
+            for ( int part = 0; part < 4; part++ )
+            {
+                Writer nodeWriter = gzipWriter( new File( parts, "nodes-" + part + ".csv.gz" ) );
+                Writer relWriter = gzipWriter( new File( parts, "rels-" + part + ".csv.gz" ) );
+                nodeWriter.write( "id,people|name,age@int\n" );
+                relWriter.write( "from,to,type,since@long\n" );
+                for ( int i = part * 250 + 1; i <= ( part + 1 ) * 250; i++ )
+                {
+                    nodeWriter.write( i + ",name" + i + "," + i % 100 + "\n" );
+                    if ( i < 1000 )
+                    {
+                        relWriter.write( i + "," + ( i + 1 ) + ",KNOWS," + i + "\n" );
+                    }
+                }
+                nodeWriter.close();
+                relWriter.close();
+            }
+
+            CsvImporter csvImporter = new CsvImporter( new File( parts, "nodes-*.csv.gz" ), new File( parts, "rels-*" ) );
+            csvImporter.setParserThreads( 2 );
+            csvImporter.setDecompressionThreads( 3 );
+            csvImporter.importTo( batchInserter );
+            ImportMetrics metrics = csvImporter.getMetrics();
+            assertEquals( metrics.getInputBytes(), metrics.getBytesRead() );
+
+            importComplete();
+
+            for ( int i = 1; i < 1000; i++ )
+            {
+                Node node = graphDb.getNodeById( i );
+                assertEquals( "name" + i, node.getProperty( "name" ) );
+                assertEquals( i % 100, node.getProperty( "age" ) );
+                Relationship rel = node.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+                assertEquals( i + 1, rel.getEndNode().getId() );
+                assertEquals( (long) i, rel.getProperty( "since" ) );
+            }
+            assertEquals( 750, graphDb.index().forNodes( "people" ).get( "name", "name750" ).getSingle().getId() );
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( parts );
+        }
+    }
+
+    private Writer gzipWriter( File file ) throws IOException
+    {
+        return new OutputStreamWriter( new GZIPOutputStream( new FileOutputStream( file ) ), "UTF-8" );
+    }
+
     private void importComplete()
     {
         batchInserter.shutdown();
@@ -268,6 +1155,40 @@ public class CsvImporterTest
         graphDb = new EmbeddedGraphDatabase( storePath );
     }
 
+    // stands in for a failure that is not caused by the input, the store is shut down cleanly afterwards
+    private static final class FailingBatchInserter extends BatchInserterImpl
+    {
+        private long nodesLeft;
+        private long relationshipsLeft;
+
+        FailingBatchInserter( String storeDir, long failingNode, long failingRelationship )
+        {
+            super( storeDir );
+            this.nodesLeft = failingNode;
+            this.relationshipsLeft = failingRelationship;
+        }
+
+        @Override
+        public void createNode( long id, Map<String, Object> properties )
+        {
+            if ( nodesLeft > 0 && --nodesLeft == 0 )
+            {
+                throw new IllegalStateException( "Failing on node " + id );
+            }
+            super.createNode( id, properties );
+        }
+
+        @Override
+        public long createRelationship( long node1, long node2, RelationshipType type, Map<String, Object> properties )
+        {
+            if ( relationshipsLeft > 0 && --relationshipsLeft == 0 )
+            {
+                throw new IllegalStateException( "Failing on relationship " + node1 + "->" + node2 );
+            }
+            return super.createRelationship( node1, node2, type, properties );
+        }
+    }
+
     List<String> nodeLines = new ArrayList<String>();
     List<String> relLines = new ArrayList<String>();
 
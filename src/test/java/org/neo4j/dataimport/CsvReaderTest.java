@@ -0,0 +1,336 @@
+package org.neo4j.dataimport;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CsvReaderTest
+{
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile( "csv-reader-", ".csv" );
+    }
+
+    @After
+    public void tearDown()
+    {
+        assertTrue( "Unable to delete tempfile.", file.delete() );
+    }
+
+    @Test
+    public void shouldReadNothingFromEmptyFile() throws IOException
+    {
+        CsvReader reader = new CsvReader( file );
+        assertNull( reader.next() );
+        reader.close();
+    }
+
+    @Test
+    public void shouldTokenizeFields() throws IOException
+    {
+        FileUtils.writeStringToFile( file, "1,hello,,42\n2" );
+
+        CsvReader reader = new CsvReader( file );
+        CsvRecord record = reader.next();
+        assertEquals( 4, record.fieldCount() );
+        assertEquals( 1L, record.getLong( 0 ) );
+        assertEquals( "hello", record.getString( 1 ) );
+        assertTrue( record.isEmpty( 2 ) );
+        assertEquals( 42, record.getInt( 3 ) );
+        record = reader.next();
+        assertEquals( 1, record.fieldCount() );
+        assertEquals( 2L, record.getLong( 0 ) );
+        assertNull( reader.next() );
+        reader.close();
+    }
+
+    @Test
+    public void shouldSkipEmptyLinesAndCarriageReturns() throws IOException
+    {
+        FileUtils.writeStringToFile( file, "\r\n1,a\r\n\n2,\r\n" );
+
+        CsvReader reader = new CsvReader( file );
+        CsvRecord record = reader.next();
+        assertEquals( "a", record.getString( 1 ) );
+        record = reader.next();
+        assertEquals( 2, record.fieldCount() );
+        assertTrue( record.isEmpty( 1 ) );
+        assertNull( reader.next() );
+        reader.close();
+    }
+
+    @Test
+    public void shouldReadLinesSpanningMappedWindows() throws IOException
+    {
+        StringBuilder content = new StringBuilder();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            content.append( i ).append( ",name" ).append( i ).append( ",a-longer-value-than-the-window\n" );
+        }
+        FileUtils.writeStringToFile( file, content.toString() );
+
+        CsvReader reader = new CsvReader( file, 16 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            CsvRecord record = reader.next();
+            assertEquals( i, record.getLong( 0 ) );
+            assertEquals( "name" + i, record.getString( 1 ) );
+            assertEquals( "a-longer-value-than-the-window", record.getString( 2 ) );
+        }
+        assertNull( reader.next() );
+        reader.close();
+    }
+
+    @Test
+    public void shouldReadQuotedFields() throws IOException
+    {
+        FileUtils.writeStringToFile( file, "1,\"a,b\",\"say \"\"hi\"\"\"\r\n\"2\",\"line\none\",\"\"\n3,\"x\"\"\"" );
+
+        for ( int windowSize : new int[] { 1 << 16, 4 } )
+        {
+            CsvReader reader = new CsvReader( file, windowSize );
+            CsvRecord record = reader.next();
+            assertEquals( 3, record.fieldCount() );
+            assertEquals( "a,b", record.getString( 1 ) );
+            assertEquals( "say \"hi\"", record.getString( 2 ) );
+            record = reader.next();
+            assertEquals( 3, record.fieldCount() );
+            assertEquals( 2L, record.getLong( 0 ) );
+            assertEquals( "line\none", record.getString( 1 ) );
+            assertTrue( record.isEmpty( 2 ) );
+            record = reader.next();
+            assertEquals( "x\"", record.getString( 1 ) );
+            assertNull( reader.next() );
+            reader.close();
+        }
+    }
+
+    @Test
+    public void shouldSplitOnConfiguredDelimiter() throws IOException
+    {
+        FileUtils.writeStringToFile( file, "1\ta,b\t\"c\td\"\n" );
+
+        CsvReader reader = new CsvReader( file );
+        reader.setDelimiter( '\t' );
+        CsvRecord record = reader.next();
+        assertEquals( 3, record.fieldCount() );
+        assertEquals( "a,b", record.getString( 1 ) );
+        assertEquals( "c\td", record.getString( 2 ) );
+        reader.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectUnterminatedQuotedField() throws IOException
+    {
+        FileUtils.writeStringToFile( file, "1,\"open\n2,b\n" );
+
+        CsvReader reader = new CsvReader( file );
+        try
+        {
+            reader.next();
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void shouldParseNumbersFromBytes() throws IOException
+    {
+        FileUtils.writeStringToFile( file, "-9223372036854775808,9223372036854775807,+12,-129,9223372036854775808,x1" );
+
+        CsvReader reader = new CsvReader( file );
+        CsvRecord record = reader.next();
+        assertEquals( Long.MIN_VALUE, record.getLong( 0 ) );
+        assertEquals( Long.MAX_VALUE, record.getLong( 1 ) );
+        assertEquals( (byte) 12, record.getByte( 2 ) );
+        assertNotParsable( record, 3, true );
+        assertNotParsable( record, 4, false );
+        assertNotParsable( record, 5, false );
+        assertTrue( record.isLong( 0 ) );
+        assertTrue( !record.isLong( 4 ) );
+        assertTrue( !record.isLong( 5 ) );
+        reader.close();
+    }
+
+    @Test
+    public void shouldParseDecimalsAndBooleansFromBytes() throws IOException
+    {
+        String[] values = { "0.1234", "-0.0", "+1.5", "1e22", "123456789012345e-22", "1234567890123456789", "1.7976931348623157E308",
+                "4.9e-324", ".5", "5.", "1.5d", "NaN", "-Infinity", "0.2345", "3.4028235e38", "0e1000", "1E-7", "TRUE", "false", "yes" };
+        StringBuilder line = new StringBuilder();
+        Random random = new Random( 42 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            line.append( random.nextBoolean() ? "-" : "" ).append( Math.abs( random.nextLong() ) % (long) Math.pow( 10, 1 + random.nextInt( 15 ) ) );
+            line.append( 'e' ).append( random.nextInt( 45 ) - 22 ).append( ',' );
+        }
+        for ( String value : values )
+        {
+            line.append( value ).append( ',' );
+        }
+        FileUtils.writeStringToFile( file, line.append( "x" ).toString() );
+
+        CsvReader reader = new CsvReader( file );
+        CsvRecord record = reader.next();
+        for ( int i = 0; i < record.fieldCount() - 1; i++ )
+        {
+            String value = record.getString( i );
+            if ( i < 1000 || !value.matches( "[a-zA-Z]+" ) )
+            {
+                assertEquals( value, Double.parseDouble( value ), record.getDouble( i ), 0d );
+                assertEquals( value, Float.parseFloat( value ), record.getFloat( i ), 0f );
+                assertEquals( value, Double.doubleToLongBits( Double.parseDouble( value ) ), Double.doubleToLongBits( record.getDouble( i ) ) );
+            }
+            assertEquals( value, Boolean.parseBoolean( value ), record.getBoolean( i ) );
+        }
+        reader.close();
+    }
+
+    @Test
+    public void shouldSplitArrayFields() throws IOException
+    {
+        FileUtils.writeStringToFile( file, "1|22|-3,7,1|x" );
+
+        CsvReader reader = new CsvReader( file );
+        CsvRecord record = reader.next();
+        assertTrue( Arrays.equals( new long[] { 1, 22, -3 }, record.getLongArray( 0, (byte) '|' ) ) );
+        assertTrue( Arrays.equals( new byte[] { 7 }, record.getByteArray( 1, (byte) '|' ) ) );
+        assertTrue( Arrays.equals( new String[] { "1", "x" }, record.getStringArray( 2, (byte) '|' ) ) );
+        try
+        {
+            record.getIntArray( 2, (byte) '|' );
+            fail( "Should not have parsed " + record.getString( 2 ) );
+        }
+        catch ( NumberFormatException e )
+        {
+        }
+        reader.close();
+    }
+
+    @Test
+    public void shouldReadCompressedPartFilesInOrder() throws IOException
+    {
+        File directory = new File( file.getPath() + "-parts" );
+        assertTrue( directory.mkdir() );
+        try
+        {
+            StringBuilder first = new StringBuilder( "id,name\n" );
+            for ( int i = 0; i < 500; i++ )
+            {
+                first.append( i ).append( ",name" ).append( i ).append( '\n' );
+            }
+            write( new GZIPOutputStream( new FileOutputStream( new File( directory, "part-0.csv.gz" ) ) ), first.toString() );
+            write( new ZstdOutputStream( new FileOutputStream( new File( directory, "part-1.csv.zst" ) ) ), "id,name\n500,name500\r\n" );
+            write( new FileOutputStream( new File( directory, "part-2.csv" ) ), "id,name\n501,name501" );
+            write( new FileOutputStream( new File( directory, "_SUCCESS" ) ), "" );
+
+            List<File> parts = InputFiles.resolve( directory );
+            assertEquals( 3, parts.size() );
+            assertEquals( parts, InputFiles.resolve( new File( directory, "part-?.csv*" ) ) );
+            CsvReader reader = new CsvReader( parts, 16, 2 );
+            CsvRecord record = reader.next();
+            assertEquals( "name", record.getString( 1 ) );
+            reader.skipRepeatedHeader( record );
+            for ( int i = 0; i < 502; i++ )
+            {
+                record = reader.next();
+                assertEquals( i, record.getLong( 0 ) );
+                assertEquals( "name" + i, record.getString( 1 ) );
+            }
+            assertNull( reader.next() );
+            assertEquals( InputFiles.length( parts ), reader.position() );
+            reader.close();
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( directory );
+        }
+    }
+
+    @Test
+    public void shouldSeekToPositionInCompressedFile() throws IOException
+    {
+        File compressed = new File( file.getPath() + ".gz" );
+        try
+        {
+            StringBuilder content = new StringBuilder( "id\n" );
+            for ( int i = 0; i < 1000; i++ )
+            {
+                content.append( i ).append( '\n' );
+            }
+            write( new GZIPOutputStream( new FileOutputStream( compressed ) ), content.toString() );
+            List<File> parts = Arrays.asList( file, compressed );
+
+            CsvReader reader = new CsvReader( parts, 8, 1 );
+            for ( int i = 0; i < 500; i++ )
+            {
+                reader.next();
+            }
+            int part = reader.part();
+            long offset = reader.partOffset();
+            reader.close();
+
+            reader = new CsvReader( parts, 8, 1 );
+            reader.seek( part, offset );
+            assertEquals( 499L, reader.next().getLong( 0 ) );
+            reader.close();
+        }
+        finally
+        {
+            assertTrue( compressed.delete() );
+        }
+    }
+
+    private void write( OutputStream out, String content ) throws IOException
+    {
+        try
+        {
+            out.write( content.getBytes( "UTF-8" ) );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private void assertNotParsable( CsvRecord record, int field, boolean asByte )
+    {
+        try
+        {
+            if ( asByte )
+            {
+                record.getByte( field );
+            }
+            else
+            {
+                record.getLong( field );
+            }
+            fail( "Should not have parsed " + record.getString( field ) );
+        }
+        catch ( NumberFormatException e )
+        {
+        }
+    }
+}
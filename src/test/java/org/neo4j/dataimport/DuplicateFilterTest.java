@@ -0,0 +1,34 @@
+package org.neo4j.dataimport;
+
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.RelationshipType;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DuplicateFilterTest
+{
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+
+    @Test
+    public void shouldSeeRelationshipsAgainAcrossPages()
+    {
+        // 10 million relationships take 160 million bits, more than one page
+        DuplicateFilter filter = new DuplicateFilter( 10000000 );
+        for ( long id = 1; id <= 1000; id++ )
+        {
+            assertFalse( filter.seen( id, id + 1, KNOWS ) );
+        }
+        for ( long id = 1; id <= 1000; id++ )
+        {
+            assertTrue( filter.seen( id, id + 1, KNOWS ) );
+        }
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRefuseCountsBeyondTheFilterSize()
+    {
+        new DuplicateFilter( Long.MAX_VALUE / DuplicateFilter.BITS_PER_RELATIONSHIP );
+    }
+}
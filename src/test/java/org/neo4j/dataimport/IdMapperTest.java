@@ -0,0 +1,60 @@
+package org.neo4j.dataimport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class IdMapperTest
+{
+    private IdMapper idMapper;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        idMapper = new IdMapper( null );
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        idMapper.close();
+    }
+
+    @Test
+    public void shouldAssignDenseIdsInInsertionOrder()
+    {
+        assertEquals( 1, idMapper.add( "alice@example.com" ) );
+        assertEquals( 2, idMapper.add( "42" ) );
+        assertEquals( 3, idMapper.add( "" ) );
+        assertEquals( 2, idMapper.get( "42" ) );
+        assertEquals( 1, idMapper.get( "alice@example.com" ) );
+        assertEquals( 3, idMapper.get( "" ) );
+        assertEquals( IdMapper.NOT_FOUND, idMapper.get( "bob@example.com" ) );
+    }
+
+    @Test
+    public void shouldResolveKeysAfterGrowing()
+    {
+        int count = 200000;
+        for ( int i = 0; i < count; i++ )
+        {
+            assertEquals( i + 1, idMapper.add( "key-" + i ) );
+        }
+        for ( int i = 0; i < count; i++ )
+        {
+            assertEquals( i + 1, idMapper.get( "key-" + i ) );
+        }
+        assertEquals( count, idMapper.size() );
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectDuplicateKeys()
+    {
+        idMapper.add( "a" );
+        idMapper.add( "a" );
+    }
+}
@@ -0,0 +1,93 @@
+package org.neo4j.dataimport;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ImportMetricsTest
+{
+    @Test
+    public void shouldTrackPhasesAndEstimateRemainingTime()
+    {
+        ImportMetrics metrics = new ImportMetrics();
+        metrics.started( 1000 );
+        metrics.phaseStarted( ImportPhase.NODES );
+        metrics.nodeCreated();
+        metrics.setBytesRead( 250 );
+
+        assertEquals( "NODES", metrics.getPhase() );
+        assertEquals( 1, metrics.getNodes() );
+        assertTrue( metrics.getEtaMillis() >= 0 );
+
+        metrics.phaseCompleted( ImportPhase.NODES );
+        long nodesMillis = metrics.getNodesMillis();
+        metrics.phaseStarted( ImportPhase.RELATIONSHIPS );
+        metrics.relationshipCreated();
+        metrics.phaseCompleted( ImportPhase.RELATIONSHIPS );
+        metrics.completed();
+
+        assertEquals( nodesMillis, metrics.getNodesMillis() );
+        assertEquals( 1, metrics.getRelationships() );
+        assertEquals( -1, metrics.getEtaMillis() );
+    }
+
+    @Test
+    public void shouldEstimateRemainingTimeFromRows()
+    {
+        ImportMetrics metrics = new ImportMetrics();
+        metrics.startedRows( 4 );
+        metrics.phaseStarted( ImportPhase.NODES );
+        assertEquals( -1, metrics.getEtaMillis() );
+        metrics.nodeCreated();
+        metrics.relationshipCreated();
+
+        assertEquals( 4, metrics.getInputRows() );
+        assertTrue( metrics.getEtaMillis() >= 0 );
+        assertTrue( metrics.toString(), metrics.toString().contains( "2/4 rows" ) );
+    }
+
+    @Test
+    public void shouldExposeMetricsOverJmx() throws Exception
+    {
+        ImportMetrics metrics = new ImportMetrics();
+        metrics.registerMBean( "test" );
+        try
+        {
+            metrics.started( 0 );
+            metrics.phaseStarted( ImportPhase.NODES );
+            metrics.nodeCreated();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName( "org.neo4j.dataimport:type=ImportMetrics,name=\"test\"" );
+            assertEquals( 1L, server.getAttribute( name, "Nodes" ) );
+            assertEquals( "NODES", server.getAttribute( name, "Phase" ) );
+        }
+        finally
+        {
+            metrics.unregisterMBean();
+        }
+        assertFalse( ManagementFactory.getPlatformMBeanServer().queryNames( new ObjectName( "org.neo4j.dataimport:*" ), null ).iterator().hasNext() );
+    }
+
+    @Test
+    public void shouldReportPhaseChanges()
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImportMetrics metrics = new ImportMetrics();
+        metrics.addListener( new ProgressReporter( new PrintStream( output ), 1000 ) );
+        metrics.started( 0 );
+        metrics.phaseStarted( ImportPhase.NODES );
+        metrics.phaseCompleted( ImportPhase.NODES );
+
+        String report = output.toString();
+        assertTrue( report, report.startsWith( "Importing nodes" ) );
+        assertTrue( report, report.contains( "Imported nodes in " ) );
+    }
+}
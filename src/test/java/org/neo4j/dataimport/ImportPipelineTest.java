@@ -0,0 +1,107 @@
+package org.neo4j.dataimport;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ImportPipelineTest
+{
+    @Test
+    public void shouldWriteBatchesInSourceOrder() throws Exception
+    {
+        final List<Integer> written = new ArrayList<Integer>();
+        ImportPipeline<Item, Item> pipeline = new ImportPipeline<Item, Item>( "test", 4, 2 );
+        pipeline.run( new CountingSource( 200 ), new ImportPipeline.Stage<Item, Item>()
+        {
+            @Override
+            public Item process( Item input ) throws Exception
+            {
+                Thread.sleep( input.value % 3 );
+                return new Item( input.value * 2 );
+            }
+        }, new ImportPipeline.Sink<Item>()
+        {
+            @Override
+            public void accept( Item output )
+            {
+                written.add( output.value );
+            }
+        } );
+
+        assertEquals( 200, written.size() );
+        for ( int i = 0; i < 200; i++ )
+        {
+            assertEquals( i * 2, (int) written.get( i ) );
+        }
+        assertEquals( 200, pipeline.getStatistics().get( 1 ).getRows() );
+    }
+
+    @Test
+    public void shouldPropagateWorkerFailure() throws Exception
+    {
+        ImportPipeline<Item, Item> pipeline = new ImportPipeline<Item, Item>( "test", 2, 2 );
+        try
+        {
+            pipeline.run( new CountingSource( 100 ), new ImportPipeline.Stage<Item, Item>()
+            {
+                @Override
+                public Item process( Item input )
+                {
+                    if ( input.value == 50 )
+                    {
+                        throw new IllegalStateException( "boom" );
+                    }
+                    return input;
+                }
+            }, new ImportPipeline.Sink<Item>()
+            {
+                @Override
+                public void accept( Item output )
+                {
+                }
+            } );
+            fail( "Should have failed." );
+        }
+        catch ( IllegalStateException e )
+        {
+            assertEquals( "boom", e.getMessage() );
+        }
+    }
+
+    private static class Item implements ImportPipeline.Batch
+    {
+        private final int value;
+
+        Item( int value )
+        {
+            this.value = value;
+        }
+
+        @Override
+        public int size()
+        {
+            return 1;
+        }
+    }
+
+    private static class CountingSource implements ImportPipeline.Source<Item>
+    {
+        private final int count;
+        private int next;
+
+        CountingSource( int count )
+        {
+            this.count = count;
+        }
+
+        @Override
+        public Item next()
+        {
+            return next < count ? new Item( next++ ) : null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.neo4j.dataimport;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -20,15 +21,21 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class JdbcImporterTest
 {
     private static int dbId = 1;
 
+    private String connectionUrl;
     private Connection connection;
     private BatchInserter batchInserter;
     private String storePath;
@@ -61,7 +68,8 @@ public class JdbcImporterTest
             e.printStackTrace();
             return;
         }
-        connection = DriverManager.getConnection( "jdbc:hsqldb:mem:import" + JdbcImporterTest.class.getName() + dbId++, "sa", "" );
+        connectionUrl = "jdbc:hsqldb:mem:import" + JdbcImporterTest.class.getName() + dbId++;
+        connection = DriverManager.getConnection( connectionUrl, "sa", "" );
     }
 
     @After
@@ -148,6 +156,37 @@ public class JdbcImporterTest
         assertEquals( node2, rel.getEndNode() );
     }
 
+    @Test
+    public void testEstimateStoreSize() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT IDENTITY, name VARCHAR, age INTEGER)" );
+        update( "CREATE TABLE rels (src BIGINT, dest BIGINT, type VARCHAR)" );
+        update( "INSERT INTO nodes (id,name,age) VALUES(1,'Dave',27)" );
+        update( "INSERT INTO nodes (id,name,age) VALUES(2,'Michael Christopher Smith',21)" );
+        update( "INSERT INTO nodes (id,name,age) VALUES(3,NULL,NULL)" );
+        update( "INSERT INTO rels (src,dest,type) VALUES(1,2,'KNOWS')" );
+
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        StoreSizeEstimate estimate = jdbcImporter.estimateStoreSize( 2 );
+        assertEquals( 3, estimate.getNodes() );
+        assertEquals( 1, estimate.getRelationships() );
+        assertEquals( 3 * 41, estimate.getPropertyStoreBytes() );
+        assertEquals( StoreSizeEstimate.STRING_RECORD_SIZE, estimate.getStringStoreBytes() );
+    }
+
+    @Test
+    public void testEstimateStoreSizeFromEncodedStrings() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT IDENTITY, name VARCHAR)" );
+        update( "CREATE TABLE rels (src BIGINT, dest BIGINT, type VARCHAR)" );
+        update( "INSERT INTO nodes (id,name) VALUES(1,'J\u00fcrgen')" );
+        update( "INSERT INTO nodes (id,name) VALUES(2,'\u00c5s\u00f6\u00e4\u00fc\u00df')" );
+
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        StoreSizeEstimate estimate = jdbcImporter.estimateStoreSize( 2 );
+        assertEquals( StoreSizeEstimate.STRING_RECORD_SIZE, estimate.getStringStoreBytes() );
+    }
+
     @Test
     public void testNodePropertyImport() throws SQLException
     {
@@ -271,6 +310,329 @@ public class JdbcImporterTest
         assertEquals( 24L, rel.getProperty( "since" ) );
     }
 
+    @Test
+    public void testStreamingImport() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT IDENTITY, name VARCHAR)" );
+        update( "CREATE TABLE rels (src BIGINT, dest BIGINT, type VARCHAR)" );
+        for ( int i = 1; i <= 10; i++ )
+        {
+            update( "INSERT INTO nodes (id,name) VALUES(" + i + ",'n" + i + "')" );
+        }
+        update( "INSERT INTO rels (src,dest,type) VALUES(1,10,'KNOWS')" );
+
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setFetchSize( 3 );
+        jdbcImporter.importTo( batchInserter );
+
+        assertTrue( connection.getAutoCommit() );
+        importComplete();
+
+        for ( int i = 1; i <= 10; i++ )
+        {
+            assertEquals( "n" + i, graphDb.getNodeById( i ).getProperty( "name" ) );
+        }
+        Relationship rel = graphDb.getNodeById( 1 ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+        assertEquals( 10, rel.getEndNode().getId() );
+    }
+
+    @Test
+    public void testPartitionedImport() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT IDENTITY, name VARCHAR)" );
+        update( "CREATE TABLE rels (src BIGINT, dest BIGINT, type VARCHAR, since BIGINT)" );
+        for ( int i = 1; i <= 100; i++ )
+        {
+            update( "INSERT INTO nodes (id,name) VALUES(" + i + ",'n" + i + "')" );
+        }
+        for ( int i = 1; i < 100; i++ )
+        {
+            update( "INSERT INTO rels (src,dest,type,since) VALUES(" + i + "," + ( i + 1 ) + ",'KNOWS'," + i + ")" );
+        }
+
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setParallelReads( new ConnectionDataSource( connectionUrl ), 3 );
+        jdbcImporter.setBatchSize( 4 );
+        // the import takes its row total from the estimate
+        jdbcImporter.estimateStoreSize( StoreSizeEstimate.DEFAULT_SAMPLE_ROWS );
+        jdbcImporter.importTo( batchInserter );
+
+        importComplete();
+
+        for ( int i = 1; i < 100; i++ )
+        {
+            Node node = graphDb.getNodeById( i );
+            assertEquals( "n" + i, node.getProperty( "name" ) );
+            Relationship rel = node.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+            assertEquals( i + 1, rel.getEndNode().getId() );
+            assertEquals( (long) i, rel.getProperty( "since" ) );
+        }
+        assertEquals( 100, jdbcImporter.getExtractionStatistics().get( 1 ).getRows() );
+        assertEquals( 100, jdbcImporter.getMetrics().getNodes() );
+        assertEquals( 99, jdbcImporter.getMetrics().getRelationships() );
+        assertEquals( 199, jdbcImporter.getMetrics().getInputRows() );
+    }
+
+    @Test
+    public void testSortedRelationships() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT IDENTITY)" );
+        update( "CREATE TABLE rels (src BIGINT, dest BIGINT, type VARCHAR, since BIGINT)" );
+        for ( int i = 1; i <= 10; i++ )
+        {
+            update( "INSERT INTO nodes (id) VALUES(" + i + ")" );
+        }
+        for ( int i = 10; i > 1; i-- )
+        {
+            update( "INSERT INTO rels (src,dest,type,since) VALUES(" + i + "," + ( i - 1 ) + ",'KNOWS'," + i + ")" );
+        }
+
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setRelationshipSorting( 3 );
+        jdbcImporter.importTo( batchInserter );
+
+        importComplete();
+
+        for ( int i = 2; i <= 10; i++ )
+        {
+            Relationship rel = graphDb.getNodeById( i ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+            assertEquals( i - 2, rel.getId() );
+            assertEquals( (long) i, rel.getProperty( "since" ) );
+        }
+    }
+
+    @Test
+    public void testDegreeGrouping() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT IDENTITY)" );
+        update( "CREATE TABLE rels (src BIGINT, dest BIGINT, type VARCHAR)" );
+        for ( int i = 1; i <= 5; i++ )
+        {
+            update( "INSERT INTO nodes (id) VALUES(" + i + ")" );
+        }
+        update( "INSERT INTO rels (src,dest,type) VALUES(2,3,'LIKES')" );
+        for ( int i = 5; i > 1; i-- )
+        {
+            update( "INSERT INTO rels (src,dest,type) VALUES(" + i + ",1,'KNOWS')" );
+        }
+
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setDegreeGrouping( true );
+        jdbcImporter.importTo( batchInserter );
+
+        importComplete();
+
+        for ( int i = 2; i <= 5; i++ )
+        {
+            Relationship rel = graphDb.getNodeById( i ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+            assertEquals( i - 2, rel.getId() );
+        }
+        assertEquals( "LIKES", graphDb.getRelationshipById( 4 ).getType().name() );
+    }
+
+    @Test
+    public void testIdMapping() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id VARCHAR, name VARCHAR)" );
+        update( "CREATE TABLE rels (src VARCHAR, dest VARCHAR, type VARCHAR)" );
+        update( "INSERT INTO nodes (id,name) VALUES('6f1c2a90-uuid','Alice')" );
+        update( "INSERT INTO nodes (id,name) VALUES('bob@example.com','Bob')" );
+        update( "INSERT INTO rels (src,dest,type) VALUES('6f1c2a90-uuid','bob@example.com','KNOWS')" );
+
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setIdMapping( true );
+        jdbcImporter.importTo( batchInserter );
+
+        importComplete();
+
+        Node alice = graphDb.getNodeById( 1 );
+        assertEquals( "Alice", alice.getProperty( "name" ) );
+        Relationship rel = alice.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+        assertEquals( "Bob", rel.getEndNode().getProperty( "name" ) );
+    }
+
+    @Test
+    public void testPartitionedImportOfExtremeKeys() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT, name VARCHAR)" );
+        update( "CREATE TABLE rels (src BIGINT, dest BIGINT, type VARCHAR)" );
+        long[] keys = { Long.MIN_VALUE, -1, 0, Long.MAX_VALUE };
+        for ( long key : keys )
+        {
+            update( "INSERT INTO nodes (id,name) VALUES(" + key + ",'n" + key + "')" );
+        }
+        update( "INSERT INTO rels (src,dest,type) VALUES(" + Long.MIN_VALUE + "," + Long.MAX_VALUE + ",'KNOWS')" );
+        update( "INSERT INTO rels (src,dest,type) VALUES(" + Long.MAX_VALUE + ",0,'KNOWS')" );
+
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setIdMapping( true );
+        jdbcImporter.setParallelReads( new ConnectionDataSource( connectionUrl ), 3 );
+        jdbcImporter.importTo( batchInserter );
+
+        assertEquals( 4, jdbcImporter.getMetrics().getNodes() );
+        assertEquals( 2, jdbcImporter.getMetrics().getRelationships() );
+    }
+
+    @Test
+    public void testParallelReadsRejectMappedStringIds() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id VARCHAR, name VARCHAR)" );
+        update( "CREATE TABLE rels (src VARCHAR, dest VARCHAR, type VARCHAR)" );
+        update( "INSERT INTO nodes (id,name) VALUES('alice','Alice')" );
+
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setIdMapping( true );
+        jdbcImporter.setParallelReads( new ConnectionDataSource( connectionUrl ), 3 );
+        try
+        {
+            jdbcImporter.importTo( batchInserter );
+            fail( "Should have refused to split string keys into ranges" );
+        }
+        catch ( DataImportException e )
+        {
+            assertTrue( e.getCause() instanceof IllegalStateException );
+        }
+        assertEquals( 0, jdbcImporter.getMetrics().getNodes() );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelReadsNeedAReaderThread()
+    {
+        new JdbcImporter( connection, "nodes", "rels" ).setParallelReads( new ConnectionDataSource( connectionUrl ), 0 );
+    }
+
+    @Test
+    public void testKeyRangesOfExtremeKeys()
+    {
+        List<long[]> ranges = JdbcImporter.keyRanges( Long.MIN_VALUE, Long.MAX_VALUE, 8 );
+        assertEquals( 8, ranges.size() );
+        long next = Long.MIN_VALUE;
+        for ( long[] range : ranges )
+        {
+            assertEquals( next, range[0] );
+            assertTrue( range[1] >= range[0] );
+            next = range[1] + 1;
+        }
+        assertEquals( Long.MAX_VALUE, ranges.get( 7 )[1] );
+
+        ranges = JdbcImporter.keyRanges( Long.MAX_VALUE - 1, Long.MAX_VALUE, 4 );
+        assertEquals( 2, ranges.size() );
+        assertEquals( Long.MAX_VALUE, ranges.get( 1 )[0] );
+        assertEquals( Long.MAX_VALUE, ranges.get( 1 )[1] );
+
+        ranges = JdbcImporter.keyRanges( 5, 5, 4 );
+        assertEquals( 1, ranges.size() );
+        assertEquals( 5, ranges.get( 0 )[1] );
+    }
+
+    @Test
+    public void testRejectFile() throws Exception
+    {
+        update( "CREATE TABLE nodes (id VARCHAR)" );
+        update( "CREATE TABLE rels (src VARCHAR, dest VARCHAR, type VARCHAR)" );
+        update( "INSERT INTO nodes (id) VALUES('alice')" );
+        update( "INSERT INTO nodes (id) VALUES('bob')" );
+        update( "INSERT INTO rels (src,dest,type) VALUES('alice','bob','KNOWS')" );
+        update( "INSERT INTO rels (src,dest,type) VALUES('alice','carol','KNOWS')" );
+
+        File rejectFile = new File( storePath, "rejected.csv" );
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setIdMapping( true );
+        jdbcImporter.setRejectFile( rejectFile );
+        jdbcImporter.importTo( batchInserter );
+
+        assertEquals( Arrays.asList( "1,-1,KNOWS,unknown node id" ), FileUtils.readLines( rejectFile ) );
+        assertEquals( 1, jdbcImporter.getMetrics().getRejectedRelationships() );
+
+        importComplete();
+
+        Relationship rel = graphDb.getNodeById( 1 ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+        assertEquals( 2, rel.getEndNode().getId() );
+    }
+
+    @Test
+    public void testResumeAfterFailure() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT, name VARCHAR)" );
+        update( "CREATE TABLE rels (src BIGINT, dest BIGINT, type VARCHAR)" );
+        for ( int i = 1; i <= 50; i++ )
+        {
+            update( "INSERT INTO nodes (id,name) VALUES(" + i + ",'name" + i + "')" );
+            if ( i < 50 )
+            {
+                update( "INSERT INTO rels (src,dest,type) VALUES(" + i + "," + ( i == 30 ? 99 : i + 1 ) + ",'KNOWS')" );
+            }
+        }
+        File checkpointFile = new File( storePath, "import.checkpoint" );
+
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setCheckpointing( checkpointFile );
+        try
+        {
+            jdbcImporter.importTo( batchInserter );
+            fail( "Should have failed on the relationship to a missing node" );
+        }
+        catch ( DataImportException e )
+        {
+        }
+        batchInserter.shutdown();
+
+        update( "UPDATE rels SET dest = 31 WHERE src = 30" );
+        batchInserter = new BatchInserterImpl( storePath );
+        jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setCheckpointing( checkpointFile );
+        jdbcImporter.importTo( batchInserter );
+        assertEquals( 0, jdbcImporter.getMetrics().getNodes() );
+        assertEquals( 20, jdbcImporter.getMetrics().getRelationships() );
+        assertFalse( checkpointFile.exists() );
+
+        importComplete();
+
+        for ( int i = 1; i < 50; i++ )
+        {
+            Node node = graphDb.getNodeById( i );
+            assertEquals( "name" + i, node.getProperty( "name" ) );
+            Relationship rel = node.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+            assertEquals( i + 1, rel.getEndNode().getId() );
+        }
+    }
+
+    @Test
+    public void testDeltaImport() throws SQLException
+    {
+        update( "CREATE TABLE nodes (id BIGINT, name VARCHAR, modified TIMESTAMP)" );
+        update( "CREATE TABLE rels (src BIGINT, dest BIGINT, type VARCHAR, since BIGINT, modified TIMESTAMP)" );
+        update( "INSERT INTO nodes (id,name,modified) VALUES(1,'Dave','2012-01-01 00:00:00')" );
+        update( "INSERT INTO nodes (id,name,modified) VALUES(2,'Mike','2012-01-01 00:00:00')" );
+        update( "INSERT INTO rels (src,dest,type,since,modified) VALUES(1,2,'KNOWS',100,'2012-01-01 00:00:00')" );
+        JdbcImporter jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setDeltaImport( "modified", null );
+        jdbcImporter.importTo( batchInserter );
+        batchInserter.shutdown();
+
+        update( "UPDATE nodes SET name = 'Michael', modified = '2012-01-02 00:00:00' WHERE id = 2" );
+        update( "UPDATE rels SET since = 200, modified = '2012-01-02 00:00:00'" );
+        update( "INSERT INTO nodes (id,name,modified) VALUES(3,'Anna','2012-01-02 00:00:00')" );
+        update( "INSERT INTO rels (src,dest,type,since,modified) VALUES(2,3,'KNOWS',300,'2012-01-02 00:00:00')" );
+        batchInserter = new BatchInserterImpl( storePath );
+        jdbcImporter = new JdbcImporter( connection, "nodes", "rels" );
+        jdbcImporter.setDeltaImport( "modified", Timestamp.valueOf( "2012-01-01 12:00:00" ) );
+        jdbcImporter.importTo( batchInserter );
+        assertEquals( 2, jdbcImporter.getMetrics().getNodes() );
+        assertEquals( 2, jdbcImporter.getMetrics().getRelationships() );
+
+        importComplete();
+
+        assertEquals( "Dave", graphDb.getNodeById( 1 ).getProperty( "name" ) );
+        Node mike = graphDb.getNodeById( 2 );
+        assertEquals( "Michael", mike.getProperty( "name" ) );
+        assertTrue( !mike.hasProperty( "modified" ) );
+        assertEquals( "Anna", graphDb.getNodeById( 3 ).getProperty( "name" ) );
+        Relationship knows = graphDb.getNodeById( 1 ).getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING );
+        assertEquals( 200L, knows.getProperty( "since" ) );
+        assertEquals( 300L, mike.getSingleRelationship( DynamicRelationshipType.withName( "KNOWS" ), Direction.OUTGOING ).getProperty( "since" ) );
+    }
+
     private void update( String sql ) throws SQLException
     {
         Statement statement = connection.createStatement();
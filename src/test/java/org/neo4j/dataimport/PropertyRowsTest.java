@@ -0,0 +1,118 @@
+package org.neo4j.dataimport;
+
+import org.junit.Test;
+import org.neo4j.kernel.impl.batchinsert.BatchInserter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PropertyRowsTest
+{
+    private static final String[] KEYS = { "l", "i", "s", "b", "c", "bo", "d", "f", "name" };
+
+    @Test
+    public void shouldBoxTypedSlotsOnlyWhenRead()
+    {
+        PropertyRows rows = new PropertyRows( KEYS, 2 );
+        rows.setLong( 1, 0, 9999999999L );
+        rows.setInt( 1, 1, 42 );
+        rows.setShort( 1, 2, (short) 7 );
+        rows.setByte( 1, 3, (byte) -3 );
+        rows.setChar( 1, 4, 'x' );
+        rows.setBoolean( 1, 5, true );
+        rows.setDouble( 1, 6, 0.1234d );
+        rows.setFloat( 1, 7, 0.2345f );
+        rows.setObject( 1, 8, "hello" );
+
+        Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put( "l", 9999999999L );
+        expected.put( "i", 42 );
+        expected.put( "s", (short) 7 );
+        expected.put( "b", (byte) -3 );
+        expected.put( "c", 'x' );
+        expected.put( "bo", true );
+        expected.put( "d", 0.1234d );
+        expected.put( "f", 0.2345f );
+        expected.put( "name", "hello" );
+        PropertyRow view = new PropertyRow( rows );
+        assertEquals( expected, new HashMap<String, Object>( view.at( 1 ) ) );
+        assertEquals( 0, view.at( 0 ).size() );
+    }
+
+    @Test
+    public void shouldSkipAbsentSlots()
+    {
+        PropertyRows rows = new PropertyRows( KEYS, 1 );
+        PropertyRow row = new PropertyRow( rows );
+        rows.setLong( 0, 0, 1 );
+        rows.setObject( 0, 8, "a" );
+        rows.setObject( 0, 8, null );
+
+        assertEquals( 1, row.size() );
+        assertTrue( row.containsKey( "l" ) );
+        assertFalse( row.containsKey( "name" ) );
+        assertEquals( "{l=1}", row.toString() );
+
+        rows.clearRow( 0 );
+        assertTrue( row.isEmpty() );
+    }
+
+    @Test
+    public void shouldReuseSharedEntryWhileIterating()
+    {
+        PropertyRows rows = new PropertyRows( KEYS, 1 );
+        rows.setLong( 0, 0, 1 );
+        rows.setObject( 0, 8, "a" );
+        PropertyRow row = new PropertyRow( rows, true ).at( 0 );
+
+        Map<String, Object> read = new HashMap<String, Object>();
+        Map.Entry<String, Object> first = null;
+        for ( Map.Entry<String, Object> entry : row.entrySet() )
+        {
+            if ( first == null )
+            {
+                first = entry;
+            }
+            assertTrue( first == entry );
+            read.put( entry.getKey(), entry.getValue() );
+        }
+        assertEquals( 2, read.size() );
+        assertEquals( 1L, read.get( "l" ) );
+        assertEquals( "a", read.get( "name" ) );
+    }
+
+    @Test
+    public void shouldCopyRowsForInsertersThatKeepTheMap()
+    {
+        NodeBatch batch = new NodeBatch( 2, new String[] { "name" } );
+        batch.rows().setObject( batch.add( 1 ), 0, "a" );
+        batch.rows().setObject( batch.add( 2 ), 0, "b" );
+        final List<Map<String, Object>> kept = new ArrayList<Map<String, Object>>();
+        BatchInserter target = (BatchInserter) Proxy.newProxyInstance( BatchInserter.class.getClassLoader(), new Class<?>[] { BatchInserter.class },
+                new InvocationHandler()
+        {
+            @Override
+            @SuppressWarnings( "unchecked" )
+            public Object invoke( Object proxy, Method method, Object[] args )
+            {
+                kept.add( (Map<String, Object>) args[1] );
+                return null;
+            }
+        } );
+
+        new RowWriter( target ).createNodes( batch );
+
+        assertEquals( 2, kept.size() );
+        assertEquals( "a", kept.get( 0 ).get( "name" ) );
+        assertEquals( "b", kept.get( 1 ).get( "name" ) );
+    }
+}
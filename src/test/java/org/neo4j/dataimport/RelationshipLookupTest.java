@@ -0,0 +1,104 @@
+package org.neo4j.dataimport;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.kernel.impl.batchinsert.BatchInserter;
+import org.neo4j.kernel.impl.batchinsert.BatchInserterImpl;
+import org.neo4j.kernel.impl.batchinsert.SimpleRelationship;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class RelationshipLookupTest
+{
+    private static final RelationshipType KNOWS = DynamicRelationshipType.withName( "KNOWS" );
+    private static final RelationshipType LIKES = DynamicRelationshipType.withName( "LIKES" );
+
+    private File storeDir;
+    private BatchInserter target;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        storeDir = File.createTempFile( "lookup", "-store" );
+        storeDir.delete();
+        target = new BatchInserterImpl( storeDir.getAbsolutePath() );
+        for ( long id = 1; id <= 3; id++ )
+        {
+            target.createNode( id, Collections.<String, Object>emptyMap() );
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        target.shutdown();
+        FileUtils.deleteDirectory( storeDir );
+    }
+
+    @Test
+    public void shouldUpdateRelationshipsWithTheSameEndpointsAndType()
+    {
+        target.createRelationship( 1, 2, KNOWS, since( 100 ) );
+        RelationshipLookup lookup = new RelationshipLookup( target );
+        lookup.upsert( 1, 2, KNOWS, since( 200 ) );
+        lookup.upsert( 1, 2, LIKES, since( 300 ) );
+        lookup.upsert( 2, 1, KNOWS, since( 400 ) );
+        lookup.upsert( 2, 1, KNOWS, since( 500 ) );
+
+        assertEquals( 3, count( 1 ) );
+        assertEquals( 200L, since( 1, 2, KNOWS ) );
+        assertEquals( 300L, since( 1, 2, LIKES ) );
+        assertEquals( 500L, since( 2, 1, KNOWS ) );
+    }
+
+    @Test
+    public void shouldFindRelationshipsAgainAfterEviction()
+    {
+        RelationshipLookup lookup = new RelationshipLookup( target, 1 );
+        lookup.upsert( 1, 2, KNOWS, since( 100 ) );
+        lookup.upsert( 2, 3, KNOWS, since( 200 ) );
+        lookup.upsert( 3, 1, KNOWS, since( 300 ) );
+        assertEquals( 1, lookup.size() );
+        lookup.upsert( 1, 2, KNOWS, since( 400 ) );
+
+        assertEquals( 2, count( 1 ) );
+        assertEquals( 400L, since( 1, 2, KNOWS ) );
+    }
+
+    private static Map<String, Object> since( long value )
+    {
+        return MapUtil.map( "since", value );
+    }
+
+    private int count( long node )
+    {
+        int count = 0;
+        for ( SimpleRelationship relationship : target.getRelationships( node ) )
+        {
+            count++;
+        }
+        return count;
+    }
+
+    private Object since( long from, long to, RelationshipType type )
+    {
+        for ( SimpleRelationship relationship : target.getRelationships( from ) )
+        {
+            if ( relationship.getStartNode() == from && relationship.getEndNode() == to && relationship.getType().name().equals( type.name() ) )
+            {
+                return target.getRelationshipProperties( relationship.getId() ).get( "since" );
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,146 @@
+package org.neo4j.dataimport;
+
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicRelationshipType;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RelationshipSorterTest
+{
+    @Test
+    public void shouldSortWithinASingleRun() throws Exception
+    {
+        RelationshipSorter sorter = new RelationshipSorter( null, 10 );
+        sorter.add( 3, 1, DynamicRelationshipType.withName( "A" ), null );
+        sorter.add( 1, 2, DynamicRelationshipType.withName( "B" ), null );
+        sorter.add( 1, 1, DynamicRelationshipType.withName( "C" ), null );
+
+        List<String> sorted = collect( sorter, 2 );
+
+        assertEquals( 0, sorter.getRunCount() );
+        assertEquals( "[1-1:C, 1-2:B, 3-1:A]", sorted.toString() );
+        sorter.close();
+    }
+
+    @Test
+    public void shouldMergeSpilledRuns() throws Exception
+    {
+        List<Long> sources = new ArrayList<Long>();
+        for ( long i = 0; i < 1000; i++ )
+        {
+            sources.add( i );
+        }
+        Collections.shuffle( sources, new Random( 42 ) );
+        RelationshipSorter sorter = new RelationshipSorter( null, 64 );
+        for ( long source : sources )
+        {
+            sorter.add( source, 1000 - source, DynamicRelationshipType.withName( "KNOWS" ),
+                Collections.<String, Object>singletonMap( "since", source ) );
+        }
+
+        final List<Long> froms = new ArrayList<Long>();
+        sorter.writeSorted( 100, new ImportPipeline.Sink<RelationshipBatch>()
+        {
+            @Override
+            public void accept( RelationshipBatch batch )
+            {
+                for ( int i = 0; i < batch.size(); i++ )
+                {
+                    Map<String, Object> properties = batch.getProperties( i );
+                    assertEquals( batch.getFrom( i ), properties.get( "since" ) );
+                    assertEquals( 1000 - batch.getFrom( i ), batch.getTo( i ) );
+                    assertEquals( "KNOWS", batch.getType( i ).name() );
+                    froms.add( batch.getFrom( i ) );
+                }
+            }
+        } );
+
+        assertEquals( 16, sorter.getRunCount() );
+        Collections.sort( sources );
+        assertEquals( sources, froms );
+        sorter.close();
+    }
+
+    @Test
+    public void shouldMergeRunsInPasses() throws Exception
+    {
+        List<Long> sources = new ArrayList<Long>();
+        for ( long i = 0; i < 500; i++ )
+        {
+            sources.add( i );
+        }
+        Collections.shuffle( sources, new Random( 7 ) );
+        File tempDirectory = File.createTempFile( "sorter", "-runs" );
+        assertTrue( tempDirectory.delete() && tempDirectory.mkdir() );
+        RelationshipSorter sorter = new RelationshipSorter( tempDirectory, 10 );
+        sorter.setMergeFanIn( 3 );
+        for ( long source : sources )
+        {
+            sorter.add( source, source + 1, DynamicRelationshipType.withName( "KNOWS" ),
+                Collections.<String, Object>singletonMap( "since", source ) );
+        }
+
+        List<String> sorted = collect( sorter, 64 );
+
+        assertEquals( 50, sorter.getRunCount() );
+        assertEquals( 500, sorted.size() );
+        for ( int i = 0; i < sorted.size(); i++ )
+        {
+            assertEquals( i + "-" + ( i + 1 ) + ":KNOWS", sorted.get( i ) );
+        }
+        // intermediate runs are removed as soon as they are merged
+        assertTrue( tempDirectory.list().length <= 3 );
+        sorter.close();
+        assertEquals( 0, tempDirectory.list().length );
+        assertTrue( tempDirectory.delete() );
+    }
+
+    @Test
+    public void shouldGroupRelationshipsByDenserEndpoint() throws Exception
+    {
+        long[][] relationships = { { 2, 1 }, { 3, 4 }, { 3, 1 }, { 5, 1 }, { 4, 1 } };
+        NodeDegrees degrees = new NodeDegrees();
+        for ( long[] relationship : relationships )
+        {
+            degrees.add( relationship[0], relationship[1] );
+        }
+        assertEquals( 4, degrees.get( 1 ) );
+        assertEquals( 0, degrees.get( 1L << 40 ) );
+        for ( int runSize : new int[] { 10, 2 } )
+        {
+            RelationshipSorter sorter = new RelationshipSorter( null, runSize, new RelationshipTypes(), degrees );
+            for ( long[] relationship : relationships )
+            {
+                sorter.add( relationship[0], relationship[1], DynamicRelationshipType.withName( "A" ), null );
+            }
+
+            assertEquals( "[2-1:A, 3-1:A, 4-1:A, 5-1:A, 3-4:A]", collect( sorter, 2 ).toString() );
+            sorter.close();
+        }
+    }
+
+    private List<String> collect( RelationshipSorter sorter, int batchSize ) throws Exception
+    {
+        final List<String> result = new ArrayList<String>();
+        sorter.writeSorted( batchSize, new ImportPipeline.Sink<RelationshipBatch>()
+        {
+            @Override
+            public void accept( RelationshipBatch batch )
+            {
+                for ( int i = 0; i < batch.size(); i++ )
+                {
+                    result.add( batch.getFrom( i ) + "-" + batch.getTo( i ) + ":" + batch.getType( i ).name() );
+                }
+            }
+        } );
+        return result;
+    }
+}